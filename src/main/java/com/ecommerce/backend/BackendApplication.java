@@ -3,9 +3,11 @@ package com.ecommerce.backend;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.data.mongodb.config.EnableMongoAuditing;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableMongoAuditing // To support @CreatedDate, @LastModifiedDate
+@EnableScheduling // Background jobs (counter reconciliation, ...)
 public class BackendApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,22 @@
+package com.ecommerce.backend.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+
+import java.util.concurrent.Executors;
+
+@Configuration
+public class ChangeStreamConfig {
+
+	// Shared container for every change-stream subscription (started/stopped with the context).
+	// Change streams need a replica set (Atlas has one); on a standalone mongod the
+	// subscriptions just fail and log, the app keeps working with local invalidation only.
+	@Bean
+	public MessageListenerContainer messageListenerContainer(MongoTemplate mongoTemplate) {
+		return new DefaultMessageListenerContainer(mongoTemplate, Executors.newCachedThreadPool(),
+				error -> System.err.println("Change stream error: " + error.getMessage()));
+	}
+}
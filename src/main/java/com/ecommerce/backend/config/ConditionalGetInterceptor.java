@@ -0,0 +1,70 @@
+package com.ecommerce.backend.config;
+
+import com.ecommerce.backend.service.CatalogVersion;
+import com.ecommerce.backend.service.trend.TrendTracker;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+import java.util.Set;
+
+// ETag / Last-Modified for the public catalog endpoints, derived from CatalogVersion.
+// A matching If-None-Match / If-Modified-Since is answered with 304 before the controller runs,
+// so no Mongo query and no serialisation happen for repeat visits.
+@Component
+public class ConditionalGetInterceptor implements HandlerInterceptor {
+
+	// Responses that also depend on orders
+	private static final Set<String> SALES_PATHS = Set.of("/api/category/popular", "/api/product/suggest");
+
+	// Responses that change with every search / product view (TrendTracker): never answered with 304
+	private static final Set<String> UNVERSIONED_PATHS = Set.of("/api/category/trending", "/api/product/trending");
+
+	// Product detail: a view is counted even when it is answered with 304
+	private static final String PRODUCT_DETAIL_PATTERN = "/api/product/{productId}";
+
+	@Autowired
+	CatalogVersion catalogVersion;
+
+	@Autowired
+	TrendTracker trendTracker;
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) return true;
+
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		if (UNVERSIONED_PATHS.contains(path)) return true;
+		long catalog = catalogVersion.catalog();
+		String etag = Long.toString(catalog, 36);
+		long lastModified = catalog;
+		if (SALES_PATHS.contains(path)) {
+			long sales = catalogVersion.sales();
+			etag += "-" + Long.toString(sales, 36);
+			lastModified = Math.max(lastModified, sales);
+		}
+		// Product payloads carry the per-size stock; category responses don't change with a sale
+		if (path.startsWith("/api/product")) {
+			long stock = catalogVersion.stock();
+			etag += "." + Long.toString(stock, 36);
+			lastModified = Math.max(lastModified, stock);
+		}
+		etag = "\"" + etag + "\"";
+
+		// Clients may store the body but must revalidate every time
+		response.setHeader("Cache-Control", "no-cache");
+		// Sets ETag / Last-Modified and, when the client copy is current, the 304 status
+		if (!new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) return true;
+		if (PRODUCT_DETAIL_PATTERN.equals(request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE))
+				&& request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE) instanceof Map<?, ?> variables
+				&& variables.get("productId") instanceof String productId) {
+			trendTracker.recordView(productId);
+		}
+		return false;
+	}
+}
@@ -0,0 +1,23 @@
+package com.ecommerce.backend.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Configuration
+public class MongoTransactionConfig {
+
+	// Multi-document transactions (checkout). Like change streams they need a replica set; on a
+	// standalone mongod set app.checkout.transactions=false.
+	@Bean
+	public MongoTransactionManager transactionManager(MongoDatabaseFactory databaseFactory) {
+		return new MongoTransactionManager(databaseFactory);
+	}
+
+	@Bean
+	public TransactionTemplate transactionTemplate(MongoTransactionManager transactionManager) {
+		return new TransactionTemplate(transactionManager);
+	}
+}
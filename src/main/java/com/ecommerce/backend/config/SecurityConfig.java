@@ -3,6 +3,7 @@ package com.ecommerce.backend.config;
 import com.ecommerce.backend.security.jwt.AuthEntryPointJwt;
 import com.ecommerce.backend.security.jwt.AuthTokenFilter;
 import com.ecommerce.backend.security.service.UserDetailsServiceImpl;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -87,9 +88,12 @@ public class SecurityConfig {
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> 
                     auth.requestMatchers(org.springframework.http.HttpMethod.OPTIONS, "/**").permitAll()
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll() // Async checkout results: the original request was already authorized
                         .requestMatchers("/api/register", "/api/login", "/api/google-login", "/api/refresh-token", "/api/forgot-password", "/api/reset-password").permitAll()
                         .requestMatchers("/api/debug/**").permitAll()
                         .requestMatchers("/ping", "/error").permitAll() // Add /error
+                        .requestMatchers("/actuator/health", "/actuator/health/**").permitAll() // Liveness / readiness probes
+                        .requestMatchers("/actuator/metrics", "/actuator/metrics/**").hasAnyAuthority("admin", "super_admin")
                         .requestMatchers("/api/product/**").permitAll()
                         .requestMatchers("/api/products/**").permitAll()
                         .requestMatchers("/api/related-products/**").permitAll()
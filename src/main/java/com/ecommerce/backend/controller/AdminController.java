@@ -1,19 +1,37 @@
 package com.ecommerce.backend.controller;
 
+import com.ecommerce.backend.event.OrderStatusChangedEvent;
+import com.ecommerce.backend.event.StockChangedEvent;
 import com.ecommerce.backend.model.Order;
 import com.ecommerce.backend.model.Product;
+import com.ecommerce.backend.model.SalesRollup;
 import com.ecommerce.backend.model.User;
 import com.ecommerce.backend.repository.OrderRepository;
 import com.ecommerce.backend.repository.ProductRepository;
 import com.ecommerce.backend.repository.UserRepository;
 import com.ecommerce.backend.security.service.UserDetailsImpl;
+import com.ecommerce.backend.service.CollectionCounters;
+import com.ecommerce.backend.service.NdjsonStreamer;
+import com.ecommerce.backend.service.ProductCache;
+import com.ecommerce.backend.service.ProductOrderCounts;
+import com.ecommerce.backend.service.SalesRollupService;
+import com.ecommerce.backend.service.admission.CheckoutAdmission;
+import com.ecommerce.backend.service.catalog.CatalogFilter;
+import com.ecommerce.backend.service.catalog.ProductTransferService;
+import com.ecommerce.backend.service.index.IndexManager;
+import com.ecommerce.backend.util.KeysetCursor;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.aggregation.AggregationResults;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -45,6 +63,33 @@ public class AdminController {
 	@Autowired
 	PasswordEncoder passwordEncoder;
 
+	@Autowired
+	CollectionCounters collectionCounters;
+
+	@Autowired
+	IndexManager indexManager;
+
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	NdjsonStreamer ndjsonStreamer;
+
+	@Autowired
+	ProductTransferService productTransferService;
+
+	@Autowired
+	ProductOrderCounts productOrderCounts;
+
+	@Autowired
+	SalesRollupService salesRollupService;
+
+	@Autowired
+	ProductCache productCache;
+
+	@Autowired
+	CheckoutAdmission checkoutAdmission;
+
 	// --- 1. DASHBOARD STATS ---
 	@GetMapping("/stats")
 	public ResponseEntity<?> getDashboardStats() {
@@ -104,26 +149,19 @@ public class AdminController {
 			AggregationResults<Map> statusRes = mongoTemplate.aggregate(statusAgg, Order.class, Map.class);
 			List<Map> orderStatusStats = statusRes.getMappedResults();
 
-			// 5. Top Products (Best Selling)
-			Aggregation topProdAgg = newAggregation(
-					match(Criteria.where("deletedAt").is(null)),
-					unwind("items"),
-					group("items.productId")
-						.sum("items.quantity").as("totalSold")
-						.sum(
-							org.springframework.data.mongodb.core.aggregation.ArithmeticOperators.Multiply.valueOf("items.price").multiplyBy("items.quantity")
-						).as("revenue"),
-					sort(Sort.Direction.DESC, "totalSold"),
-					limit(5),
-					lookup("products", "_id", "_id", "productInfo"),
-					unwind("productInfo"),
-					project("totalSold", "revenue")
-						.and("productInfo.name").as("name")
-						.and("productInfo.price").as("price")
-						.and(org.springframework.data.mongodb.core.aggregation.ArrayOperators.ArrayElemAt.arrayOf("productInfo.images").elementAt(0)).as("image")
-			);
-			AggregationResults<Map> topProdRes = mongoTemplate.aggregate(topProdAgg, Order.class, Map.class);
-			List<Map> topProducts = topProdRes.getMappedResults();
+			// 5. Top Products (Best Selling) - from the sales rollups
+			List<Map<String, Object>> topProducts = new ArrayList<>();
+			for (SalesRollup rollup : salesRollupService.top(SalesRollup.PRODUCT, 5, r -> productCache.findById(r.getRefId()).isPresent())) {
+				Product p = productCache.findById(rollup.getRefId()).get();
+				Map<String, Object> row = new HashMap<>();
+				row.put("_id", rollup.getRefId());
+				row.put("totalSold", rollup.getQuantity());
+				row.put("revenue", rollup.getRevenue());
+				row.put("name", p.getName());
+				row.put("price", p.getPrice());
+				row.put("image", p.getImages() != null && !p.getImages().isEmpty() ? p.getImages().get(0) : null);
+				topProducts.add(row);
+			}
 
 			// 6. Recent Orders
 			Query recentQ = new Query(Criteria.where("deletedAt").is(null));
@@ -131,10 +169,13 @@ public class AdminController {
 			recentQ.fields().include("firstName", "lastName", "totalAmount", "deliveryStatus", "createdAt");
 			List<Order> recentOrders = mongoTemplate.find(recentQ, Order.class);
 
-			// 7. Counts (Correctly filtering deletedAt: null)
-			long totalUsers = userRepository.countByRole("user");
-			long totalProducts = mongoTemplate.count(new Query(Criteria.where("deletedAt").is(null)), Product.class); 
-			long totalOrders = mongoTemplate.count(new Query(Criteria.where("deletedAt").is(null)), Order.class);
+			// 7. Counts (Correctly filtering deletedAt: null) - maintained counters, count queries until they are ready
+			Long countedUsers = collectionCounters.total(CollectionCounters.userKey("user"));
+			Long countedProducts = collectionCounters.total(CollectionCounters.productKey(true));
+			Long countedOrders = collectionCounters.total(CollectionCounters.orderKey());
+			long totalUsers = countedUsers != null ? countedUsers : userRepository.countByRole("user");
+			long totalProducts = countedProducts != null ? countedProducts : mongoTemplate.count(new Query(Criteria.where("deletedAt").is(null)), Product.class); 
+			long totalOrders = countedOrders != null ? countedOrders : mongoTemplate.count(new Query(Criteria.where("deletedAt").is(null)), Order.class);
 
 			Map<String, Object> response = new HashMap<>();
 			response.put("totalRevenue", totalRevenue);
@@ -158,7 +199,8 @@ public class AdminController {
 										 @RequestParam(defaultValue = "10") int limit,
 										 @RequestParam(required = false) String search,
 										 @RequestParam(required = false) String authType,
-										 @RequestParam(required = false) String status) {
+										 @RequestParam(required = false) String status,
+										 @RequestParam(defaultValue = "false") boolean stream) {
 		Criteria criteria = Criteria.where("role").is("user");
 		if (search != null && !search.isEmpty()) {
 			criteria.orOperator(
@@ -173,7 +215,16 @@ public class AdminController {
 		}
 
 		Query query = new Query(criteria).with(Sort.by(Sort.Direction.DESC, "createdAt"));
-		long total = mongoTemplate.count(query, User.class);
+		// ?stream=true: every match as NDJSON from a cursor, no paging
+		if (stream) return ndjsonStreamer.stream(query, User.class);
+
+		Long counted = null;
+		if (search == null || search.isEmpty()) {
+			String authKey = authType != null && !authType.equals("all") ? authType : null;
+			Boolean blockedKey = "active".equals(status) ? Boolean.FALSE : "blocked".equals(status) ? Boolean.TRUE : null;
+			counted = collectionCounters.total(CollectionCounters.userKey("user", authKey, blockedKey));
+		}
+		long total = counted != null ? counted : mongoTemplate.count(query, User.class);
 		query.with(org.springframework.data.domain.PageRequest.of(page - 1, limit));
 		List<User> users = mongoTemplate.find(query, User.class);
 
@@ -188,8 +239,10 @@ public class AdminController {
 		if (user.getId().equals(userDetails.getId())) return ResponseEntity.badRequest().body(Map.of("message", "Không thể tự khóa chính mình"));
 		if (user.getRole().equals("super_admin")) return ResponseEntity.status(403).body(Map.of("message", "Không thể khóa tài khoản Super Admin"));
 
+		Set<String> counterKeys = collectionCounters.userKeys(user);
 		user.setBlocked(!user.isBlocked());
 		userRepository.save(user);
+		collectionCounters.move(counterKeys, collectionCounters.userKeys(user));
 
 		return ResponseEntity.ok(Map.of("message", "Đã " + (user.isBlocked() ? "khóa" : "mở khóa") + " tài khoản thành công", "isBlocked", user.isBlocked()));
 	}
@@ -203,7 +256,10 @@ public class AdminController {
 		if (search != null && !search.isEmpty()) criteria.and("username").regex(search, "i");
 		
 		Query query = new Query(criteria).with(Sort.by(Sort.Direction.DESC, "createdAt"));
-		long total = mongoTemplate.count(query, User.class);
+		Long counted = (search == null || search.isEmpty())
+				? collectionCounters.total(CollectionCounters.userKey("admin"), CollectionCounters.userKey("super_admin"))
+				: null;
+		long total = counted != null ? counted : mongoTemplate.count(query, User.class);
 		query.with(org.springframework.data.domain.PageRequest.of(page - 1, limit));
 		
 		return ResponseEntity.ok(Map.of("contents", mongoTemplate.find(query, User.class), "total", total, "page", page, "limit", limit));
@@ -221,6 +277,7 @@ public class AdminController {
 				.authType("local")
 				.build();
 		userRepository.save(admin);
+		collectionCounters.created(collectionCounters.userKeys(admin));
 		return ResponseEntity.status(201).body(Map.of("message", "Admin created successfully"));
 	}
 
@@ -231,7 +288,8 @@ public class AdminController {
 			@RequestParam(required = false) String search,
 			@RequestParam(required = false) String status,
 			@RequestParam(defaultValue = "0") String sortType,
-			@RequestParam(required = false) String category) {
+			@RequestParam(required = false) String category,
+			@RequestParam(required = false) String after) {
 		
 		Criteria criteria = new Criteria();
 		if ("active".equals(status)) criteria.and("deletedAt").is(null);
@@ -245,34 +303,147 @@ public class AdminController {
 
 		Sort sort = Sort.by(Sort.Direction.DESC, "createdAt");
 		
-		Query query = new Query(criteria).with(sort);
-		long total = mongoTemplate.count(query, Product.class);
-		query.with(org.springframework.data.domain.PageRequest.of(page - 1, limit));
-		List<Product> products = mongoTemplate.find(query, Product.class);
+		long total = 0;
+		List<Product> products;
+		String nextCursor = null;
+		if (after != null) {
+			// Cursor mode: range scan on (sort field, _id) from the last row, no skip and no count. The token names
+			// the sort it was issued for, so a token from another sortType is refused
+			if (!KeysetCursor.supports(sortType)) {
+				return ResponseEntity.badRequest().body(Map.of("message", "sortType " + sortType + " is not supported with cursor paging"));
+			}
+			Sort keysetSort = KeysetCursor.sortFor(sortType);
+			Query query = new Query(criteria);
+			if (!after.isEmpty()) {
+				try {
+					query.addCriteria(new Criteria().andOperator(KeysetCursor.decode(after, keysetSort).toCriteria()));
+				} catch (IllegalArgumentException e) {
+					return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+				}
+			}
+			query.with(keysetSort).limit(limit + 1);
+			products = mongoTemplate.find(query, Product.class);
+			if (products.size() > limit) {
+				products = products.subList(0, limit);
+				nextCursor = KeysetCursor.encode(keysetSort, products.get(products.size() - 1));
+			}
+		} else {
+			Query query = new Query(criteria).with(sort);
+			Long counted = null;
+			if (search == null || search.isEmpty()) {
+				boolean hasCategory = category != null && !category.equals("all");
+				List<Boolean> states = "active".equals(status) ? List.of(true) : "inactive".equals(status) ? List.of(false) : List.of(true, false);
+				counted = collectionCounters.total(states.stream()
+						.map(active -> hasCategory ? CollectionCounters.productKey(active, category) : CollectionCounters.productKey(active))
+						.toArray(String[]::new));
+			}
+			total = counted != null ? counted : mongoTemplate.count(query, Product.class);
+			query.with(org.springframework.data.domain.PageRequest.of(page - 1, limit));
+			products = mongoTemplate.find(query, Product.class);
+		}
+
+		// hasOrders from the maintained count; products the backfill hasn't reached yet (orderCount null) are
+		// looked up in orders, one findDistinct for the page, like deleteProduct does per product
+		List<String> uncounted = products.stream().filter(p -> p.getOrderCount() == null).map(Product::getId).toList();
+		Set<String> ordered = uncounted.isEmpty() ? Set.of() : new HashSet<>(mongoTemplate.findDistinct(
+				new Query(Criteria.where("items.productId").in(uncounted)), "items.productId", Order.class, String.class));
 
-		List<String> productIds = products.stream().map(Product::getId).collect(Collectors.toList());
-		List<String> orderedIds = mongoTemplate.findDistinct(
-				new Query(Criteria.where("items.productId").in(productIds)), 
-				"items.productId", Order.class, String.class);
-		Set<String> orderedSet = new HashSet<>(orderedIds);
-		
 		com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
 
 		List<Map<String, Object>> content = products.stream().map(p -> {
 			Map<String, Object> map = mapper.convertValue(p, Map.class);
-			map.put("hasOrders", orderedSet.contains(p.getId()));
+			map.put("hasOrders", p.getOrderCount() != null ? p.isHasOrders() : ordered.contains(p.getId()));
 			return map;
 		}).collect(Collectors.toList());
 		
+		if (after != null) {
+			Map<String, Object> response = new HashMap<>();
+			response.put("contents", content);
+			response.put("limit", limit);
+			response.put("hasMore", nextCursor != null);
+			response.put("nextCursor", nextCursor);
+			return ResponseEntity.ok(response);
+		}
 		return ResponseEntity.ok(Map.of("contents", content, "total", total, "page", page, "limit", limit));
 	}
 
+	// Bulk import: raw CSV (header row) or NDJSON body, parsed as it arrives
+	@PostMapping(value = "/products/import", consumes = {"text/csv", "application/x-ndjson"})
+	public ResponseEntity<?> importProducts(HttpServletRequest request) {
+		try {
+			boolean csv = request.getContentType() != null && request.getContentType().startsWith("text/csv");
+			return ResponseEntity.ok(productTransferService.importProducts(request.getInputStream(), csv));
+		} catch (Exception e) {
+			e.printStackTrace();
+			return ResponseEntity.internalServerError().body(Map.of("message", e.getMessage()));
+		}
+	}
+
+	@GetMapping("/products/export")
+	public ResponseEntity<?> exportProducts(@RequestParam(defaultValue = "ndjson") String format,
+			@RequestParam(defaultValue = "all") String status) {
+		Query query = new Query(CatalogFilter.builder().status(status).build().toCriteria())
+				.with(Sort.by(Sort.Direction.ASC, "_id"));
+		if ("csv".equals(format)) {
+			return ResponseEntity.ok()
+					.contentType(MediaType.parseMediaType("text/csv; charset=UTF-8"))
+					.header("Content-Disposition", "attachment; filename=\"products.csv\"")
+					.body(productTransferService.exportCsv(query));
+		}
+		return ndjsonStreamer.stream(query, Product.class);
+	}
+
+	// Stock adjustment ({size, delta}) as an $inc, so it adds to whatever checkouts did meanwhile; a negative
+	// delta only applies while that many units are left
+	@PatchMapping("/products/{productId}/stock")
+	public ResponseEntity<?> adjustStock(@PathVariable String productId, @RequestBody Map<String, Object> request) {
+		String size = request.get("size") != null ? String.valueOf(request.get("size")) : null;
+		int delta;
+		try {
+			delta = Integer.parseInt(String.valueOf(request.get("delta")));
+		} catch (NumberFormatException e) {
+			return ResponseEntity.badRequest().body(Map.of("message", "delta must be an integer"));
+		}
+		if (size == null || delta == 0) return ResponseEntity.badRequest().body(Map.of("message", "size and a non-zero delta are required"));
+
+		Criteria sizeCriteria = Criteria.where("name").is(size);
+		if (delta < 0) sizeCriteria = sizeCriteria.and("amount").gte(-delta);
+		Product updated = mongoTemplate.findAndModify(
+				new Query(Criteria.where("_id").is(productId).and("size").elemMatch(sizeCriteria)),
+				new Update().inc("size.$.amount", delta).set("updatedAt", new Date()),
+				FindAndModifyOptions.options().returnNew(true), Product.class);
+		if (updated == null) {
+			boolean exists = mongoTemplate.exists(new Query(Criteria.where("_id").is(productId).and("size.name").is(size)), Product.class);
+			if (!exists) return ResponseEntity.status(404).body(Map.of("message", "Product or size not found"));
+			return ResponseEntity.status(409).body(Map.of("message", "Not enough stock to remove " + (-delta) + " units"));
+		}
+		eventPublisher.publishEvent(new StockChangedEvent(productId));
+		return ResponseEntity.ok(Map.of("message", "Stock updated successfully", "data", updated));
+	}
+
+	// Recount Product.orderCount from orders (also runs nightly)
+	@PostMapping("/products/order-counts/backfill")
+	public ResponseEntity<?> backfillOrderCounts() {
+		long updated = productOrderCounts.backfill();
+		if (updated < 0) return ResponseEntity.status(409).body(Map.of("message", "Backfill already running"));
+		return ResponseEntity.ok(Map.of("updated", updated));
+	}
+
+	// Recount the sales rollups from orders (also runs nightly)
+	@PostMapping("/sales-rollups/rebuild")
+	public ResponseEntity<?> rebuildSalesRollups() {
+		long rollups = salesRollupService.rebuild();
+		if (rollups < 0) return ResponseEntity.status(409).body(Map.of("message", "Rebuild already running"));
+		return ResponseEntity.ok(Map.of("rollups", rollups));
+	}
+
 	// --- 5. ORDER MANAGEMENT ---
 	@GetMapping("/orders")
 	public ResponseEntity<?> getAllOrders(@RequestParam(defaultValue = "1") int page,
 										  @RequestParam(defaultValue = "10") int limit,
 										  @RequestParam(required = false) String search,
-										  @RequestParam(required = false) String status) {
+										  @RequestParam(required = false) String status,
+										  @RequestParam(defaultValue = "false") boolean stream) {
 		Criteria criteria = Criteria.where("deletedAt").is(null);
 		if (status != null && !status.equals("all")) criteria.and("deliveryStatus").is(status);
 		if (search != null && !search.isEmpty()) {
@@ -284,7 +455,13 @@ public class AdminController {
 		}
 		
 		Query query = new Query(criteria).with(Sort.by(Sort.Direction.DESC, "createdAt"));
-		long total = mongoTemplate.count(query, Order.class);
+		if (stream) return ndjsonStreamer.stream(query, Order.class);
+
+		Long counted = null;
+		if (search == null || search.isEmpty()) {
+			counted = collectionCounters.total(status != null && !status.equals("all") ? CollectionCounters.orderKey(status) : CollectionCounters.orderKey());
+		}
+		long total = counted != null ? counted : mongoTemplate.count(query, Order.class);
 		query.with(org.springframework.data.domain.PageRequest.of(page - 1, limit));
 		List<Order> orders = mongoTemplate.find(query, Order.class);
 		
@@ -294,30 +471,89 @@ public class AdminController {
 	@PutMapping("/orders/{orderId}")
 	public ResponseEntity<?> updateOrderStatus(@PathVariable String orderId, @RequestBody Map<String, String> body) {
 		String deliveryStatus = body.get("deliveryStatus");
-		Order order = orderRepository.findById(orderId).orElse(null);
-		if (order == null) return ResponseEntity.status(404).body(Map.of("message", "Order not found"));
-		
-		order.setDeliveryStatus(deliveryStatus);
-		
-		// Auto update payment logic
-		if ("cancelled".equals(deliveryStatus)) {
-			order.setPaymentStatus("cancelled");
-		} else if ("delivered".equals(deliveryStatus)) {
-			if (!"completed".equals(order.getPaymentStatus())) {
-				order.setPaymentStatus("paid");
-				if (order.getPaymentInfo().getPaidAt() == null) {
-					order.getPaymentInfo().setPaidAt(new Date());
+		// Conditional on the statuses read: the payment callback or the reservation expiry may change the order
+		// meanwhile, and a blind save would write back their old values (re-reserving released stock, say).
+		// A lost race re-reads and applies the admin's status to the current order
+		for (int attempt = 0; attempt < 3; attempt++) {
+			Order order = orderRepository.findById(orderId).orElse(null);
+			if (order == null) return ResponseEntity.status(404).body(Map.of("message", "Order not found"));
+			Set<String> counterKeys = collectionCounters.orderKeys(order);
+			String previousPaymentStatus = order.getPaymentStatus();
+			String previousDeliveryStatus = order.getDeliveryStatus();
+			Date now = new Date();
+
+			Update update = new Update().set("deliveryStatus", deliveryStatus).set("updatedAt", now);
+			// Auto update payment logic
+			if ("cancelled".equals(deliveryStatus)) {
+				update.set("paymentStatus", "cancelled");
+			} else if ("delivered".equals(deliveryStatus)) {
+				if (!"completed".equals(previousPaymentStatus)) {
+					update.set("paymentStatus", "paid");
+					if (order.getPaymentInfo() == null) {
+						Order.PaymentInfo info = new Order.PaymentInfo();
+						info.setPaidAt(now);
+						update.set("paymentInfo", info);
+					} else if (order.getPaymentInfo().getPaidAt() == null) {
+						update.set("paymentInfo.paidAt", now);
+					}
+				}
+			} else {
+				// Reset to pending if COD and not completed
+				if ("cod".equals(order.getPaymentMethods())) {
+					update.set("paymentStatus", "pending");
 				}
 			}
-		} else {
-			// Reset to pending if COD and not completed
-			if ("cod".equals(order.getPaymentMethods())) {
-				order.setPaymentStatus("pending");
-			}
+
+			Order updated = mongoTemplate.findAndModify(
+					new Query(Criteria.where("_id").is(orderId)
+							.and("deliveryStatus").is(previousDeliveryStatus)
+							.and("paymentStatus").is(previousPaymentStatus)),
+					update, FindAndModifyOptions.options().returnNew(true), Order.class);
+			if (updated == null) continue;
+
+			collectionCounters.move(counterKeys, collectionCounters.orderKeys(updated));
+			eventPublisher.publishEvent(new OrderStatusChangedEvent(updated, previousPaymentStatus, previousDeliveryStatus));
+			return ResponseEntity.ok(Map.of("message", "Update status successfully", "data", updated));
 		}
-		
-		orderRepository.save(order);
-		return ResponseEntity.ok(Map.of("message", "Update status successfully", "data", order));
+		return ResponseEntity.status(409).body(Map.of("message", "Order is being updated, try again"));
+	}
+
+	// --- 6. INDEXES ---
+	@GetMapping("/indexes")
+	public ResponseEntity<?> getIndexStatus() {
+		return ResponseEntity.ok(indexManager.status());
+	}
+
+	// explain() of every query shape the controllers issue + $indexStats per collection
+	@GetMapping("/indexes/report")
+	public ResponseEntity<?> getIndexReport() {
+		try {
+			return ResponseEntity.ok(indexManager.report());
+		} catch (Exception e) {
+			e.printStackTrace();
+			return ResponseEntity.internalServerError().body(Map.of("message", e.getMessage()));
+		}
+	}
+
+	// --- 7. CHECKOUT ADMISSION ---
+	@GetMapping("/admission")
+	public ResponseEntity<?> getAdmissionStatus() {
+		return ResponseEntity.ok(checkoutAdmission.status());
+	}
+
+	// Flash sale tuning: {"ratePerSecond": 20, "burst": 40}; a rate of 0 removes the product's limit
+	@PutMapping("/admission/products/{productId}")
+	public ResponseEntity<?> setProductAdmissionRate(@PathVariable String productId, @RequestBody Map<String, Object> request) {
+		double ratePerSecond;
+		double burst;
+		try {
+			ratePerSecond = Double.parseDouble(String.valueOf(request.get("ratePerSecond")));
+			burst = request.get("burst") != null ? Double.parseDouble(String.valueOf(request.get("burst"))) : ratePerSecond;
+		} catch (NumberFormatException e) {
+			return ResponseEntity.badRequest().body(Map.of("message", "ratePerSecond and burst must be numbers"));
+		}
+		checkoutAdmission.setProductRate(productId, ratePerSecond, burst);
+		return ResponseEntity.ok(Map.of("message", "Update admission rate successfully", "data", checkoutAdmission.status()));
 	}
 
 	@DeleteMapping("/managers/{userId}")
@@ -325,7 +561,10 @@ public class AdminController {
 		if (userId.equals(userDetails.getId())) {
 			return ResponseEntity.badRequest().body(Map.of("message", "Cannot delete yourself"));
 		}
-		userRepository.deleteById(userId);
+		userRepository.findById(userId).ifPresent(user -> {
+			userRepository.delete(user);
+			collectionCounters.removed(collectionCounters.userKeys(user));
+		});
 		return ResponseEntity.ok(Map.of("message", "Admin deleted successfully"));
 	}
 
@@ -333,6 +572,7 @@ public class AdminController {
 	public ResponseEntity<?> updateAdmin(@PathVariable String userId, @RequestBody User updates) {
 		User admin = userRepository.findById(userId).orElse(null);
 		if (admin == null) return ResponseEntity.status(404).body(Map.of("message", "Admin not found"));
+		Set<String> counterKeys = collectionCounters.userKeys(admin);
 
 		if (updates.getUsername() != null) admin.setUsername(updates.getUsername());
 		if (updates.getPassword() != null && !updates.getPassword().trim().isEmpty()) {
@@ -341,6 +581,7 @@ public class AdminController {
 		if (updates.getRole() != null) admin.setRole(updates.getRole());
 
 		userRepository.save(admin);
+		collectionCounters.move(counterKeys, collectionCounters.userKeys(admin));
 		return ResponseEntity.ok(Map.of("message", "Admin updated successfully", "data", admin));
 	}
 
@@ -352,8 +593,10 @@ public class AdminController {
 		if (user.getId().equals(userDetails.getId())) return ResponseEntity.badRequest().body(Map.of("message", "Không thể tự khóa chính mình"));
 		if (user.getRole().equals("super_admin")) return ResponseEntity.status(403).body(Map.of("message", "Không thể khóa tài khoản Super Admin"));
 
+		Set<String> counterKeys = collectionCounters.userKeys(user);
 		user.setBlocked(!user.isBlocked());
 		userRepository.save(user);
+		collectionCounters.move(counterKeys, collectionCounters.userKeys(user));
 
 		return ResponseEntity.ok(Map.of("message", "Đã " + (user.isBlocked() ? "khóa" : "mở khóa") + " tài khoản thành công", "isBlocked", user.isBlocked()));
 	}
@@ -6,6 +6,7 @@ import com.ecommerce.backend.payload.request.SignupRequest;
 import com.ecommerce.backend.payload.response.JwtResponse;
 import com.ecommerce.backend.payload.response.MessageResponse;
 import com.ecommerce.backend.repository.UserRepository;
+import com.ecommerce.backend.service.CollectionCounters;
 import com.ecommerce.backend.util.JwtUtils;
 import com.ecommerce.backend.service.MailService;
 import jakarta.validation.Valid;
@@ -30,6 +31,9 @@ public class AuthController {
 	@Autowired
 	JwtUtils jwtUtils;
 
+	@Autowired
+	CollectionCounters collectionCounters;
+
 	@PostMapping("/login")
 	public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
 		
@@ -87,6 +91,7 @@ public class AuthController {
 				.build();
 
 		userRepository.save(user);
+		collectionCounters.created(collectionCounters.userKeys(user));
 		
 		System.out.println("DEBUG: Saved user password from DB: " + userRepository.findByUsername(signUpRequest.getUsername()).get().getPassword());
 
@@ -173,6 +178,7 @@ public class AuthController {
 						.role("user") 
 						.build();
 				userRepository.save(user);
+				collectionCounters.created(collectionCounters.userKeys(user));
 			}
 
 			String jwt = jwtUtils.generateJwtToken(user);
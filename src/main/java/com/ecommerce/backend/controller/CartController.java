@@ -4,16 +4,18 @@ import com.ecommerce.backend.model.Cart;
 import com.ecommerce.backend.model.Product;
 import com.ecommerce.backend.payload.response.CartItemResponse;
 
-import com.ecommerce.backend.repository.CartRepository;
 import com.ecommerce.backend.repository.ProductRepository;
+import com.ecommerce.backend.service.CartService;
+import com.ecommerce.backend.service.IdempotencyService;
+import com.ecommerce.backend.service.ProductCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.stream.Collectors;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -21,116 +23,148 @@ import java.util.stream.Collectors;
 @RequestMapping("/api")
 public class CartController {
 
-	@Autowired
-	CartRepository cartRepository;
+	private static final int MAX_BATCH_OPERATIONS = 200;
 
 	@Autowired
 	ProductRepository productRepository;
 
+	@Autowired
+	ProductCache productCache;
+
+	@Autowired
+	CartService cartService;
+
+	@Autowired
+	IdempotencyService idempotencyService;
+
 	@GetMapping("/cart/{userId}")
 	public ResponseEntity<?> getCart(@PathVariable String userId) {
 		try {
-			List<Cart> carts = cartRepository.findByUserId(userId);
-			
-			// Get product details
-			List<String> productIds = carts.stream().map(Cart::getProductId).collect(Collectors.toList());
-			List<Product> products = productRepository.findAllById(productIds);
-			
-			Map<String, Product> productMap = products.stream()
-					.collect(Collectors.toMap(Product::getId, p -> p, (p1, p2) -> p1)); // Handle duplicate IDs if any
-
-			List<CartItemResponse> response = carts.stream().map(item -> {
-				Product p = productMap.get(item.getProductId());
-				if (p == null) return null; // Logic implies product exists
-				
-				return CartItemResponse.builder()
-						.name(p.getName())
-						.price(p.getPrice())
-						.quantity(item.getQuantity())
-						.size(item.getSize())
-						.sku("87654") // Hardcoded in Node.js
-						.total(item.getQuantity() * p.getPrice())
-						.images(p.getImages())
-						.productId(item.getProductId())
-						.userId(item.getUserId())
-						.build();
-			}).filter(Objects::nonNull).collect(Collectors.toList());
-
-			return ResponseEntity.ok(Map.of("msg", "Get cart successfully", "data", response));
+			List<Cart> carts = cartService.findActive(userId);
+			return ResponseEntity.ok(Map.of("msg", "Get cart successfully", "data", hydrate(carts)));
 		} catch (Exception e) {
 			return ResponseEntity.internalServerError().body(Map.of("msg", "Failed to retrieve cart", "error", e.getMessage()));
 		}
 	}
 
+	// Guest cart sync after login / cart page bulk edits: the operations are applied in order in one write
+	// and the resulting cart comes back, instead of one POST /cart per line plus a reload
+	@PostMapping("/cart/batch")
+	public ResponseEntity<?> batchCart(@RequestBody Map<String, Object> request) {
+		String userId = (String) request.get("userId");
+		if (userId == null || !(request.get("operations") instanceof List<?> rawOperations) || rawOperations.isEmpty()) {
+			return ResponseEntity.badRequest().body(Map.of("msg", "Missing userId or operations"));
+		}
+		if (rawOperations.size() > MAX_BATCH_OPERATIONS) {
+			return ResponseEntity.badRequest().body(Map.of("msg", "At most " + MAX_BATCH_OPERATIONS + " operations per batch"));
+		}
+
+		List<CartService.Operation> operations = new ArrayList<>();
+		for (int i = 0; i < rawOperations.size(); i++) {
+			CartService.Operation operation = parseOperation(rawOperations.get(i));
+			if (operation == null) {
+				return ResponseEntity.badRequest().body(Map.of("msg", "Invalid operation at index " + i));
+			}
+			operations.add(operation);
+		}
+
+		try {
+			List<Cart> carts = cartService.applyBatch(userId, operations);
+			return ResponseEntity.ok(Map.of("msg", "Update cart successfully", "data", hydrate(carts)));
+		} catch (Exception e) {
+			e.printStackTrace();
+			return ResponseEntity.internalServerError().body(Map.of("msg", "Failed to update cart", "error", e.getMessage()));
+		}
+	}
+
+	// {"op": "add" | "set" | "decrease" | "remove", "productId", "size", "quantity"}; null when invalid
+	private static CartService.Operation parseOperation(Object raw) {
+		if (!(raw instanceof Map<?, ?> values)) return null;
+		CartService.Operation.Type type;
+		try {
+			type = CartService.Operation.Type.valueOf(String.valueOf(values.get("op")).toUpperCase());
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+		if (!(values.get("productId") instanceof String productId) || productId.isBlank()) return null;
+		Object size = values.get("size");
+		if (size != null && !(size instanceof String)) return null;
+
+		int quantity = 0;
+		if (type != CartService.Operation.Type.REMOVE) {
+			try {
+				quantity = Integer.parseInt(String.valueOf(values.get("quantity")));
+			} catch (NumberFormatException e) {
+				return null;
+			}
+			// set 0 removes the line; add / decrease need a positive amount
+			if (quantity < 0 || (quantity == 0 && type != CartService.Operation.Type.SET)) return null;
+		}
+		return new CartService.Operation(type, productId, (String) size, quantity);
+	}
+
+	// Cart lines with their product details, fetched in one multi-get
+	private List<CartItemResponse> hydrate(List<Cart> carts) {
+		List<String> productIds = carts.stream().map(Cart::getProductId).collect(Collectors.toList());
+		List<Product> products = productCache.findAllById(productIds);
+
+		Map<String, Product> productMap = products.stream()
+				.collect(Collectors.toMap(Product::getId, p -> p, (p1, p2) -> p1)); // Handle duplicate IDs if any
+
+		return carts.stream().map(item -> {
+			Product p = productMap.get(item.getProductId());
+			if (p == null) return null; // Logic implies product exists
+
+			return CartItemResponse.builder()
+					.name(p.getName())
+					.price(p.getPrice())
+					.quantity(item.getQuantity())
+					.size(item.getSize())
+					.sku("87654") // Hardcoded in Node.js
+					.total(item.getQuantity() * p.getPrice())
+					.images(p.getImages())
+					.productId(item.getProductId())
+					.userId(item.getUserId())
+					.build();
+		}).filter(Objects::nonNull).collect(Collectors.toList());
+	}
+
 	@PostMapping("/cart")
-	public ResponseEntity<?> addToCart(@RequestBody Map<String, Object> request) {
+	public ResponseEntity<?> addToCart(@RequestBody Map<String, Object> request,
+			@RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
 		String userId = (String) request.get("userId");
 		String productId = (String) request.get("productId");
 		int quantity = Integer.parseInt(request.get("quantity").toString());
 		String size = (String) request.get("size");
 		boolean isMultiple = request.containsKey("isMultiple") && (boolean) request.get("isMultiple");
 
-		// Find existing cart item: need specific find method
-		// Repository doesn't have findByUserIdAndProductIdAndSize yet. 
-		// We can fetch all by User and filter, or add method to Repo on the fly?
-		// Better to simple filter in memory or Custom query.
-		// Let's rely on fetching user cart (assuming small)
-		List<Cart> userCarts = cartRepository.findByUserId(userId);
-		Optional<Cart> existing = userCarts.stream()
-				.filter(c -> c.getProductId().equals(productId) && c.getSize().equals(size))
-				.findFirst();
-
-		Cart cart;
-		if (existing.isPresent()) {
-			cart = existing.get();
-			if (isMultiple) {
-				cart.setQuantity(quantity);
-			} else {
-				cart.setQuantity(cart.getQuantity() + quantity);
-			}
-		} else {
-			cart = Cart.builder()
-					.userId(userId)
-					.productId(productId)
-					.quantity(quantity)
-					.size(size)
-					.build();
-		}
-		
-		cartRepository.save(cart);
-		return ResponseEntity.status(201).body(Map.of("msg", "Add to cart successfully"));
+		// A retry with the same Idempotency-Key gets the first response instead of adding the quantity again
+		return idempotencyService.execute(idempotencyKey, userId, "POST /api/cart", request, () -> {
+			// Single upsert on (userId, productId, size): $set the quantity for isMultiple, $inc it otherwise
+			cartService.add(userId, productId, size, quantity, isMultiple);
+			return ResponseEntity.status(201).body(Map.of("msg", "Add to cart successfully"));
+		});
 	}
 	
 	@PostMapping("/cart/decrease")
-	public ResponseEntity<?> decreaseCart(@RequestBody Map<String, Object> request) {
+	public ResponseEntity<?> decreaseCart(@RequestBody Map<String, Object> request,
+			@RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
 		String userId = (String) request.get("userId");
 		String productId = (String) request.get("productId");
 		int quantity = Integer.parseInt(request.get("quantity").toString());
-		
-		List<Cart> userCarts = cartRepository.findByUserId(userId);
-		// Note: Node.js logic only checks productId logic in `findOne({ userId, productId })`. 
-		// It IGNORES size? Node code: `const cart = await Cart.findOne({ userId, productId });`.
-		// If user has multiple rows with same ProductID but different Size, Node code picks ONE (First match) and reduces it.
-		// THIS IS A BUG in original, but I must follow logic "preserve 100% logic".
-		
-		Optional<Cart> existing = userCarts.stream()
-				.filter(c -> c.getProductId().equals(productId))
-				.findFirst();
+		// Node.js only matched userId + productId; clients that send size now get that exact line
+		String size = (String) request.get("size");
 
-		if (existing.isEmpty()) {
-			return ResponseEntity.status(404).body(Map.of("msg", "Cart not found"));
-		}
-		
-		Cart cart = existing.get();
-		if (cart.getQuantity() == 1) { // Or quantity <= reduceAmount? Node says if quantity === 1 then delete.
-			cartRepository.delete(cart);
-			return ResponseEntity.ok(cart);
-		}
-		
-		cart.setQuantity(cart.getQuantity() - quantity);
-		cartRepository.save(cart);
-		
-		return ResponseEntity.ok(Map.of("msg", "Decrease cart successfully", "data", cart));
+		return idempotencyService.execute(idempotencyKey, userId, "POST /api/cart/decrease", request, () -> {
+			CartService.Decrease result = cartService.decrease(userId, productId, size, quantity);
+			if (result == null) {
+				return ResponseEntity.status(404).body(Map.of("msg", "Cart not found"));
+			}
+			if (result.isRemoved()) {
+				return ResponseEntity.ok(result.getCart());
+			}
+			return ResponseEntity.ok(Map.of("msg", "Decrease cart successfully", "data", result.getCart()));
+		});
 	}
 	
 	@DeleteMapping("/cart/deleteItem")
@@ -142,14 +176,8 @@ public class CartController {
 			return ResponseEntity.badRequest().body(Map.of("msg", "Missing productId or userId"));
 		}
 
-		// Same logic: Node deletes ONE item matching userId and productId
-		List<Cart> userCarts = cartRepository.findByUserId(userId);
-		Optional<Cart> existing = userCarts.stream()
-				.filter(c -> c.getProductId().equals(productId))
-				.findFirst();
-		
-		if (existing.isPresent()) {
-			cartRepository.delete(existing.get());
+		// Same logic: Node deletes ONE item matching userId and productId (and size, when given)
+		if (cartService.remove(userId, productId, request.get("size")) != null) {
 			return ResponseEntity.ok(Map.of("msg", "Delete cart successfully"));
 		} else {
 			return ResponseEntity.status(404).body(Map.of("msg", "Cart not found"));
@@ -161,11 +189,11 @@ public class CartController {
 		String userId = request.get("userId");
 		if (userId == null) return ResponseEntity.badRequest().body(Map.of("msg", "Missing userId"));
 		
-		List<Cart> carts = cartRepository.findByUserId(userId);
-		cartRepository.deleteAll(carts);
+		// One deleteMany on the active lines instead of loading them and deleting one by one
+		long deletedCount = cartService.clear(userId);
 		
 		// Node.js returns: res.send(cart) which is the delete result { acknowledged: true, deletedCount: N }
 		// We return a similar map structure to satisfy frontend expectations if it relies on "deletedCount" or simply object existence
-		return ResponseEntity.ok(Map.of("acknowledged", true, "deletedCount", carts.size())); 
+		return ResponseEntity.ok(Map.of("acknowledged", true, "deletedCount", deletedCount)); 
 	}
 }
@@ -1,24 +1,22 @@
 package com.ecommerce.backend.controller;
 
+import com.ecommerce.backend.event.CategoryChangedEvent;
 import com.ecommerce.backend.model.Category;
-import com.ecommerce.backend.model.Order;
-import com.ecommerce.backend.model.Product;
+import com.ecommerce.backend.model.SalesRollup;
 import com.ecommerce.backend.repository.CategoryRepository;
 import com.ecommerce.backend.repository.ProductRepository;
+import com.ecommerce.backend.service.CategorySnapshotService;
+import com.ecommerce.backend.service.ProductCache;
+import com.ecommerce.backend.service.SalesRollupService;
+import com.ecommerce.backend.service.trend.TrendTracker;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Sort;
-import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.data.mongodb.core.aggregation.Aggregation;
-import org.springframework.data.mongodb.core.aggregation.AggregationResults;
-import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
-import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
-
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api")
@@ -31,25 +29,37 @@ public class CategoryController {
 	ProductRepository productRepository;
 
 	@Autowired
-	MongoTemplate mongoTemplate;
+	ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	ProductCache productCache;
+
+	@Autowired
+	SalesRollupService salesRollupService;
+
+	@Autowired
+	TrendTracker trendTracker;
+
+	@Autowired
+	CategorySnapshotService categorySnapshotService;
 
 	@GetMapping("/category")
 	public ResponseEntity<?> getCategories(@RequestParam(required = false) String search) {
-		List<Category> categories = categoryRepository.findAll(Sort.by(Sort.Direction.DESC, "createdAt"));
-		
-		List<Category> activeCategories = categories.stream()
-				.filter(c -> c.getDeletedAt() == null)
-				.collect(Collectors.toList());
+		return ResponseEntity.ok(categorySnapshotService.get().search(search));
+	}
 
-		if (search != null && !search.isEmpty()) {
-			String searchLower = search.toLowerCase();
-			activeCategories = activeCategories.stream()
-					.filter(c -> c.getName().toLowerCase().contains(searchLower) || 
-							 (c.getDescription() != null && c.getDescription().toLowerCase().contains(searchLower)))
-					.collect(Collectors.toList());
-		}
+	@GetMapping("/category/slug/{slug}")
+	public ResponseEntity<?> getCategoryBySlug(@PathVariable String slug) {
+		return categorySnapshotService.get().findActiveBySlug(slug)
+				.<ResponseEntity<?>>map(ResponseEntity::ok)
+				.orElse(ResponseEntity.status(404).body(Map.of("message", "Category not found")));
+	}
 
-		return ResponseEntity.ok(activeCategories);
+	@GetMapping("/category/{id}")
+	public ResponseEntity<?> getCategoryById(@PathVariable String id) {
+		return categorySnapshotService.get().findActiveById(id)
+				.<ResponseEntity<?>>map(ResponseEntity::ok)
+				.orElse(ResponseEntity.status(404).body(Map.of("message", "Category not found")));
 	}
 
 	@PostMapping("/category")
@@ -65,7 +75,9 @@ public class CategoryController {
 				.slug(categoryRequest.getName().toLowerCase().replace(" ", "-"))
 				.build();
 
-		return ResponseEntity.status(201).body(categoryRepository.save(category));
+		Category saved = categoryRepository.save(category);
+		eventPublisher.publishEvent(new CategoryChangedEvent(saved.getId()));
+		return ResponseEntity.status(201).body(saved);
 	}
 
 	@PutMapping("/category/{id}")
@@ -77,14 +89,17 @@ public class CategoryController {
 			if (updates.getName() != null) {
 				category.setSlug(updates.getName().toLowerCase().replace(" ", "-"));
 			}
-			return ResponseEntity.ok(categoryRepository.save(category));
+			Category saved = categoryRepository.save(category);
+			eventPublisher.publishEvent(new CategoryChangedEvent(saved.getId()));
+			return ResponseEntity.ok(saved);
 		}).orElse(ResponseEntity.status(404).body(Category.builder().build()));
 	}
 
 	@DeleteMapping("/category/{id}")
 	public ResponseEntity<?> deleteCategory(@PathVariable String id) {
-		if (productRepository.countByCategory(id) > 0) {
-			long count = productRepository.countByCategory(id);
+		// Authoritative count for the write decision (the snapshot's count only covers active products)
+		long count = productRepository.countByCategory(id);
+		if (count > 0) {
 			return ResponseEntity.badRequest().body(Map.of("message", 
 					"Không thể xóa! Có " + count + " sản phẩm thuộc danh mục này. Vui lòng chuyển chúng sang danh mục khác trước khi xóa."));
 		}
@@ -92,6 +107,7 @@ public class CategoryController {
 		return categoryRepository.findById(id).map(category -> {
 			category.setDeletedAt(new Date());
 			categoryRepository.save(category);
+			eventPublisher.publishEvent(new CategoryChangedEvent(category.getId()));
 			return ResponseEntity.ok(Map.of("message", "Category deleted successfully"));
 		}).orElse(ResponseEntity.status(404).body(Map.of("message", "Category not found")));
 	}
@@ -99,58 +115,30 @@ public class CategoryController {
 	@GetMapping("/category/popular")
 	public ResponseEntity<?> getPopularCategories() {
 		try {
-			// Step 1: Aggregate products with their sales data
-			Aggregation productSalesAgg = newAggregation(
-				lookup("orders", "_id", "items.productId", "salesData"),
-				unwind("salesData", true),
-				unwind("salesData.items", true),
-				match(new Criteria().orOperator(
-					Criteria.where("salesData.paymentStatus").in("paid", "completed"),
-					Criteria.where("salesData.deliveryStatus").is("delivered")
-				)),
-				match(Criteria.where("salesData.items.productId").exists(true)),
-				project()
-					.and("category").as("category")
-					.and("salesData.items.quantity").as("quantity")
-					.and("salesData.items.productId").as("itemProductId")
-					.and("_id").as("productId"),
-				match(new Criteria().andOperator(
-					Criteria.where("itemProductId").exists(true),
-					Criteria.where("productId").exists(true)
-				)),
-				project()
-					.and("category").as("category")
-					.andExpression("cond(eq(toString(productId), itemProductId), quantity, 0)").as("validQuantity"),
-				group("category").sum("validQuantity").as("totalSold")
-			);
-
-			AggregationResults<Map> results = mongoTemplate.aggregate(productSalesAgg, Product.class, Map.class);
-			Map<String, Integer> categorySalesMap = new HashMap<>();
-			
-			for (Map result : results.getMappedResults()) {
-				String catId = (String) result.get("_id");
-				Integer sold = ((Number) result.get("totalSold")).intValue();
-				categorySalesMap.put(catId, sold);
+			Map<String, Category> activeCategories = new LinkedHashMap<>();
+			categorySnapshotService.get().active().forEach(c -> activeCategories.put(c.getId(), c));
+
+			// Best sellers from the sales rollups, topped up with unsold categories
+			Map<String, Long> totalSold = new LinkedHashMap<>();
+			salesRollupService.top(SalesRollup.CATEGORY, 5, r -> activeCategories.containsKey(r.getRefId()))
+				.forEach(r -> totalSold.put(r.getRefId(), r.getQuantity()));
+			for (String id : activeCategories.keySet()) {
+				if (totalSold.size() >= 5) break;
+				totalSold.putIfAbsent(id, 0L);
 			}
 
-			// Step 2: Get all active categories and enrich with sales data
-			List<Category> allCategories = categoryRepository.findAll().stream()
-				.filter(c -> c.getDeletedAt() == null)
-				.collect(Collectors.toList());
-
-			List<Map<String, Object>> enrichedCategories = allCategories.stream()
-				.map(cat -> {
+			List<Map<String, Object>> enrichedCategories = totalSold.entrySet().stream()
+				.map(e -> {
+					Category cat = activeCategories.get(e.getKey());
 					Map<String, Object> map = new HashMap<>();
 					map.put("_id", cat.getId());
 					map.put("name", cat.getName());
 					map.put("description", cat.getDescription());
 					map.put("imageUrl", cat.getImageUrl());
 					map.put("slug", cat.getSlug());
-					map.put("totalSold", categorySalesMap.getOrDefault(cat.getId(), 0));
+					map.put("totalSold", e.getValue());
 					return map;
 				})
-				.sorted((a, b) -> ((Integer) b.get("totalSold")).compareTo((Integer) a.get("totalSold")))
-				.limit(5)
 				.collect(Collectors.toList());
 
 			return ResponseEntity.ok(enrichedCategories);
@@ -161,34 +149,18 @@ public class CategoryController {
 	}
 
 	@GetMapping("/category/trending")
-	public ResponseEntity<?> getTrendingKeywords() {
+	public ResponseEntity<?> getTrendingKeywords(@RequestParam(defaultValue = "day") String window) {
 		try {
-			// Get top 6 best-selling products and return their names as keywords
-			Aggregation trendingAgg = newAggregation(
-				match(Criteria.where("deletedAt").is(null)),
-				lookup("orders", "_id", "items.productId", "sales"),
-				unwind("sales", true),
-				unwind("sales.items", true),
-				project()
-					.and("name").as("name")
-					.and("_id").as("productId")
-					.and("sales.items.productId").as("itemProductId")
-					.and("sales.items.quantity").as("quantity"),
-				project()
-					.and("name").as("name")
-					.andExpression("cond(eq(toString(productId), itemProductId), quantity, 0)").as("validQty"),
-				group("name").sum("validQty").as("sold"),
-				sort(Sort.Direction.DESC, "sold"),
-				limit(6),
-				project().andExpression("_id").as("name")
-			);
-
-			AggregationResults<Map> results = mongoTemplate.aggregate(trendingAgg, Product.class, Map.class);
-			List<String> keywords = results.getMappedResults().stream()
-				.map(m -> ((String) m.get("name")).toLowerCase())
-				.collect(Collectors.toList());
+			// Most searched queries over the window, topped up with the names of best-selling active products
+			Set<String> keywords = new LinkedHashSet<>(trendTracker.topSearches(TrendTracker.Window.parse(window), 6));
+			if (keywords.size() < 6) {
+				salesRollupService.top(SalesRollup.PRODUCT, 6 - keywords.size(), r -> productCache.findById(r.getRefId())
+					.filter(p -> p.getDeletedAt() == null && p.getName() != null)
+					.map(p -> keywords.add(p.getName().toLowerCase()))
+					.orElse(false));
+			}
 
-			return ResponseEntity.ok(keywords);
+			return ResponseEntity.ok(new ArrayList<>(keywords));
 		} catch (Exception e) {
 			e.printStackTrace();
 			return ResponseEntity.internalServerError().body(Map.of("message", e.getMessage()));
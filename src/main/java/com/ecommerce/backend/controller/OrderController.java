@@ -1,24 +1,30 @@
 package com.ecommerce.backend.controller;
 
-import com.ecommerce.backend.model.Cart;
+import com.ecommerce.backend.event.OrderStatusChangedEvent;
 import com.ecommerce.backend.model.Order;
-import com.ecommerce.backend.model.Product;
-import com.ecommerce.backend.repository.CartRepository;
 import com.ecommerce.backend.repository.OrderRepository;
 import com.ecommerce.backend.repository.ProductRepository;
 import com.ecommerce.backend.security.service.UserDetailsImpl;
+import com.ecommerce.backend.service.CheckoutService;
+import com.ecommerce.backend.service.CollectionCounters;
+import com.ecommerce.backend.service.IdempotencyService;
+import com.ecommerce.backend.service.admission.CheckoutAdmission;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -28,99 +34,96 @@ public class OrderController {
 	@Autowired
 	OrderRepository orderRepository;
 
-	@Autowired
-	CartRepository cartRepository;
-
 	@Autowired
 	ProductRepository productRepository;
 
 	@Autowired
 	MongoTemplate mongoTemplate;
 
+	@Autowired
+	CollectionCounters collectionCounters;
+
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	CheckoutService checkoutService;
+
+	@Autowired
+	CheckoutAdmission checkoutAdmission;
+
+	@Autowired
+	IdempotencyService idempotencyService;
+
 	@PostMapping("/orders")
-	public ResponseEntity<?> createOrder(@AuthenticationPrincipal UserDetailsImpl userDetails, @RequestBody Order orderRequest) {
-		try {
-			String userId = userDetails.getId();
-			
-			// Validate required fields (matching Node.js logic exactly)
-			if (orderRequest.getFirstName() == null || orderRequest.getFirstName().trim().isEmpty() ||
-				orderRequest.getLastName() == null || orderRequest.getLastName().trim().isEmpty() ||
-				orderRequest.getCountry() == null || orderRequest.getCountry().trim().isEmpty() ||
-				orderRequest.getStreet() == null || orderRequest.getStreet().trim().isEmpty() ||
-				orderRequest.getCities() == null || orderRequest.getCities().trim().isEmpty() ||
-				orderRequest.getState() == null || orderRequest.getState().trim().isEmpty() ||
-				orderRequest.getPhone() == null || orderRequest.getPhone().trim().isEmpty() ||
-				orderRequest.getZipCode() == null || orderRequest.getZipCode().trim().isEmpty() ||
-				orderRequest.getEmail() == null || orderRequest.getEmail().trim().isEmpty() ||
-				orderRequest.getPaymentMethods() == null || orderRequest.getPaymentMethods().trim().isEmpty()) {
-				return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Vui lòng điền đầy đủ thông tin bắt buộc"));
-			}
+	public CompletableFuture<ResponseEntity<?>> createOrder(@AuthenticationPrincipal UserDetailsImpl userDetails, @RequestBody Order orderRequest,
+			@RequestHeader(value = CheckoutAdmission.QUEUE_TOKEN_HEADER, required = false) String queueToken,
+			@RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+		String userId = userDetails.getId();
+
+		// Validate required fields (matching Node.js logic exactly)
+		if (orderRequest.getFirstName() == null || orderRequest.getFirstName().trim().isEmpty() ||
+			orderRequest.getLastName() == null || orderRequest.getLastName().trim().isEmpty() ||
+			orderRequest.getCountry() == null || orderRequest.getCountry().trim().isEmpty() ||
+			orderRequest.getStreet() == null || orderRequest.getStreet().trim().isEmpty() ||
+			orderRequest.getCities() == null || orderRequest.getCities().trim().isEmpty() ||
+			orderRequest.getState() == null || orderRequest.getState().trim().isEmpty() ||
+			orderRequest.getPhone() == null || orderRequest.getPhone().trim().isEmpty() ||
+			orderRequest.getZipCode() == null || orderRequest.getZipCode().trim().isEmpty() ||
+			orderRequest.getEmail() == null || orderRequest.getEmail().trim().isEmpty() ||
+			orderRequest.getPaymentMethods() == null || orderRequest.getPaymentMethods().trim().isEmpty()) {
+			return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(Map.of("success", false, "message", "Vui lòng điền đầy đủ thông tin bắt buộc")));
+		}
+
+		// A retried checkout with the same Idempotency-Key waits for / replays the first one instead of placing a second order
+		return idempotencyService.executeAsync(idempotencyKey, userId, "POST /api/orders", orderRequest,
+				() -> admitAndCheckout(userId, orderRequest, queueToken));
+	}
 
-			List<Cart> cartItems = cartRepository.findByUserId(userId);
-			// Filter deletedAt null manually if repo returns all
-			cartItems = cartItems.stream().filter(c -> c.getDeletedAt() == null).collect(Collectors.toList());
+	private CompletableFuture<ResponseEntity<?>> admitAndCheckout(String userId, Order orderRequest, String queueToken) {
+		// Waiting room: a checkout that isn't admitted yet gets its queue token back and retries after Retry-After
+		CheckoutAdmission.Decision decision = checkoutAdmission.admit(userId, queueToken);
+		if (decision.getOutcome() == CheckoutAdmission.Outcome.QUEUED) {
+			return CompletableFuture.completedFuture(ResponseEntity.status(429)
+					.header("Retry-After", String.valueOf(decision.getRetryAfterSeconds()))
+					.header(CheckoutAdmission.QUEUE_TOKEN_HEADER, decision.getQueueToken())
+					.body(Map.of(
+							"success", false,
+							"message", "Hệ thống đang có nhiều đơn hàng, vui lòng chờ đến lượt",
+							"queueToken", decision.getQueueToken(),
+							"position", decision.getPosition(),
+							"retryAfter", decision.getRetryAfterSeconds()
+					)));
+		}
 
-			if (cartItems.isEmpty()) {
+		// Admitted checkouts run on the bounded checkout pool, so the request thread goes back to browsing traffic
+		try {
+			return checkoutAdmission.submit(() -> checkout(userId, orderRequest));
+		} catch (RejectedExecutionException e) {
+			return CompletableFuture.completedFuture(ResponseEntity.status(503)
+					.header("Retry-After", "1")
+					.body(Map.of("success", false, "message", "Hệ thống đang bận, vui lòng thử lại")));
+		}
+	}
+
+	private ResponseEntity<?> checkout(String userId, Order orderRequest) {
+		try {
+			// One cart read, one product multi-get, one order insert and one cart updateMany, in a transaction
+			CheckoutService.Result result = checkoutService.checkout(userId, orderRequest);
+			if (result.getOutcome() == CheckoutService.Outcome.EMPTY_CART) {
 				return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Giỏ hàng trống"));
 			}
-
-			double totalAmount = 0;
-			List<Order.OrderItem> orderItems = new ArrayList<>();
-
-			for (Cart cartItem : cartItems) {
-				Optional<Product> pOpt = productRepository.findById(cartItem.getProductId());
-				if (pOpt.isEmpty() || pOpt.get().getDeletedAt() != null) {
-					return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Sản phẩm với ID " + cartItem.getProductId() + " không tồn tại"));
-				}
-				Product product = pOpt.get();
-				double itemTotal = product.getPrice() * cartItem.getQuantity();
-				totalAmount += itemTotal;
-
-				orderItems.add(Order.OrderItem.builder()
-						.productId(cartItem.getProductId())
-						.quantity(cartItem.getQuantity())
-						.size(cartItem.getSize())
-						.price(product.getPrice())
-						.build());
+			if (result.getOutcome() == CheckoutService.Outcome.UNKNOWN_PRODUCT) {
+				return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Sản phẩm với ID " + result.getProductId() + " không tồn tại"));
+			}
+			if (result.getOutcome() == CheckoutService.Outcome.OUT_OF_STOCK) {
+				return ResponseEntity.status(409).body(Map.of("success", false, "message", "Sản phẩm với ID " + result.getProductId() + " (size " + result.getSize() + ") không đủ số lượng trong kho"));
 			}
-
-			Order newOrder = Order.builder()
-					.userId(userId)
-					.firstName(orderRequest.getFirstName())
-					.lastName(orderRequest.getLastName())
-					.companyName(orderRequest.getCompanyName() != null ? orderRequest.getCompanyName() : "")
-					.country(orderRequest.getCountry())
-					.street(orderRequest.getStreet())
-					.apartment(orderRequest.getApartment() != null ? orderRequest.getApartment() : "")
-					.cities(orderRequest.getCities())
-					.state(orderRequest.getState())
-					.phone(orderRequest.getPhone())
-					.zipCode(orderRequest.getZipCode())
-					.email(orderRequest.getEmail())
-					.deliveryStatus("pending")
-					.paymentMethods(orderRequest.getPaymentMethods())
-					.paymentStatus("pending")
-					.items(orderItems)
-					.totalAmount(totalAmount)
-					.build();
-
-			// Manually set timestamps to ensure they are saved
-			Date now = new Date();
-			newOrder.setCreatedAt(now);
-			newOrder.setUpdatedAt(now);
-
-			Order savedOrder = orderRepository.save(newOrder);
-
-			// Soft delete cart items
-			cartItems.forEach(c -> {
-				c.setDeletedAt(now);
-				cartRepository.save(c);
-			});
 
 			return ResponseEntity.status(201).body(Map.of(
 					"success", true,
 					"message", "Đơn hàng đã được tạo thành công",
-					"data", savedOrder
+					"data", result.getOrder()
 			));
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -149,17 +152,28 @@ public class OrderController {
 
 	@DeleteMapping("/orders/{orderId}")
 	public ResponseEntity<?> deleteOrder(@AuthenticationPrincipal UserDetailsImpl userDetails, @PathVariable String orderId) {
-		Optional<Order> orderOpt = orderRepository.findById(orderId);
-		if (orderOpt.isPresent()) {
-			Order order = orderOpt.get();
-			if (order.getUserId().equals(userDetails.getId()) && order.getDeletedAt() == null) {
-				order.setDeliveryStatus("cancelled");
-				order.setPaymentStatus("cancelled");
-				orderRepository.save(order);
-				return ResponseEntity.ok(Map.of("success", true, "message", "Xóa đơn hàng thành cong"));
+		// Conditional on the statuses read, so a payment callback or reservation expiry landing in between isn't
+		// overwritten; a lost race re-reads the order
+		for (int attempt = 0; attempt < 3; attempt++) {
+			Order order = orderRepository.findById(orderId).orElse(null);
+			if (order == null || !order.getUserId().equals(userDetails.getId()) || order.getDeletedAt() != null) {
+				return ResponseEntity.status(404).body(Map.of("success", false, "message", "Không tìm thấy đơn hàng"));
 			}
+			Set<String> counterKeys = collectionCounters.orderKeys(order);
+			String previousPaymentStatus = order.getPaymentStatus();
+			String previousDeliveryStatus = order.getDeliveryStatus();
+			Order updated = mongoTemplate.findAndModify(
+					new Query(Criteria.where("_id").is(orderId).and("deletedAt").is(null)
+							.and("deliveryStatus").is(previousDeliveryStatus)
+							.and("paymentStatus").is(previousPaymentStatus)),
+					new Update().set("deliveryStatus", "cancelled").set("paymentStatus", "cancelled").set("updatedAt", new Date()),
+					FindAndModifyOptions.options().returnNew(true), Order.class);
+			if (updated == null) continue;
+			collectionCounters.move(counterKeys, collectionCounters.orderKeys(updated));
+			eventPublisher.publishEvent(new OrderStatusChangedEvent(updated, previousPaymentStatus, previousDeliveryStatus));
+			return ResponseEntity.ok(Map.of("success", true, "message", "Xóa đơn hàng thành cong"));
 		}
-		return ResponseEntity.status(404).body(Map.of("success", false, "message", "Không tìm thấy đơn hàng"));
+		return ResponseEntity.status(409).body(Map.of("success", false, "message", "Đơn hàng đang được cập nhật, vui lòng thử lại"));
 	}
 
 	@PutMapping("/orders/{orderId}")
@@ -175,23 +189,31 @@ public class OrderController {
 				return ResponseEntity.status(403).body(Map.of("success", false, "message", "Không thể chỉnh sửa đơn hàng đã được xử lý"));
 			}
 			
-			// Updates
-			if (updates.getFirstName() != null) order.setFirstName(updates.getFirstName());
-			if (updates.getLastName() != null) order.setLastName(updates.getLastName());
-			if (updates.getPhone() != null) order.setPhone(updates.getPhone());
-			if (updates.getEmail() != null) order.setEmail(updates.getEmail());
-			if (updates.getStreet() != null) order.setStreet(updates.getStreet());
-			if (updates.getApartment() != null) order.setApartment(updates.getApartment());
-			if (updates.getCities() != null) order.setCities(updates.getCities());
-			if (updates.getState() != null) order.setState(updates.getState());
-			if (updates.getCountry() != null) order.setCountry(updates.getCountry());
+			// Updates: only the contact / address fields, and only while the order is still pending - the expiry
+			// may cancel it between the read and this write
+			Update update = new Update().set("updatedAt", new Date());
+			if (updates.getFirstName() != null) update.set("firstName", updates.getFirstName());
+			if (updates.getLastName() != null) update.set("lastName", updates.getLastName());
+			if (updates.getPhone() != null) update.set("phone", updates.getPhone());
+			if (updates.getEmail() != null) update.set("email", updates.getEmail());
+			if (updates.getStreet() != null) update.set("street", updates.getStreet());
+			if (updates.getApartment() != null) update.set("apartment", updates.getApartment());
+			if (updates.getCities() != null) update.set("cities", updates.getCities());
+			if (updates.getState() != null) update.set("state", updates.getState());
+			if (updates.getCountry() != null) update.set("country", updates.getCountry());
 			
-			order.setUpdatedAt(new Date());
+			Order updated = mongoTemplate.findAndModify(
+					new Query(Criteria.where("_id").is(orderId).and("userId").is(userDetails.getId())
+							.and("deliveryStatus").is("pending").and("deletedAt").is(null)),
+					update, FindAndModifyOptions.options().returnNew(true), Order.class);
+			if (updated == null) {
+				return ResponseEntity.status(403).body(Map.of("success", false, "message", "Không thể chỉnh sửa đơn hàng đã được xử lý"));
+			}
 			
 			return ResponseEntity.ok(Map.of(
 					"success", true,
 					"message", "Cập nhật thông tin đơn hàng thành công",
-					"data", orderRepository.save(order)
+					"data", updated
 			));
 		}
 		return ResponseEntity.status(404).body(Map.of("success", false, "message", "Không tìm thấy đơn hàng"));
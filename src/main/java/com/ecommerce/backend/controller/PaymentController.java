@@ -1,9 +1,16 @@
 package com.ecommerce.backend.controller;
 
+import com.ecommerce.backend.event.OrderStatusChangedEvent;
 import com.ecommerce.backend.model.Order;
 import com.ecommerce.backend.repository.OrderRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,6 +26,12 @@ public class PaymentController {
 
 	@Autowired
 	OrderRepository orderRepository;
+
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	MongoTemplate mongoTemplate;
 	
 	@Value("${sepay.api.key:YOUR_SEPAY_API_KEY}") // Should be in properties
 	private String sepayApiKey;
@@ -86,12 +99,7 @@ public class PaymentController {
 				return ResponseEntity.ok(Map.of("success", true, "message", "Payment amount insufficient"));
 			}
 
-			order.setPaymentStatus("completed");
-			order.setUpdatedAt(new Date());
-			
-			Order.PaymentInfo info = order.getPaymentInfo();
-			if (info == null) info = new Order.PaymentInfo();
-			
+			Order.PaymentInfo info = new Order.PaymentInfo();
 			info.setSepayTransactionId(request.get("id") instanceof Number ? (Number) request.get("id") : null);
 			info.setGateway((String) request.get("gateway"));
 			info.setTransactionDate((String) request.get("transactionDate"));
@@ -100,10 +108,34 @@ public class PaymentController {
 			info.setReferenceCode((String) request.get("referenceCode"));
 			info.setContent((String) request.get("content"));
 			info.setPaidAt(new Date());
-			
-			order.setPaymentInfo(info);
-			
-			Order updatedOrder = orderRepository.save(order);
+
+			// Conditional: only a pending order that isn't cancelled becomes paid. An unpaid QR order may have been
+			// cancelled by the reservation expiry meanwhile (its stock is back on sale), and must not be revived
+			Order updatedOrder = mongoTemplate.findAndModify(
+					new Query(Criteria.where("_id").is(orderId).and("paymentStatus").is("pending")
+							.and("deliveryStatus").ne("cancelled").and("deletedAt").is(null)),
+					new Update().set("paymentStatus", "completed").set("paymentInfo", info).set("updatedAt", new Date()),
+					FindAndModifyOptions.options().returnNew(true), Order.class);
+
+			if (updatedOrder == null) {
+				// Paid for an order that was cancelled: keep the payment details and flag the money for a refund
+				Order refund = mongoTemplate.findAndModify(
+						new Query(Criteria.where("_id").is(orderId).and("deliveryStatus").is("cancelled").and("refundRequired").ne(true)),
+						new Update().set("refundRequired", true).set("paymentInfo", info).set("updatedAt", new Date()),
+						FindAndModifyOptions.options().returnNew(true), Order.class);
+				if (refund != null) {
+					System.err.println("Payment received for cancelled order " + orderId + ", flagged for refund");
+					return ResponseEntity.ok(Map.of(
+							"success", true,
+							"message", "Order was cancelled, payment flagged for refund",
+							"data", Map.of("orderId", orderId, "refundRequired", true)
+					));
+				}
+				// A repeated callback for an order already paid (or already flagged)
+				return ResponseEntity.ok(Map.of("success", true, "message", "Payment already processed"));
+			}
+
+			eventPublisher.publishEvent(new OrderStatusChangedEvent(updatedOrder, "pending", updatedOrder.getDeliveryStatus()));
 
 			return ResponseEntity.ok(Map.of(
 					"success", true,
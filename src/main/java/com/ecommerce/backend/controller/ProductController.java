@@ -1,20 +1,43 @@
 package com.ecommerce.backend.controller;
 
+import com.ecommerce.backend.event.ProductChangedEvent;
 import com.ecommerce.backend.model.Category;
 import com.ecommerce.backend.model.Order;
 import com.ecommerce.backend.model.Product;
-import com.ecommerce.backend.repository.CategoryRepository;
+import com.ecommerce.backend.model.SalesRollup;
 import com.ecommerce.backend.repository.ProductRepository;
+import com.ecommerce.backend.service.CategorySnapshotService;
+import com.ecommerce.backend.service.CollectionCounters;
+import com.ecommerce.backend.service.NdjsonStreamer;
+import com.ecommerce.backend.service.ProductCache;
+import com.ecommerce.backend.service.SalesRollupService;
+import com.ecommerce.backend.service.catalog.CatalogBitmapIndex;
+import com.ecommerce.backend.service.catalog.CatalogFacetService;
+import com.ecommerce.backend.service.catalog.CatalogFilter;
+import com.ecommerce.backend.service.catalog.CatalogIndexService;
+import com.ecommerce.backend.service.recommend.RelatedProductsService;
+import com.ecommerce.backend.service.recommend.SimilarProductsService;
+import com.ecommerce.backend.service.search.ProductSearchService;
+import com.ecommerce.backend.service.search.SuggestService;
+import com.ecommerce.backend.service.search.SuggestTrie;
+import com.ecommerce.backend.service.trend.TrendTracker;
+import com.ecommerce.backend.util.KeysetCursor;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.TextCriteria;
 import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -28,12 +51,48 @@ public class ProductController {
 	@Autowired
 	ProductRepository productRepository;
 
-	@Autowired
-	CategoryRepository categoryRepository;
-	
 	@Autowired
 	MongoTemplate mongoTemplate;
 
+	@Autowired
+	ProductCache productCache;
+
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	CollectionCounters collectionCounters;
+
+	@Autowired
+	ProductSearchService productSearchService;
+
+	@Autowired
+	SuggestService suggestService;
+
+	@Autowired
+	RelatedProductsService relatedProductsService;
+
+	@Autowired
+	SimilarProductsService similarProductsService;
+
+	@Autowired
+	CatalogFacetService catalogFacetService;
+
+	@Autowired
+	CatalogIndexService catalogIndexService;
+
+	@Autowired
+	NdjsonStreamer ndjsonStreamer;
+
+	@Autowired
+	TrendTracker trendTracker;
+
+	@Autowired
+	CategorySnapshotService categorySnapshotService;
+
+	@Autowired
+	SalesRollupService salesRollupService;
+
 	@PostMapping("/product")
 	public ResponseEntity<?> createProduct(@RequestBody Product productRequest) {
 		try {
@@ -42,7 +101,7 @@ public class ProductController {
 			String categoryId = productRequest.getCategory();
 
 			if (categoryId != null) {
-				Optional<Category> cat = categoryRepository.findById(categoryId);
+				Optional<Category> cat = categorySnapshotService.get().findById(categoryId);
 				if (cat.isPresent()) {
 					categoryName = cat.get().getName();
 				}
@@ -57,9 +116,14 @@ public class ProductController {
 					.size(productRequest.getSize())
 					.material(productRequest.getMaterial())
 					.images(productRequest.getImages())
+					.orderCount(0L)
 					.build();
 
-			return ResponseEntity.status(201).body(Map.of("message", "Thêm sản phẩm thành công", "data", productRepository.save(product)));
+			Product saved = productRepository.save(product);
+			collectionCounters.created(collectionCounters.productKeys(saved));
+			eventPublisher.publishEvent(new ProductChangedEvent(saved.getId()));
+
+			return ResponseEntity.status(201).body(Map.of("message", "Thêm sản phẩm thành công", "data", saved));
 		} catch (Exception e) {
 			return ResponseEntity.internalServerError().body(Map.of("message", e.getMessage()));
 		}
@@ -71,7 +135,9 @@ public class ProductController {
 			@RequestParam(required = false) Integer limit,
 			@RequestParam(defaultValue = "0") String sortType,
 			@RequestParam(required = false) String status,
-			@RequestParam(required = false) String category) {
+			@RequestParam(required = false) String category,
+			@RequestParam(required = false) String after,
+			@RequestParam(defaultValue = "false") boolean stream) {
 
 		// Logic for matchQuery
 		Criteria criteria = null;
@@ -93,19 +159,37 @@ public class ProductController {
 			}
 		}
 
-		// Logic for Sort
-		Sort sort = Sort.by(Sort.Direction.DESC, "createdAt");
-		switch (sortType) {
-			case "1": sort = Sort.by(Sort.Direction.ASC, "createdAt"); break;
-			case "4": sort = Sort.by(Sort.Direction.ASC, "price"); break;
-			case "5": sort = Sort.by(Sort.Direction.DESC, "price"); break;
-			default: break; // 0
+		// Logic for Sort (0 newest, 1 oldest, 4 price asc, 5 price desc; _id breaks ties)
+		Sort sort = KeysetCursor.sortFor(sortType);
+
+		// Streaming mode: ?stream=true without limit returns every match as NDJSON, read from a cursor
+		if (stream && limit == null) {
+			Query query = new Query();
+			if (criteria != null) query.addCriteria(criteria);
+			return ndjsonStreamer.stream(query.with(sort), Product.class);
+		}
+
+		// Cursor mode: ?after=<token from nextCursor> (empty for the first page)
+		if (after != null) {
+			return getProductPageAfter(criteria, sort, after, limit != null ? Math.max(1, Math.min(limit, 1000)) : 20);
 		}
 
 		int pageSize = (limit != null) ? limit : 10;
 		if (limit == null) pageSize = 1000; // Default logical limit if not specified? Node code has "limitNumber ? ... : null".
 		// Actually MongoTemplate query needs a limit. 
 		
+		// Bitmap index answers filter, sort and total in memory; Mongo only hydrates cache misses
+		CatalogFilter filter = CatalogFilter.builder().status(status).category(category).build();
+		CatalogBitmapIndex.Page indexed = catalogIndexService.query(filter, sortType, Math.max(1, page), pageSize);
+		if (indexed != null) {
+			Map<String, Object> response = new HashMap<>();
+			response.put("contents", productCache.findAllById(indexed.ids));
+			response.put("total", (long) indexed.total);
+			response.put("page", page);
+			response.put("limit", limit);
+			return ResponseEntity.ok(response);
+		}
+
 		Pageable pageable = PageRequest.of(Math.max(0, page - 1), pageSize, sort);
 
 		// Build query based on whether we have criteria
@@ -113,20 +197,21 @@ public class ProductController {
 		long total;
 		List<Product> products;
 		
+		// Maintained counters answer the total in O(1); count query only until they are ready
+		Long counted = productTotal(status, category);
+
 		if (criteria == null) {
 			// No filters - get all
 			query = new Query().with(pageable);
-			total = mongoTemplate.count(new Query(), Product.class);
+			total = counted != null ? counted : mongoTemplate.count(new Query(), Product.class);
 			products = mongoTemplate.find(query, Product.class);
 		} else {
 			query = new Query(criteria).with(pageable);
-			total = mongoTemplate.count(new Query(criteria), Product.class);
+			total = counted != null ? counted : mongoTemplate.count(new Query(criteria), Product.class);
 			products = mongoTemplate.find(query, Product.class);
 		}
 		
-		// TODO: Lookup orders to "hasOrders" field. 
-		// Node.js does a lookup to see if product is in any order.
-		// Skipping for now -> returning clean Entity.
+		// "hasOrders" comes from the denormalised Product.orderCount, no lookup into orders
 
 		// Enrich with category info?
 		// Nodejs: unwinds categoryInfo.
@@ -146,13 +231,81 @@ public class ProductController {
 		return ResponseEntity.ok(response);
 	}
 
+	// Counter keys matching the status filter above (default active, "inactive", "all")
+	private Long productTotal(String status, String category) {
+		List<Boolean> states = "all".equals(status) ? List.of(true, false) : List.of(!"inactive".equals(status));
+		String[] keys = states.stream()
+				.map(active -> category != null && !category.isEmpty()
+						? CollectionCounters.productKey(active, category)
+						: CollectionCounters.productKey(active))
+				.toArray(String[]::new);
+		return collectionCounters.total(keys);
+	}
+
+	// Keyset page: range scan from the cursor position, no skip and no count
+	private ResponseEntity<?> getProductPageAfter(Criteria criteria, Sort sort, String after, int pageSize) {
+		Query query = new Query();
+		if (criteria != null) query.addCriteria(criteria);
+		if (!after.isEmpty()) {
+			try {
+				// Separate $and so the cursor's $or never collides with the filter criteria
+				query.addCriteria(new Criteria().andOperator(KeysetCursor.decode(after, sort).toCriteria()));
+			} catch (IllegalArgumentException e) {
+				return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+			}
+		}
+		query.with(sort).limit(pageSize + 1);
+
+		List<Product> products = mongoTemplate.find(query, Product.class);
+		boolean hasMore = products.size() > pageSize;
+		if (hasMore) products = products.subList(0, pageSize);
+
+		Map<String, Object> response = new HashMap<>();
+		response.put("contents", products);
+		response.put("limit", pageSize);
+		response.put("hasMore", hasMore);
+		response.put("nextCursor", hasMore ? KeysetCursor.encode(sort, products.get(products.size() - 1)) : null);
+
+		return ResponseEntity.ok(response);
+	}
+
+	// Result page + counts per category, price bucket, size and material for the sidebar filters
+	@GetMapping("/product/facets")
+	public ResponseEntity<?> getProductFacets(
+			@RequestParam(defaultValue = "1") int page,
+			@RequestParam(defaultValue = "20") int limit,
+			@RequestParam(defaultValue = "0") String sortType,
+			@RequestParam(required = false) String status,
+			@RequestParam(required = false) String category,
+			@RequestParam(required = false) Double minPrice,
+			@RequestParam(required = false) Double maxPrice,
+			@RequestParam(required = false) List<String> size,
+			@RequestParam(required = false) List<String> material) {
+		CatalogFilter filter = CatalogFilter.builder()
+				.status(status)
+				.category(category)
+				.minPrice(minPrice)
+				.maxPrice(maxPrice)
+				.sizes(size)
+				.materials(material)
+				.build();
+		try {
+			return ResponseEntity.ok(catalogFacetService.browse(filter, sortType,
+					Math.max(1, page), Math.max(1, Math.min(limit, 100))));
+		} catch (Exception e) {
+			e.printStackTrace();
+			return ResponseEntity.internalServerError().body(Map.of("message", e.getMessage()));
+		}
+	}
+
 	@GetMapping("/product/{productId}")
 	public ResponseEntity<?> getDetailProduct(@PathVariable String productId) {
 		// Only finding active
-		Optional<Product> productOpt = productRepository.findById(productId);
+		Optional<Product> productOpt = productCache.findById(productId);
 		if (productOpt.isPresent()) {
 			Product p = productOpt.get();
 			if (p.getDeletedAt() == null) {
+				trendTracker.recordView(productId);
 				return ResponseEntity.ok(p);
 			}
 		}
@@ -160,35 +313,92 @@ public class ProductController {
 	}
 	
 	@GetMapping("/product/search")
-	public ResponseEntity<?> searchProducts(@RequestParam String query, @RequestParam(required = false) String category) {
+	public ResponseEntity<?> searchProducts(@RequestParam String query,
+			@RequestParam(required = false) String category,
+			@RequestParam(defaultValue = "1") int page,
+			@RequestParam(defaultValue = "20") int limit) {
 		if (query == null || query.isEmpty()) {
 			return ResponseEntity.badRequest().body(Map.of("message", "Vui lòng nhập từ khóa."));
 		}
 
+		page = Math.max(1, page);
+		limit = Math.max(1, Math.min(limit, 100));
+		String categoryFilter = (category != null && !category.equals("all") && !category.equals("All")) ? category : null;
+
+		// In-process index: accent folding, prefix/typo tolerance, BM25 - no Mongo round trip
+		ProductSearchService.SearchResult result = productSearchService.search(query, categoryFilter, page, limit);
+		if (result != null) {
+			if (result.getTotal() > 0) trendTracker.recordSearch(query);
+			return ResponseEntity.ok(Map.of("contents", result.getContents(), "total", result.getTotal(), "page", page, "limit", limit));
+		}
+
+		// Index still loading after startup: Mongo text search
 		TextCriteria textCriteria = TextCriteria.forDefaultLanguage().matching(query);
 		Query q = TextQuery.queryText(textCriteria);
 		q.addCriteria(Criteria.where("deletedAt").is(null));
 		
-		if (category != null && !category.equals("all") && !category.equals("All")) {
-			q.addCriteria(Criteria.where("category").is(category));
+		if (categoryFilter != null) {
+			q.addCriteria(Criteria.where("category").is(categoryFilter));
 		}
 		
-		q.with(PageRequest.of(0, 20));
+		q.with(PageRequest.of(page - 1, limit));
 		
 		List<Product> products = mongoTemplate.find(q, Product.class);
+		if (!products.isEmpty()) trendTracker.recordSearch(query);
+		// A short first page is all there is; otherwise count the matches without the paging
+		long total = page == 1 && products.size() < limit
+				? products.size()
+				: mongoTemplate.count(Query.of(q).skip(0).limit(0), Product.class);
 		
-		return ResponseEntity.ok(Map.of("contents", products, "total", products.size()));
+		return ResponseEntity.ok(Map.of("contents", products, "total", total, "page", page, "limit", limit));
+	}
+
+	// Most viewed products over the last hour/day, topped up with best sellers while views are sparse
+	@GetMapping("/product/trending")
+	public ResponseEntity<?> getTrendingProducts(@RequestParam(defaultValue = "day") String window,
+			@RequestParam(defaultValue = "10") int limit) {
+		limit = Math.max(1, Math.min(limit, 50));
+		Set<String> ids = new LinkedHashSet<>(trendTracker.topProducts(TrendTracker.Window.parse(window), limit));
+		List<Product> trending = productCache.findActiveById(ids);
+		if (trending.size() < limit) {
+			for (SalesRollup rollup : salesRollupService.top(SalesRollup.PRODUCT, limit - trending.size(), r -> !ids.contains(r.getRefId())
+					&& productCache.findById(r.getRefId()).filter(p -> p.getDeletedAt() == null).isPresent())) {
+				productCache.findById(rollup.getRefId()).ifPresent(trending::add);
+			}
+		}
+		return ResponseEntity.ok(Map.of("trendingProducts", trending));
 	}
 	
+	@GetMapping("/product/suggest")
+	public ResponseEntity<?> suggest(@RequestParam(defaultValue = "") String q,
+			@RequestParam(defaultValue = "8") int limit) {
+		limit = Math.max(1, Math.min(limit, 10));
+		List<Map<String, Object>> suggestions = new ArrayList<>();
+		for (SuggestTrie.Entry e : suggestService.suggest(q, limit)) {
+			String id = e.key.substring(e.key.indexOf(':') + 1);
+			suggestions.add(Map.of("text", e.text, "type", e.type, "id", id));
+		}
+		return ResponseEntity.ok(Map.of("suggestions", suggestions));
+	}
+
 	@GetMapping("/related-products/{productId}")
 	public ResponseEntity<?> getRelatedProducts(@PathVariable String productId) {
-		Optional<Product> currentOpt = productRepository.findById(productId);
+		Optional<Product> currentOpt = productCache.findById(productId);
 		if (currentOpt.isEmpty()) return ResponseEntity.status(404).body(Map.of("message", "Not found"));
 		
 		Product current = currentOpt.get();
-		
-		// Build query criteria
-		Criteria criteria = Criteria.where("id").ne(productId)
+
+		// Precomputed "bought together" neighbours first
+		List<Product> related = new ArrayList<>(productCache.findActiveById(relatedProductsService.related(productId, 5)));
+		if (related.size() >= 5) {
+			return ResponseEntity.ok(Map.of("relatedProducts", related));
+		}
+
+		// Cold product: top up from the same category
+		List<String> excluded = new ArrayList<>();
+		excluded.add(productId);
+		related.forEach(p -> excluded.add(p.getId()));
+		Criteria criteria = Criteria.where("id").nin(excluded)
 			.and("deletedAt").is(null);
 		
 		if (current.getCategory() != null && !current.getCategory().isEmpty()) {
@@ -198,18 +408,27 @@ public class ProductController {
 			criteria.and("type").is(current.getType());
 		}
 		
-		Query query = new Query(criteria).limit(5);
-		List<Product> related = mongoTemplate.find(query, Product.class);
+		Query query = new Query(criteria).limit(5 - related.size());
+		related.addAll(mongoTemplate.find(query, Product.class));
 		
 		return ResponseEntity.ok(Map.of("relatedProducts", related));
 	}
+
+	// Content-based neighbours (name, type, material, description), independent of category and sales
+	@GetMapping("/product/{productId}/similar")
+	public ResponseEntity<?> getSimilarProducts(@PathVariable String productId,
+			@RequestParam(defaultValue = "8") int limit) {
+		limit = Math.max(1, Math.min(limit, 50));
+		List<Product> similar = productCache.findActiveById(similarProductsService.similar(productId, limit));
+		return ResponseEntity.ok(Map.of("similarProducts", similar));
+	}
 	
 	@GetMapping("/products/wishlist")
 	public ResponseEntity<?> getWishlist(@RequestParam String ids) {
 		if (ids == null || ids.isEmpty()) return ResponseEntity.ok(Collections.emptyList());
 		
 		List<String> idList = Arrays.asList(ids.split(","));
-		List<Product> products = productRepository.findByIdInAndDeletedAtNull(idList);
+		List<Product> products = productCache.findActiveById(idList);
 		return ResponseEntity.ok(products);
 	}
 
@@ -218,45 +437,92 @@ public class ProductController {
 		Optional<Product> prodOpt = productRepository.findById(productId);
 		if (prodOpt.isEmpty()) return ResponseEntity.status(404).body(Map.of("message", "Sản phẩm không tồn tại"));
 		
-		Product product = prodOpt.get();
-		
-		// Map updates
-		if (updates.getName() != null) product.setName(updates.getName());
-		if (updates.getPrice() > 0) product.setPrice(updates.getPrice());
-		if (updates.getDescription() != null) product.setDescription(updates.getDescription());
-		if (updates.getMaterial() != null) product.setMaterial(updates.getMaterial());
-		if (updates.getImages() != null) product.setImages(updates.getImages());
-		if (updates.getSize() != null) product.setSize(updates.getSize());
+		Product current = prodOpt.get();
+		Set<String> counterKeys = collectionCounters.productKeys(current);
+
+		// Sizes carry the stock checkout $inc's, so PUT only adds and removes them; an amount that differs from the
+		// stored one is refused rather than dropped (stock moves go through PATCH /api/admin/products/{id}/stock)
+		if (updates.getSize() != null) {
+			Map<String, Integer> stored = new HashMap<>();
+			if (current.getSize() != null) current.getSize().forEach(s -> stored.put(s.getName(), s.getAmount() != null ? s.getAmount() : 0));
+			for (Product.Size size : updates.getSize()) {
+				if (size.getAmount() == null || !stored.containsKey(size.getName())) continue;
+				if (!size.getAmount().equals(stored.get(size.getName()))) {
+					return ResponseEntity.badRequest().body(Map.of(
+							"message", "Không thể đổi số lượng size " + size.getName() + " khi cập nhật sản phẩm, dùng PATCH /api/admin/products/" + productId + "/stock",
+							"size", size.getName(),
+							"amount", stored.get(size.getName())));
+				}
+			}
+		}
+
+		// One pipeline write of the edited fields only: a full save would put back the stock and orderCount read
+		// above, undoing every sale $inc'ed in between. Sizes become the requested ones in the requested order,
+		// existing ones keeping their stored element (and amount); a concurrent sale lands before or after it
+		Document set = new Document("updatedAt", new Date());
+		if (updates.getName() != null) set.append("name", literal(updates.getName()));
+		if (updates.getPrice() > 0) set.append("price", updates.getPrice());
+		if (updates.getDescription() != null) set.append("description", literal(updates.getDescription()));
+		if (updates.getMaterial() != null) set.append("material", literal(updates.getMaterial()));
+		if (updates.getImages() != null) set.append("images", literal(updates.getImages()));
 		
 		if (updates.getCategory() != null) {
-			product.setCategory(updates.getCategory());
-			categoryRepository.findById(updates.getCategory()).ifPresent(cat -> product.setType(cat.getName()));
+			set.append("category", literal(updates.getCategory()));
+			categorySnapshotService.get().findById(updates.getCategory()).ifPresent(cat -> set.append("type", literal(cat.getName())));
+		}
+
+		if (updates.getSize() != null) {
+			List<Document> requested = new ArrayList<>();
+			Set<String> names = new HashSet<>();
+			for (Product.Size size : updates.getSize()) {
+				if (size.getName() == null || !names.add(size.getName())) continue;
+				requested.add(new Document("name", size.getName()).append("amount", size.getAmount() != null ? size.getAmount() : 0));
+			}
+			Document storedSize = new Document("$arrayElemAt", List.of(new Document("$filter", new Document("input", "$size")
+					.append("cond", new Document("$eq", List.of("$$this.name", "$$s.name")))), 0));
+			set.append("size", new Document("$map", new Document("input", literal(requested)).append("as", "s")
+					.append("in", new Document("$ifNull", List.of(storedSize, "$$s")))));
 		}
 
-		return ResponseEntity.ok(Map.of("message", "Cập nhật thành công", "data", productRepository.save(product)));
+		Product saved = mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(productId)),
+				AggregationUpdate.from(List.<AggregationOperation>of(context -> new Document("$set", set))),
+				FindAndModifyOptions.options().returnNew(true), Product.class);
+		if (saved == null) return ResponseEntity.status(404).body(Map.of("message", "Sản phẩm không tồn tại"));
+		collectionCounters.move(counterKeys, collectionCounters.productKeys(saved));
+		eventPublisher.publishEvent(new ProductChangedEvent(productId));
+
+		return ResponseEntity.ok(Map.of("message", "Cập nhật thành công", "data", saved));
 	}
 
 	@DeleteMapping("/product/{productId}")
 	public ResponseEntity<?> deleteProduct(@PathVariable String productId) {
 		return productRepository.findById(productId).map(p -> {
+			Set<String> counterKeys = collectionCounters.productKeys(p);
 			if (p.getDeletedAt() != null) {
 				// Restore
 				p.setDeletedAt(null);
-				productRepository.save(p);
+				setDeletedAt(productId, null);
+				collectionCounters.move(counterKeys, collectionCounters.productKeys(p));
+				eventPublisher.publishEvent(new ProductChangedEvent(productId));
 				return ResponseEntity.ok(Map.of("message", "Đã mở bán lại sản phẩm thành công.", "data", p));
 			} else {
-				// Check if product exists in any order
-				Query query = new Query(Criteria.where("items.productId").is(productId));
-				boolean hasOrders = mongoTemplate.exists(query, Order.class);
+				// Check if product exists in any order; orders are only scanned while the backfill hasn't set the count
+				boolean hasOrders = p.getOrderCount() != null
+						? p.isHasOrders()
+						: mongoTemplate.exists(new Query(Criteria.where("items.productId").is(productId)), Order.class);
 
 				if (hasOrders) {
 					// Soft Delete
 					p.setDeletedAt(new Date());
-					productRepository.save(p);
+					setDeletedAt(productId, p.getDeletedAt());
+					collectionCounters.move(counterKeys, collectionCounters.productKeys(p));
+					eventPublisher.publishEvent(new ProductChangedEvent(productId));
 					return ResponseEntity.ok(Map.of("message", "Đã chuyển sang trạng thái 'Ngừng kinh doanh'.", "data", p));
 				} else {
 					// Hard Delete
 					productRepository.delete(p);
+					collectionCounters.removed(counterKeys);
+					eventPublisher.publishEvent(new ProductChangedEvent(productId));
 					Map<String, Object> res = new HashMap<>();
 					res.put("message", "Đã xóa sản phẩm vĩnh viễn (do chưa có đơn hàng).");
 					res.put("data", null);
@@ -265,4 +531,15 @@ public class ProductController {
 			}
 		}).orElse(ResponseEntity.status(404).body(Map.of("message", "Không tìm thấy sản phẩm")));
 	}
+
+	// Only deletedAt: saving the whole document read above would undo concurrent stock and orderCount $incs
+	// Pipeline $set values are expressions: strings starting with "$" would otherwise read as field paths
+	private static Document literal(Object value) {
+		return new Document("$literal", value);
+	}
+
+	private void setDeletedAt(String productId, Date deletedAt) {
+		mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(productId)),
+				new Update().set("deletedAt", deletedAt).set("updatedAt", new Date()), Product.class);
+	}
 }
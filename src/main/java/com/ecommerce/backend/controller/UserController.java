@@ -1,17 +1,15 @@
 package com.ecommerce.backend.controller;
 
-import com.ecommerce.backend.model.Cart;
 import com.ecommerce.backend.model.User;
-import com.ecommerce.backend.repository.CartRepository;
 import com.ecommerce.backend.repository.UserRepository;
 import com.ecommerce.backend.security.service.UserDetailsImpl;
+import com.ecommerce.backend.service.CartService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -23,7 +21,7 @@ public class UserController {
 	UserRepository userRepository;
 
 	@Autowired
-	CartRepository cartRepository;
+	CartService cartService;
 
 	@GetMapping("/info/{userId}")
 	public ResponseEntity<?> getInfoUser(@PathVariable("userId") String userId) {
@@ -34,9 +32,8 @@ public class UserController {
 			return ResponseEntity.status(404).body(Map.of("message", "User not found"));
 		}
 
-		// Calculate total cart items
-		List<Cart> carts = cartRepository.findByUserId(userId);
-		int amountCart = carts.stream().mapToInt(Cart::getQuantity).sum();
+		// Total cart items, from the maintained cart summary
+		long amountCart = cartService.summary(userId).getItemCount();
 
 		// Construct response data
 		Map<String, Object> data = new HashMap<>();
@@ -0,0 +1,12 @@
+package com.ecommerce.backend.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Published after a category is created, updated or (soft) deleted
+@Getter
+@AllArgsConstructor
+public class CategoryChangedEvent {
+
+	private final String categoryId;
+}
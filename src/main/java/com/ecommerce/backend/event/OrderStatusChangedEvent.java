@@ -0,0 +1,53 @@
+package com.ecommerce.backend.event;
+
+import com.ecommerce.backend.model.Order;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+// Published after an order's payment/delivery status was saved (admin update, payment callback, cancel).
+// Carries the statuses before the change so listeners can tell transitions apart;
+// both are null for a newly placed order.
+@Getter
+@AllArgsConstructor
+public class OrderStatusChangedEvent {
+
+	// "paid" is set by admins on delivery, "completed" by the SePay callback
+	public static final List<String> PAID_STATUSES = List.of("paid", "completed");
+
+	private final Order order;
+	private final String previousPaymentStatus;
+	private final String previousDeliveryStatus;
+
+	public static boolean isPaid(String paymentStatus) {
+		return PAID_STATUSES.contains(paymentStatus);
+	}
+
+	// Counts as a sale (revenue, sales rollups): paid online, or delivered (cash on delivery)
+	public static boolean isSold(String paymentStatus, String deliveryStatus) {
+		return isPaid(paymentStatus) || "delivered".equals(deliveryStatus);
+	}
+
+	public boolean isNewOrder() {
+		return previousPaymentStatus == null && previousDeliveryStatus == null;
+	}
+
+	public boolean becamePaid() {
+		return !isPaid(previousPaymentStatus) && isPaid(order.getPaymentStatus());
+	}
+
+	public boolean becameUnpaid() {
+		return isPaid(previousPaymentStatus) && !isPaid(order.getPaymentStatus());
+	}
+
+	public boolean becameSold() {
+		return !isSold(previousPaymentStatus, previousDeliveryStatus)
+				&& isSold(order.getPaymentStatus(), order.getDeliveryStatus());
+	}
+
+	public boolean becameUnsold() {
+		return isSold(previousPaymentStatus, previousDeliveryStatus)
+				&& !isSold(order.getPaymentStatus(), order.getDeliveryStatus());
+	}
+}
@@ -0,0 +1,21 @@
+package com.ecommerce.backend.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Published after a product is written locally or reported by the products change stream.
+// productId == null means "anything may have changed" (bulk writes, dropped collection, ...).
+@Getter
+@AllArgsConstructor
+public class ProductChangedEvent {
+
+	private final String productId;
+
+	public static ProductChangedEvent all() {
+		return new ProductChangedEvent(null);
+	}
+
+	public boolean isAll() {
+		return productId == null;
+	}
+}
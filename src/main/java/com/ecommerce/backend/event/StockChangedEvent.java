@@ -0,0 +1,14 @@
+package com.ecommerce.backend.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Published when only counters of a product changed: per-size stock (reservations, releases, hot-SKU
+// leases) or orderCount. Caches drop the product and the catalog index re-checks which sizes are in stock;
+// nothing is re-tokenised or re-embedded, which a ProductChangedEvent per sale would do.
+@Getter
+@AllArgsConstructor
+public class StockChangedEvent {
+
+	private final String productId;
+}
@@ -23,4 +23,8 @@ public class Cart extends BaseEntity {
 
 	private String size;
 
+	// Set to the order id when checkout converts the row; the active cart is checkoutId == null,
+	// which keeps (userId, productId, size, checkoutId) unique without clashing with ordered rows
+	private String checkoutId;
+
 }
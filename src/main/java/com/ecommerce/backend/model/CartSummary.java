@@ -0,0 +1,36 @@
+package com.ecommerce.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+// Totals of one user's active cart, keyed by userId. Maintained by CartSummaryService on every cart
+// mutation so the header badge is a point read; a missing document means an empty cart.
+@Document(collection = "cart_summaries")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartSummary {
+
+	@Id
+	private String id;
+
+	// Sum of quantities
+	private long itemCount;
+
+	// Number of cart lines (product + size)
+	private long lineCount;
+
+	// At the product prices of when the lines were changed; the nightly rebuild reprices
+	private double subtotal;
+
+	private Date updatedAt;
+
+	public static CartSummary empty(String userId) {
+		return new CartSummary(userId, 0, 0, 0, null);
+	}
+}
@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -27,4 +28,8 @@ public class Category extends BaseEntity {
 	@Indexed
 	private String slug;
 
+	// Active products in the category; filled in by CategorySnapshot, not stored
+	@Transient
+	private Long productCount;
+
 }
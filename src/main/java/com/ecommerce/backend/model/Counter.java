@@ -0,0 +1,28 @@
+package com.ecommerce.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+// Pre-aggregated count for one filter shape, e.g. "products:active:category:<id>".
+// Maintained by CollectionCounters, so not a BaseEntity (the key is the id).
+@Document(collection = "counters")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Counter {
+
+	@Id
+	private String id;
+
+	private long value;
+
+	private Date updatedAt;
+
+	// Drift the last reconciliation saw but couldn't $set, because the counter was written while it ran
+	private Long drift;
+}
@@ -0,0 +1,41 @@
+package com.ecommerce.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+// Response of one request made with an Idempotency-Key, replayed to retries of it. Keyed by a hash of
+// user + operation + key; removed by the TTL index on expiresAt.
+@Document(collection = "idempotency_keys")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+
+	@Id
+	private String id;
+
+	private String userId;
+
+	// e.g. "POST /api/orders"
+	private String operation;
+
+	// Hash of the request body; the same key with another body is refused
+	private String requestHash;
+
+	// Null while the first request is still running
+	private Integer status;
+
+	// Response body as JSON
+	private String body;
+
+	private Date createdAt;
+
+	private Date expiresAt;
+}
@@ -48,6 +48,13 @@ public class Order extends BaseEntity {
 	@Builder.Default
 	private PaymentInfo paymentInfo = new PaymentInfo();
 
+	// "reserved" while the order holds stock, "released" once cancelled / expired; null when nothing was reserved
+	private String stockStatus;
+
+	// Set when a payment arrives for an order that was already cancelled (e.g. an expired QR reservation whose
+	// stock went back on sale); the money has to be refunded
+	private Boolean refundRequired;
+
 	@Data
 	@NoArgsConstructor
 	@AllArgsConstructor
@@ -57,6 +64,13 @@ public class Order extends BaseEntity {
 		private int quantity;
 		private String size;
 		private double price;
+		// The product's category when the order was placed: sales rollups add and subtract it there, even if the
+		// product moves to another category in between (null on orders from before it was recorded)
+		private String category;
+		// true when checkout took this line's quantity off the size's stock
+		private Boolean reserved;
+		// Hot-SKU lease (inventory_leases) the reserved units were served from, when they came from memory
+		private String leaseId;
 	}
 
 	@Data
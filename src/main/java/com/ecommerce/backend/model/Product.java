@@ -38,15 +38,25 @@ public class Product extends BaseEntity {
 
 	private List<String> images;
 
+	// Number of orders containing this product, $inc'ed when an order is placed (ProductOrderCounts).
+	// null until the backfill has reached the document
+	private Long orderCount;
+
 	// Helper for Text Search Score
 	@TextScore
 	private Float score;
 
+	public boolean isHasOrders() {
+		return orderCount != null && orderCount > 0;
+	}
+
 	@Data
 	@NoArgsConstructor
 	@AllArgsConstructor
 	public static class Size {
 		private String name;
-		private String amount; // Kept as String to match JSON data "1000"
+		// Units in stock, reserved at checkout and released on cancellation (InventoryService).
+		// Stored as a number since index schema v3; clients sending "1000" still bind
+		private Integer amount;
 	}
 }
@@ -0,0 +1,38 @@
+package com.ecommerce.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+// Sold quantity and revenue of one product or category ("product:<id>" / "category:<id>").
+// Maintained by SalesRollupService, so not a BaseEntity (the key is the id).
+@Document(collection = "sales_rollups")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesRollup {
+
+	public static final String PRODUCT = "product";
+	public static final String CATEGORY = "category";
+
+	@Id
+	private String id;
+
+	private String type;
+
+	private String refId;
+
+	private long quantity;
+
+	private double revenue;
+
+	private Date updatedAt;
+
+	public static String key(String type, String refId) {
+		return type + ":" + refId;
+	}
+}
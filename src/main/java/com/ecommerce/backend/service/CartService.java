@@ -0,0 +1,268 @@
+package com.ecommerce.backend.service;
+
+import com.ecommerce.backend.model.Cart;
+import com.ecommerce.backend.model.CartSummary;
+import com.mongodb.bulk.BulkWriteError;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+// Cart line mutations. With write-behind on they go to CartSessionStore, which applies them
+// under a per-user lock and flushes to Mongo in batches. Otherwise each one is a single server-side
+// operation on the unique (userId, productId, size, checkoutId) key: an upsert with $inc/$set for adds,
+// a conditional $inc or delete for decreases. Either way concurrent clicks from two tabs neither lose
+// updates nor create duplicate lines.
+@Service
+public class CartService {
+
+	private static final int DUPLICATE_KEY = 11000;
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	@Autowired
+	CartSessionStore sessionStore;
+
+	@Autowired
+	CartSummaryService summaryService;
+
+	// One step of a batch (POST /api/cart/batch). size == null on decrease / remove matches any size,
+	// like the single endpoints; SET with quantity 0 removes the line.
+	@Getter
+	@AllArgsConstructor
+	public static class Operation {
+		public enum Type { ADD, SET, DECREASE, REMOVE }
+
+		private final Type type;
+		private final String productId;
+		private final String size;
+		private final int quantity;
+	}
+
+	@Getter
+	@AllArgsConstructor
+	public static class Decrease {
+		private final Cart cart;
+		// true when the line reached zero and was deleted; cart is then the deleted line
+		private final boolean removed;
+	}
+
+	public List<Cart> findActive(String userId) {
+		if (sessionStore.isEnabled()) return sessionStore.read(userId);
+		return mongoTemplate.find(new Query(active(userId)), Cart.class);
+	}
+
+	// Makes sure the user's cart rows in Mongo are current and no longer cached, and keeps them from being
+	// loaded again until endCheckout, so checkout can convert them
+	public void flushForCheckout(String userId) {
+		if (sessionStore.isEnabled()) sessionStore.beginCheckout(userId);
+	}
+
+	public void endCheckout(String userId) {
+		if (sessionStore.isEnabled()) sessionStore.endCheckout(userId);
+	}
+
+	// Item count / line count / subtotal for the header badge: from the tier when the cart is held there,
+	// otherwise one point read of cart_summaries
+	public CartSummary summary(String userId) {
+		if (sessionStore.isEnabled()) {
+			List<Cart> lines = sessionStore.peek(userId);
+			if (lines != null) return summaryService.summarize(userId, lines);
+		}
+		return summaryService.get(userId);
+	}
+
+	// Checkout converted the user's active rows
+	public void checkedOut(String userId) {
+		summaryService.cleared(userId);
+	}
+
+	// Deletes the user's active cart in one deleteMany; returns the number of lines deleted
+	public long clear(String userId) {
+		if (sessionStore.isEnabled()) sessionStore.discard(userId);
+		long deleted = mongoTemplate.remove(new Query(active(userId)), Cart.class).getDeletedCount();
+		summaryService.cleared(userId);
+		return deleted;
+	}
+
+	// Adds quantity to the line (replace = set it instead), creating the line if needed
+	public void add(String userId, String productId, String size, int quantity, boolean replace) {
+		if (sessionStore.isEnabled()) {
+			sessionStore.mutate(userId, lines -> {
+				Cart line = lines.get(productId, size);
+				if (line == null) {
+					line = Cart.builder().userId(userId).productId(productId).size(size).quantity(quantity).build();
+				} else {
+					line.setQuantity(replace ? quantity : line.getQuantity() + quantity);
+				}
+				lines.put(line);
+			});
+			return;
+		}
+		Update update = lineUpsert(new Date());
+		if (replace) {
+			update.set("quantity", quantity);
+		} else {
+			update.inc("quantity", quantity);
+		}
+		Query query = new Query(line(userId, productId, size));
+		// The line as it was before, so the summary gets the exact difference this upsert made
+		FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(false);
+		Cart previous;
+		try {
+			previous = mongoTemplate.findAndModify(query, update, options, Cart.class);
+		} catch (DuplicateKeyException e) {
+			// Two upserts raced to insert the line: the other one won, so this one now updates it
+			previous = mongoTemplate.findAndModify(query, update, options, Cart.class);
+		}
+		int before = previous != null ? previous.getQuantity() : 0;
+		summaryService.changed(userId, productId, (replace ? quantity : before + quantity) - before, previous == null ? 1 : 0);
+	}
+
+	// Takes quantity off the line, deleting it when nothing would be left. size == null matches any size
+	// (older clients don't send it). Returns null when there is no such line.
+	public Decrease decrease(String userId, String productId, String size, int quantity) {
+		if (sessionStore.isEnabled()) {
+			Decrease[] result = new Decrease[1];
+			sessionStore.mutate(userId, lines -> {
+				Cart line = size != null ? lines.get(productId, size) : lines.first(productId);
+				if (line == null) return;
+				if (line.getQuantity() > quantity) {
+					line.setQuantity(line.getQuantity() - quantity);
+					result[0] = new Decrease(lines.put(line), false);
+				} else {
+					result[0] = new Decrease(lines.remove(line), true);
+				}
+			});
+			return result[0];
+		}
+		for (int attempt = 0; attempt < 2; attempt++) {
+			Cart updated = mongoTemplate.findAndModify(
+					new Query(line(userId, productId, size).and("quantity").gt(quantity)),
+					new Update().inc("quantity", -quantity).set("updatedAt", new Date()),
+					FindAndModifyOptions.options().returnNew(true), Cart.class);
+			if (updated != null) {
+				summaryService.changed(userId, productId, -quantity, 0);
+				return new Decrease(updated, false);
+			}
+
+			Cart removed = mongoTemplate.findAndRemove(
+					new Query(line(userId, productId, size).and("quantity").lte(quantity)), Cart.class);
+			if (removed != null) {
+				summaryService.changed(userId, productId, -removed.getQuantity(), -1);
+				return new Decrease(removed, true);
+			}
+			// Neither matched: the line is gone, or an add raised it between the two calls - look once more
+		}
+		return null;
+	}
+
+	// Applies the operations in order and returns the resulting active cart. Without the session tier
+	// they become one ordered bulk write: add/set are upserts, decrease an $inc followed by deleting
+	// the line if it dropped to zero, remove a delete.
+	public List<Cart> applyBatch(String userId, List<Operation> operations) {
+		if (sessionStore.isEnabled()) {
+			sessionStore.mutate(userId, lines -> {
+				for (Operation op : operations) {
+					Cart line = op.size != null || op.type == Operation.Type.ADD || op.type == Operation.Type.SET
+							? lines.get(op.productId, op.size) : lines.first(op.productId);
+					int quantity = switch (op.type) {
+						case ADD -> (line != null ? line.getQuantity() : 0) + op.quantity;
+						case SET -> op.quantity;
+						case DECREASE -> line != null ? line.getQuantity() - op.quantity : 0;
+						case REMOVE -> 0;
+					};
+					if (quantity > 0) {
+						if (line == null) line = Cart.builder().userId(userId).productId(op.productId).size(op.size).build();
+						line.setQuantity(quantity);
+						lines.put(line);
+					} else if (line != null) {
+						lines.remove(line);
+					}
+				}
+			});
+			return sessionStore.read(userId);
+		}
+
+		Date now = new Date();
+		List<Consumer<BulkOperations>> writes = new ArrayList<>();
+		for (Operation op : operations) {
+			Query query = new Query(line(userId, op.productId, op.size));
+			switch (op.type) {
+				case ADD -> writes.add(ops -> ops.upsert(query, lineUpsert(now).inc("quantity", op.quantity)));
+				case SET -> writes.add(op.quantity > 0
+						? ops -> ops.upsert(query, lineUpsert(now).set("quantity", op.quantity))
+						: ops -> ops.remove(query));
+				case DECREASE -> {
+					writes.add(ops -> ops.updateOne(query, new Update().inc("quantity", -op.quantity).set("updatedAt", now)));
+					writes.add(ops -> ops.remove(new Query(line(userId, op.productId, op.size).and("quantity").lte(0))));
+				}
+				case REMOVE -> writes.add(ops -> ops.remove(query));
+			}
+		}
+		int from = 0;
+		for (int attempt = 0; from < writes.size(); attempt++) {
+			BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Cart.class);
+			writes.subList(from, writes.size()).forEach(write -> write.accept(ops));
+			try {
+				ops.execute();
+				break;
+			} catch (BulkOperationException e) {
+				// Ordered: everything before the failed write is applied. An upsert racing another request's
+				// insert of the same line is retried once from there; anything else is a real error
+				BulkWriteError error = e.getErrors().get(0);
+				if (error.getCode() != DUPLICATE_KEY || attempt > 0) throw e;
+				from += error.getIndex();
+			}
+		}
+		List<Cart> carts = findActive(userId);
+		summaryService.replace(List.of(summaryService.summarize(userId, carts)));
+		return carts;
+	}
+
+	// Deletes the line (any size when size == null); returns it, or null when there was none
+	public Cart remove(String userId, String productId, String size) {
+		if (sessionStore.isEnabled()) {
+			Cart[] removed = new Cart[1];
+			sessionStore.mutate(userId, lines -> {
+				Cart line = size != null ? lines.get(productId, size) : lines.first(productId);
+				if (line != null) removed[0] = lines.remove(line);
+			});
+			return removed[0];
+		}
+		Cart removed = mongoTemplate.findAndRemove(new Query(line(userId, productId, size)), Cart.class);
+		if (removed != null) summaryService.changed(userId, productId, -removed.getQuantity(), -1);
+		return removed;
+	}
+
+	private static Update lineUpsert(Date now) {
+		return new Update()
+				.setOnInsert("_id", UUID.randomUUID().toString())
+				.setOnInsert("createdAt", now)
+				.set("updatedAt", now);
+	}
+
+	private static Criteria active(String userId) {
+		return Criteria.where("userId").is(userId).and("checkoutId").is(null).and("deletedAt").is(null);
+	}
+
+	private static Criteria line(String userId, String productId, String size) {
+		Criteria criteria = active(userId).and("productId").is(productId);
+		return size != null ? criteria.and("size").is(size) : criteria;
+	}
+}
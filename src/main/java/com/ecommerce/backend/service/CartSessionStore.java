@@ -0,0 +1,367 @@
+package com.ecommerce.backend.service;
+
+import com.ecommerce.backend.model.Cart;
+import com.ecommerce.backend.model.CartSummary;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Write-behind tier for active carts. A user's lines are loaded from Mongo once and then served and
+// mutated in memory; every changed line is remembered (coalesced per productId + size, so ten +1 clicks
+// become one write) and a scheduled flush upserts / deletes them in unordered bulk batches.
+// Checkout and clearing the cart flush or drop the user's session synchronously first; while a checkout
+// runs the user's session is not reloaded, so a click can't pick up rows that are being converted. Each
+// flush also writes the flushed users' cart summaries, computed from their whole carts.
+// Sessions live on this node only, so the tier is off by default: turn app.cart.write-behind on only when
+// a single node serves carts. A crash loses at most the last flush interval of clicks.
+@Service
+public class CartSessionStore {
+
+	private static final int BATCH_SIZE = 500;
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	@Autowired
+	CartSummaryService summaryService;
+
+	@Value("${app.cart.write-behind:false}")
+	private boolean enabled;
+
+	@Value("${app.cart.idle-ttl-ms:1800000}")
+	private long idleTtlMs;
+
+	private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+	private final Set<String> dirtyUsers = ConcurrentHashMap.newKeySet();
+	// Users with a checkout running, each with the marker that reloads wait on
+	private final Map<String, Object> checkouts = new ConcurrentHashMap<>();
+
+	private static final class Session {
+		final String userId;
+		// Active lines by line key, in the order they were added
+		final Map<String, Cart> lines = new LinkedHashMap<>();
+		// Latest state of every line changed since the last flush; quantity <= 0 means delete
+		Map<String, Cart> dirty = new HashMap<>();
+		boolean flushing;
+		boolean evicted;
+		volatile long lastAccess = System.currentTimeMillis();
+
+		Session(String userId) {
+			this.userId = userId;
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	// Copies of the user's lines if the cart is held here, null otherwise (without loading it)
+	public List<Cart> peek(String userId) {
+		Session session = sessions.get(userId);
+		if (session == null) return null;
+		synchronized (session) {
+			if (session.evicted) return null;
+			return session.lines.values().stream().map(CartSessionStore::copy).toList();
+		}
+	}
+
+	public List<Cart> read(String userId) {
+		List<Cart> result = new ArrayList<>();
+		mutate(userId, lines -> lines.all().forEach(line -> result.add(copy(line))));
+		return result;
+	}
+
+	// Runs the change against the user's lines under the session lock; lines must be changed through
+	// Lines.put / remove so they get flushed
+	public void mutate(String userId, Consumer<Lines> change) {
+		while (true) {
+			Session session = session(userId);
+			synchronized (session) {
+				if (session.evicted) continue;
+				session.lastAccess = System.currentTimeMillis();
+				change.accept(new Lines(session));
+				if (!session.dirty.isEmpty()) dirtyUsers.add(userId);
+				return;
+			}
+		}
+	}
+
+	// View of one user's lines handed to mutate()
+	public static final class Lines {
+		private final Session session;
+
+		private Lines(Session session) {
+			this.session = session;
+		}
+
+		public Collection<Cart> all() {
+			return session.lines.values();
+		}
+
+		public Cart get(String productId, String size) {
+			return session.lines.get(key(productId, size));
+		}
+
+		// First line of the product in cart order, whatever its size
+		public Cart first(String productId) {
+			for (Cart line : session.lines.values()) {
+				if (line.getProductId().equals(productId)) return line;
+			}
+			return null;
+		}
+
+		public Cart put(Cart line) {
+			String key = key(line.getProductId(), line.getSize());
+			Date now = new Date();
+			if (line.getCreatedAt() == null) line.setCreatedAt(now);
+			line.setUpdatedAt(now);
+			session.lines.put(key, line);
+			session.dirty.put(key, copy(line));
+			return copy(line);
+		}
+
+		public Cart remove(Cart line) {
+			String key = key(line.getProductId(), line.getSize());
+			session.lines.remove(key);
+			Cart tombstone = copy(line);
+			tombstone.setQuantity(0);
+			session.dirty.put(key, tombstone);
+			return copy(line);
+		}
+	}
+
+	// Writes the user's pending changes now and drops the session, so the next read loads from Mongo
+	// (used before checkout, which works on the stored rows)
+	public void flushAndEvict(String userId) {
+		Session session = sessions.get(userId);
+		if (session == null) return;
+		synchronized (session) {
+			awaitFlush(session);
+			if (!session.dirty.isEmpty()) {
+				// On failure the changes stay pending and the session stays, so the caller can just fail
+				BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Cart.class);
+				session.dirty.values().forEach(line -> write(ops, userId, line));
+				ops.execute();
+				session.dirty = new HashMap<>();
+				summaryService.replace(List.of(summaryService.summarize(userId, session.lines.values())));
+			}
+			evict(userId, session);
+		}
+	}
+
+	// Marks the user as checking out (after any checkout of theirs already running) and writes out their
+	// session; until endCheckout their cart is not loaded again. Must be paired with endCheckout
+	public void beginCheckout(String userId) {
+		Object marker = new Object();
+		while (true) {
+			Object running = checkouts.putIfAbsent(userId, marker);
+			if (running == null) break;
+			awaitCheckout(userId, running);
+		}
+		try {
+			flushAndEvict(userId);
+		} catch (RuntimeException e) {
+			endCheckout(userId);
+			throw e;
+		}
+	}
+
+	public void endCheckout(String userId) {
+		Object marker = checkouts.remove(userId);
+		if (marker == null) return;
+		synchronized (marker) {
+			marker.notifyAll();
+		}
+	}
+
+	// Drops the session and its pending changes (the caller is about to delete the user's cart)
+	public void discard(String userId) {
+		Session session = sessions.get(userId);
+		if (session == null) return;
+		synchronized (session) {
+			awaitFlush(session);
+			session.dirty = new HashMap<>();
+			evict(userId, session);
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${app.cart.flush-interval-ms:200}")
+	public void flush() {
+		if (dirtyUsers.isEmpty()) return;
+		List<String> users = new ArrayList<>(dirtyUsers);
+		for (int from = 0; from < users.size(); from += BATCH_SIZE) {
+			flushBatch(users.subList(from, Math.min(from + BATCH_SIZE, users.size())));
+		}
+	}
+
+	private void flushBatch(List<String> users) {
+		Map<Session, Map<String, Cart>> taken = new IdentityHashMap<>();
+		Map<String, List<Cart>> flushedCarts = new HashMap<>();
+		BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Cart.class);
+		for (String userId : users) {
+			dirtyUsers.remove(userId);
+			Session session = sessions.get(userId);
+			if (session == null) continue;
+			synchronized (session) {
+				if (session.evicted || session.flushing || session.dirty.isEmpty()) continue;
+				taken.put(session, session.dirty);
+				session.dirty = new HashMap<>();
+				session.flushing = true;
+				flushedCarts.put(userId, session.lines.values().stream().map(CartSessionStore::copy).toList());
+			}
+			taken.get(session).values().forEach(line -> write(ops, userId, line));
+		}
+		if (taken.isEmpty()) return;
+
+		boolean failed = false;
+		try {
+			ops.execute();
+		} catch (Exception e) {
+			// Put the changes back (unless the line changed again meanwhile) and retry on the next run
+			System.err.println("Cart flush failed: " + e.getMessage());
+			failed = true;
+		}
+		// Totals of the whole cart as of this flush; a failed flush writes them with the retry
+		if (!failed) {
+			List<CartSummary> summaries = new ArrayList<>();
+			flushedCarts.forEach((userId, lines) -> summaries.add(summaryService.summarize(userId, lines)));
+			summaryService.replace(summaries);
+		}
+		for (Map.Entry<Session, Map<String, Cart>> e : taken.entrySet()) {
+			Session session = e.getKey();
+			synchronized (session) {
+				session.flushing = false;
+				if (failed) {
+					e.getValue().forEach(session.dirty::putIfAbsent);
+					dirtyUsers.add(session.userId);
+				}
+				session.notifyAll();
+			}
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${app.cart.evict-interval-ms:60000}")
+	public void evictIdle() {
+		long cutoff = System.currentTimeMillis() - idleTtlMs;
+		sessions.forEach((userId, session) -> {
+			if (session.lastAccess >= cutoff) return;
+			synchronized (session) {
+				if (!session.flushing && session.dirty.isEmpty() && session.lastAccess < cutoff) evict(userId, session);
+			}
+		});
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		new ArrayList<>(sessions.keySet()).forEach(userId -> {
+			try {
+				flushAndEvict(userId);
+			} catch (Exception e) {
+				System.err.println("Cart flush on shutdown failed for " + userId + ": " + e.getMessage());
+			}
+		});
+	}
+
+	private Session session(String userId) {
+		while (true) {
+			Session session = sessions.get(userId);
+			if (session != null) return session;
+			Object running = checkouts.get(userId);
+			if (running != null) {
+				awaitCheckout(userId, running);
+				continue;
+			}
+			Session loaded = new Session(userId);
+			Query query = new Query(Criteria.where("userId").is(userId).and("checkoutId").is(null).and("deletedAt").is(null));
+			for (Cart line : mongoTemplate.find(query, Cart.class)) {
+				loaded.lines.put(key(line.getProductId(), line.getSize()), line);
+			}
+			Session existing = sessions.putIfAbsent(userId, loaded);
+			if (existing != null) return existing;
+			// A checkout that started during the load may have missed this session: it holds rows that are
+			// about to be converted, so drop it and load again once the checkout is done
+			if (checkouts.containsKey(userId)) {
+				synchronized (loaded) {
+					evict(userId, loaded);
+				}
+				continue;
+			}
+			return loaded;
+		}
+	}
+
+	private void evict(String userId, Session session) {
+		session.evicted = true;
+		sessions.remove(userId, session);
+	}
+
+	private void awaitCheckout(String userId, Object marker) {
+		boolean interrupted = false;
+		synchronized (marker) {
+			while (checkouts.get(userId) == marker) {
+				try {
+					marker.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+
+	private static void awaitFlush(Session session) {
+		boolean interrupted = false;
+		while (session.flushing) {
+			try {
+				session.wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+
+	private static void write(BulkOperations ops, String userId, Cart line) {
+		Query query = new Query(Criteria.where("userId").is(userId).and("productId").is(line.getProductId())
+				.and("size").is(line.getSize()).and("checkoutId").is(null).and("deletedAt").is(null));
+		if (line.getQuantity() <= 0) {
+			ops.remove(query);
+			return;
+		}
+		ops.upsert(query, new Update()
+				.setOnInsert("_id", line.getId())
+				.setOnInsert("createdAt", line.getCreatedAt() != null ? line.getCreatedAt() : line.getUpdatedAt())
+				.set("quantity", line.getQuantity())
+				.set("updatedAt", line.getUpdatedAt()));
+	}
+
+	private static String key(String productId, String size) {
+		return size != null ? productId + "\u0000" + size : productId;
+	}
+
+	private static Cart copy(Cart line) {
+		Cart copy = Cart.builder()
+				.userId(line.getUserId())
+				.productId(line.getProductId())
+				.quantity(line.getQuantity())
+				.size(line.getSize())
+				.checkoutId(line.getCheckoutId())
+				.build();
+		copy.setId(line.getId());
+		copy.setCreatedAt(line.getCreatedAt());
+		copy.setUpdatedAt(line.getUpdatedAt());
+		copy.setDeletedAt(line.getDeletedAt());
+		return copy;
+	}
+}
@@ -0,0 +1,188 @@
+package com.ecommerce.backend.service;
+
+import com.ecommerce.backend.model.Cart;
+import com.ecommerce.backend.model.CartSummary;
+import com.ecommerce.backend.model.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+// Per-user cart totals (cart_summaries). Single cart operations $inc the difference they made, the
+// write-behind flusher and batches $set totals computed from the full cart, checkout and clearing the
+// cart zero the document (the next rebuild drops it, so a rebuild running meanwhile can't bring the old
+// totals back). rebuild() recounts everything from carts at current prices - on startup
+// while the collection has never been built, and nightly to repair drift and reprice subtotals.
+@Service
+public class CartSummaryService {
+
+	private static final int BATCH_SIZE = 1000;
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	@Autowired
+	ProductCache productCache;
+
+	private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+
+	// Until the first rebuild has run a missing document doesn't mean an empty cart
+	private volatile boolean built;
+
+	public CartSummary get(String userId) {
+		CartSummary summary = mongoTemplate.findById(userId, CartSummary.class);
+		if (summary != null) return summary;
+		if (built) return CartSummary.empty(userId);
+		return summarize(userId, mongoTemplate.find(new Query(activeLines(userId)), Cart.class));
+	}
+
+	// Totals of the given lines at current prices
+	public CartSummary summarize(String userId, Collection<Cart> lines) {
+		Map<String, Double> prices = prices(lines.stream().map(Cart::getProductId).toList());
+		CartSummary summary = CartSummary.empty(userId);
+		lines.forEach(line -> addLine(summary, line, prices));
+		return summary;
+	}
+
+	// A single line changed by quantityDelta, and was created (+1) or deleted (-1) or neither (0)
+	public void changed(String userId, String productId, long quantityDelta, int lineDelta) {
+		if (quantityDelta == 0 && lineDelta == 0) return;
+		double price = productCache.findById(productId).map(Product::getPrice).orElse(0.0);
+		try {
+			mongoTemplate.upsert(new Query(Criteria.where("_id").is(userId)), new Update()
+					.inc("itemCount", quantityDelta)
+					.inc("lineCount", lineDelta)
+					.inc("subtotal", quantityDelta * price)
+					.set("updatedAt", new Date()), CartSummary.class);
+		} catch (Exception e) {
+			// The cart is written; the next rebuild repairs the summary
+			System.err.println("Cart summary update failed: " + e.getMessage());
+		}
+	}
+
+	// Replaces the summaries of the given users with totals computed from their whole carts
+	public void replace(Collection<CartSummary> summaries) {
+		if (summaries.isEmpty()) return;
+		try {
+			Date now = new Date();
+			BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CartSummary.class);
+			for (CartSummary summary : summaries) {
+				ops.upsert(new Query(Criteria.where("_id").is(summary.getId())), totals(summary, now));
+			}
+			ops.execute();
+		} catch (Exception e) {
+			System.err.println("Cart summary update failed: " + e.getMessage());
+		}
+	}
+
+	public void cleared(String userId) {
+		mongoTemplate.upsert(new Query(Criteria.where("_id").is(userId)), totals(CartSummary.empty(userId), new Date()), CartSummary.class);
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onReady() {
+		if (mongoTemplate.exists(new Query(), CartSummary.class)
+				|| !mongoTemplate.exists(new Query(Criteria.where("checkoutId").is(null).and("deletedAt").is(null)), Cart.class)) {
+			built = true;
+		} else {
+			CompletableFuture.runAsync(this::rebuild);
+		}
+	}
+
+	// Returns the number of summaries written, or -1 when a rebuild is already running
+	@Scheduled(cron = "${app.cart-summaries.rebuild-cron:0 45 3 * * *}")
+	public long rebuild() {
+		if (!rebuilding.compareAndSet(false, true)) return -1;
+		try {
+			long start = System.currentTimeMillis();
+			Date startedAt = new Date(start);
+			// Once built, a summary changed since the start is left alone (the carts read may miss that change)
+			// and repaired by the next rebuild; the first build writes everything
+			boolean repair = built;
+
+			Map<String, List<Cart>> carts = new HashMap<>();
+			Query lines = new Query(Criteria.where("checkoutId").is(null).and("deletedAt").is(null)).cursorBatchSize(BATCH_SIZE);
+			lines.fields().include("userId").include("productId").include("quantity");
+			try (Stream<Cart> stream = mongoTemplate.stream(lines, Cart.class)) {
+				stream.forEach(c -> carts.computeIfAbsent(c.getUserId(), k -> new ArrayList<>()).add(c));
+			}
+			Query products = new Query().cursorBatchSize(BATCH_SIZE);
+			products.fields().include("price");
+			Map<String, Double> prices = new HashMap<>();
+			try (Stream<Product> stream = mongoTemplate.stream(products, Product.class)) {
+				stream.forEach(p -> prices.put(p.getId(), p.getPrice()));
+			}
+
+			Date now = new Date();
+			BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CartSummary.class);
+			int pending = 0;
+			for (Map.Entry<String, List<Cart>> e : carts.entrySet()) {
+				CartSummary summary = CartSummary.empty(e.getKey());
+				e.getValue().forEach(line -> addLine(summary, line, prices));
+				if (repair) {
+					ops.updateOne(new Query(Criteria.where("_id").is(e.getKey()).and("updatedAt").lt(startedAt)), totals(summary, now));
+					ops.upsert(new Query(Criteria.where("_id").is(e.getKey())), new Update()
+							.setOnInsert("itemCount", summary.getItemCount())
+							.setOnInsert("lineCount", summary.getLineCount())
+							.setOnInsert("subtotal", summary.getSubtotal())
+							.setOnInsert("updatedAt", now));
+				} else {
+					ops.upsert(new Query(Criteria.where("_id").is(e.getKey())), totals(summary, now));
+				}
+				if (++pending == BATCH_SIZE) {
+					ops.execute();
+					ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CartSummary.class);
+					pending = 0;
+				}
+			}
+			if (pending > 0) ops.execute();
+			// Users whose cart is empty now; ones whose cart changed since the rebuild started are kept
+			mongoTemplate.remove(new Query(Criteria.where("updatedAt").lt(startedAt)), CartSummary.class);
+			built = true;
+
+			System.out.println("Cart summaries rebuilt: " + carts.size() + " users in "
+					+ (System.currentTimeMillis() - start) + " ms");
+			return carts.size();
+		} catch (Exception e) {
+			System.err.println("Cart summary rebuild failed: " + e.getMessage());
+			return 0;
+		} finally {
+			rebuilding.set(false);
+		}
+	}
+
+	private Map<String, Double> prices(List<String> productIds) {
+		Map<String, Double> prices = new HashMap<>();
+		for (Product p : productCache.findAllById(productIds)) prices.put(p.getId(), p.getPrice());
+		return prices;
+	}
+
+	private static void addLine(CartSummary summary, Cart line, Map<String, Double> prices) {
+		summary.setItemCount(summary.getItemCount() + line.getQuantity());
+		summary.setLineCount(summary.getLineCount() + 1);
+		summary.setSubtotal(summary.getSubtotal() + line.getQuantity() * prices.getOrDefault(line.getProductId(), 0.0));
+	}
+
+	private static Update totals(CartSummary summary, Date now) {
+		return new Update()
+				.set("itemCount", summary.getItemCount())
+				.set("lineCount", summary.getLineCount())
+				.set("subtotal", summary.getSubtotal())
+				.set("updatedAt", now);
+	}
+
+	private static Criteria activeLines(String userId) {
+		return Criteria.where("userId").is(userId).and("checkoutId").is(null).and("deletedAt").is(null);
+	}
+}
@@ -0,0 +1,136 @@
+package com.ecommerce.backend.service;
+
+import com.ecommerce.backend.event.CategoryChangedEvent;
+import com.ecommerce.backend.event.OrderStatusChangedEvent;
+import com.ecommerce.backend.event.ProductChangedEvent;
+import com.ecommerce.backend.event.StockChangedEvent;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Monotonic versions (epoch millis of the last change) behind the catalog ETags / Last-Modified.
+// catalog: products + categories; sales: orders placed or changing status (popular, trending, ...);
+// stock: size amounts / order counts, which only product responses show.
+// A change bumps the version on this node at once; the sync job $max'es it into the shared catalog_versions
+// document and takes over what other nodes bumped, so every node answers with the same ETag within a sync
+// interval (order events, for one, are only published on the node that handled the order). A restart continues
+// from the stored versions, so rolling restarts don't invalidate every client copy.
+@Service
+public class CatalogVersion {
+
+	private static final String COLLECTION = "catalog_versions";
+	private static final String ID = "catalog";
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	private final AtomicLong catalog = new AtomicLong();
+	private final AtomicLong sales = new AtomicLong();
+	private final AtomicLong stock = new AtomicLong();
+	private final Map<String, AtomicLong> versions = new LinkedHashMap<>();
+
+	// Versions bumped on this node since the last sync
+	private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+
+	@PostConstruct
+	public void init() {
+		versions.put("catalog", catalog);
+		versions.put("sales", sales);
+		versions.put("stock", stock);
+		try {
+			merge(mongoTemplate.findById(ID, Document.class, COLLECTION));
+		} catch (Exception e) {
+			System.err.println("Catalog versions not loaded: " + e.getMessage());
+		}
+		// Nothing stored yet (or Mongo unreachable): start from the boot time and publish it
+		versions.forEach((field, version) -> {
+			if (version.get() == 0) bump(field);
+		});
+	}
+
+	public long catalog() {
+		return catalog.get();
+	}
+
+	public long sales() {
+		return sales.get();
+	}
+
+	public long stock() {
+		return stock.get();
+	}
+
+	@EventListener
+	public void onProductChanged(ProductChangedEvent event) {
+		bump("catalog");
+	}
+
+	@EventListener
+	public void onStockChanged(StockChangedEvent event) {
+		bump("stock");
+	}
+
+	@EventListener
+	public void onCategoryChanged(CategoryChangedEvent event) {
+		bump("catalog");
+	}
+
+	@EventListener
+	public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+		bump("sales");
+	}
+
+	// For derived data that is swapped in later than the event announcing the change (category counts)
+	public void bumpCatalog() {
+		bump("catalog");
+	}
+
+	@Scheduled(fixedDelayString = "${app.catalog-version.sync-interval-ms:1000}")
+	public void sync() {
+		List<String> pushed = new ArrayList<>(dirty);
+		dirty.removeAll(pushed);
+		try {
+			Document stored;
+			if (pushed.isEmpty()) {
+				stored = mongoTemplate.findById(ID, Document.class, COLLECTION);
+			} else {
+				Update update = new Update();
+				pushed.forEach(field -> update.max(field, versions.get(field).get()));
+				stored = mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(ID)), update,
+						FindAndModifyOptions.options().upsert(true).returnNew(true), Document.class, COLLECTION);
+			}
+			merge(stored);
+		} catch (Exception e) {
+			dirty.addAll(pushed);
+			System.err.println("Catalog version sync failed: " + e.getMessage());
+		}
+	}
+
+	private void merge(Document stored) {
+		if (stored == null) return;
+		versions.forEach((field, version) -> {
+			if (stored.get(field) instanceof Number n) version.accumulateAndGet(n.longValue(), Math::max);
+		});
+	}
+
+	private void bump(String field) {
+		versions.get(field).accumulateAndGet(System.currentTimeMillis(), (current, now) -> Math.max(current + 1, now));
+		dirty.add(field);
+	}
+}
@@ -0,0 +1,48 @@
+package com.ecommerce.backend.service;
+
+import com.ecommerce.backend.event.CategoryChangedEvent;
+import com.ecommerce.backend.model.Category;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+// Turns category writes made by other nodes (or directly in Atlas) into CategoryChangedEvents
+@Component
+public class CategoryChangeStreamListener {
+
+	@Autowired
+	MessageListenerContainer messageListenerContainer;
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+
+	@Value("${app.change-streams.enabled:true}")
+	private boolean enabled;
+
+	@PostConstruct
+	public void subscribe() {
+		if (!enabled) return;
+
+		ChangeStreamRequest<Document> request = ChangeStreamRequest.<Document>builder(this::onChange)
+				.collection(mongoTemplate.getCollectionName(Category.class))
+				.build();
+		messageListenerContainer.register(request, Document.class);
+	}
+
+	void onChange(Message<ChangeStreamDocument<Document>, Document> message) {
+		ChangeStreamDocument<Document> raw = message.getRaw();
+		if (raw == null) return;
+		eventPublisher.publishEvent(new CategoryChangedEvent(ProductChangeStreamListener.documentId(raw.getDocumentKey())));
+	}
+}
@@ -0,0 +1,104 @@
+package com.ecommerce.backend.service;
+
+import com.ecommerce.backend.model.Category;
+
+import java.util.*;
+
+// Immutable view of the categories collection with active-product counts, swapped atomically by
+// CategorySnapshotService. The Category instances are copies owned by the snapshot - never mutate them.
+public final class CategorySnapshot {
+
+	static final CategorySnapshot EMPTY = new CategorySnapshot(0, List.of(), Map.of());
+
+	private final long version;
+	// Active categories, newest first (the order GET /api/category always used)
+	private final List<Category> active;
+	private final Map<String, Category> byId;
+	private final Map<String, Category> activeBySlug;
+	private final Map<String, Category> activeByName;
+	private final Map<String, Long> productCounts;
+
+	CategorySnapshot(long version, Collection<Category> categories, Map<String, Long> productCounts) {
+		this.version = version;
+		this.productCounts = Map.copyOf(productCounts);
+
+		Map<String, Category> byId = new HashMap<>();
+		Map<String, Category> bySlug = new HashMap<>();
+		Map<String, Category> byName = new HashMap<>();
+		List<Category> active = new ArrayList<>();
+		for (Category c : categories) {
+			Category copy = copy(c, this.productCounts.getOrDefault(c.getId(), 0L));
+			byId.put(copy.getId(), copy);
+			if (copy.getDeletedAt() != null) continue;
+			active.add(copy);
+			if (copy.getSlug() != null) bySlug.putIfAbsent(copy.getSlug(), copy);
+			if (copy.getName() != null) byName.putIfAbsent(copy.getName().toLowerCase(), copy);
+		}
+		active.sort(Comparator.comparing(Category::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder())));
+
+		this.active = List.copyOf(active);
+		this.byId = Map.copyOf(byId);
+		this.activeBySlug = Map.copyOf(bySlug);
+		this.activeByName = Map.copyOf(byName);
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public List<Category> active() {
+		return active;
+	}
+
+	// Case-insensitive substring match on name or description, like the old in-request filter
+	public List<Category> search(String term) {
+		if (term == null || term.isEmpty()) return active;
+		String lower = term.toLowerCase();
+		List<Category> matches = new ArrayList<>();
+		for (Category c : active) {
+			if ((c.getName() != null && c.getName().toLowerCase().contains(lower))
+					|| (c.getDescription() != null && c.getDescription().toLowerCase().contains(lower))) {
+				matches.add(c);
+			}
+		}
+		return matches;
+	}
+
+	// Including deleted categories (products keep pointing at them)
+	public Optional<Category> findById(String id) {
+		return Optional.ofNullable(id != null ? byId.get(id) : null);
+	}
+
+	public Optional<Category> findActiveById(String id) {
+		return findById(id).filter(c -> c.getDeletedAt() == null);
+	}
+
+	public Optional<Category> findActiveBySlug(String slug) {
+		return Optional.ofNullable(slug != null ? activeBySlug.get(slug) : null);
+	}
+
+	public Optional<Category> findActiveByName(String name) {
+		return Optional.ofNullable(name != null ? activeByName.get(name.toLowerCase()) : null);
+	}
+
+	public long productCount(String categoryId) {
+		return productCounts.getOrDefault(categoryId, 0L);
+	}
+
+	Map<String, Long> productCounts() {
+		return productCounts;
+	}
+
+	Collection<Category> all() {
+		return byId.values();
+	}
+
+	private static Category copy(Category c, long productCount) {
+		Category copy = new Category(c.getName(), c.getDescription(), c.getImageUrl(), c.getSlug(), productCount);
+		copy.setId(c.getId());
+		copy.setCreatedAt(c.getCreatedAt());
+		copy.setUpdatedAt(c.getUpdatedAt());
+		copy.setDeletedAt(c.getDeletedAt());
+		return copy;
+	}
+}
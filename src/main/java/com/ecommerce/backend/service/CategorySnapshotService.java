@@ -0,0 +1,123 @@
+package com.ecommerce.backend.service;
+
+import com.ecommerce.backend.event.CategoryChangedEvent;
+import com.ecommerce.backend.event.ProductChangedEvent;
+import com.ecommerce.backend.model.Category;
+import com.ecommerce.backend.model.Product;
+import com.ecommerce.backend.repository.CategoryRepository;
+import com.ecommerce.backend.service.catalog.CatalogBitmapIndex;
+import com.ecommerce.backend.service.catalog.CatalogFilter;
+import com.ecommerce.backend.service.catalog.CatalogIndexService;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
+
+// Serves every category read from an in-memory CategorySnapshot. Category writes (local
+// CategoryChangedEvents, other nodes via the change stream) reload the small categories collection
+// and swap in a new snapshot; product writes only mark the counts stale, and a short periodic job
+// recounts them from the catalog bitmap index (one aggregation while that is still loading).
+@Service
+public class CategorySnapshotService {
+
+	@Autowired
+	CategoryRepository categoryRepository;
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	@Autowired
+	CatalogIndexService catalogIndexService;
+
+	@Autowired
+	CatalogVersion catalogVersion;
+
+	private final AtomicReference<CategorySnapshot> snapshot = new AtomicReference<>(CategorySnapshot.EMPTY);
+	private final AtomicBoolean countsStale = new AtomicBoolean(false);
+
+	public CategorySnapshot get() {
+		return snapshot.get();
+	}
+
+	@PostConstruct
+	public void init() {
+		try {
+			swap(categoryRepository.findAll(), countProducts());
+		} catch (Exception e) {
+			// Serves an empty snapshot until the next category write or count refresh succeeds
+			System.err.println("Category snapshot load failed: " + e.getMessage());
+			countsStale.set(true);
+		}
+	}
+
+	@EventListener
+	public void onCategoryChanged(CategoryChangedEvent event) {
+		try {
+			swap(categoryRepository.findAll(), snapshot.get().productCounts());
+			catalogVersion.bumpCatalog();
+		} catch (Exception e) {
+			System.err.println("Category snapshot reload failed: " + e.getMessage());
+		}
+	}
+
+	@EventListener
+	public void onProductChanged(ProductChangedEvent event) {
+		countsStale.set(true);
+	}
+
+	@Scheduled(fixedDelayString = "${app.categories.count-refresh-ms:2000}")
+	public void refreshCounts() {
+		if (!countsStale.getAndSet(false)) return;
+		try {
+			boolean swapped = snapshot.get() == CategorySnapshot.EMPTY
+					? swap(categoryRepository.findAll(), countProducts())
+					: swap(null, countProducts());
+			// The product write that made the counts stale bumped the version before this refresh; bump it again,
+			// or a client that fetched the old counts in between would keep them (304)
+			if (swapped) catalogVersion.bumpCatalog();
+		} catch (Exception e) {
+			countsStale.set(true);
+			System.err.println("Category count refresh failed: " + e.getMessage());
+		}
+	}
+
+	// categories == null keeps the current ones (count refresh); false when that left the counts as they were
+	private synchronized boolean swap(Collection<Category> categories, Map<String, Long> counts) {
+		CategorySnapshot current = snapshot.get();
+		if (categories == null) {
+			if (counts.equals(current.productCounts())) return false;
+			categories = current.all();
+		}
+		snapshot.set(new CategorySnapshot(current.getVersion() + 1, categories, counts));
+		return true;
+	}
+
+	private Map<String, Long> countProducts() {
+		Map<String, Long> counts = new HashMap<>();
+		CatalogBitmapIndex.Facets facets = catalogIndexService.facets(CatalogFilter.builder().status("active").build());
+		if (facets != null) {
+			for (CatalogBitmapIndex.ValueCount c : facets.categories) {
+				if (!c.value.isEmpty()) counts.put(c.value, (long) c.count);
+			}
+			return counts;
+		}
+		Aggregation aggregation = newAggregation(
+				match(Criteria.where("deletedAt").is(null)),
+				group("category").count().as("count"));
+		for (Document d : mongoTemplate.aggregate(aggregation, Product.class, Document.class).getMappedResults()) {
+			if (d.get("_id") instanceof String) counts.put((String) d.get("_id"), ((Number) d.get("count")).longValue());
+		}
+		return counts;
+	}
+}
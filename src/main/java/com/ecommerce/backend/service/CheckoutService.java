@@ -0,0 +1,271 @@
+package com.ecommerce.backend.service;
+
+import com.ecommerce.backend.event.OrderStatusChangedEvent;
+import com.ecommerce.backend.model.Cart;
+import com.ecommerce.backend.model.Order;
+import com.ecommerce.backend.model.Product;
+import com.ecommerce.backend.service.inventory.InventoryService;
+import com.mongodb.MongoException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Turns the user's active cart into an order: one cart read, one product multi-get, one order insert and
+// one updateMany converting the cart rows, inside a multi-document transaction. Stock for every line is
+// reserved in the same unit (InventoryService); an order that can't get all of it isn't placed. A crash midway leaves
+// either no order or an order with its cart converted; a click changing the cart concurrently makes the
+// transaction conflict, and transient errors (conflicts, elections) retry the whole unit.
+// Latency goes to the checkout.latency timer, tagged by outcome and cart size bucket.
+@Service
+public class CheckoutService {
+
+	private static final int MAX_ATTEMPTS = 3;
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	@Autowired
+	CartService cartService;
+
+	@Autowired
+	ProductCache productCache;
+
+	@Autowired
+	CollectionCounters collectionCounters;
+
+	@Autowired
+	ProductOrderCounts productOrderCounts;
+
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	@Autowired
+	InventoryService inventoryService;
+
+	@Value("${app.checkout.transactions:true}")
+	private boolean transactions;
+
+	public enum Outcome { CREATED, EMPTY_CART, UNKNOWN_PRODUCT, OUT_OF_STOCK }
+
+	@Getter
+	@AllArgsConstructor
+	public static class Result {
+		private final Outcome outcome;
+		private final Order order;
+		// Set for UNKNOWN_PRODUCT / OUT_OF_STOCK
+		private final String productId;
+		// Set for OUT_OF_STOCK
+		private final String size;
+	}
+
+	// State of the current attempt, for the latency tag and to undo stock taken by a failed attempt
+	private static final class Attempt {
+		final String orderId;
+		int lines;
+		InventoryService.Reservation reservation;
+		// In-memory takes of an attempt whose commit result got lost: undone only once it's known that the
+		// order wasn't written, kept when it was
+		InventoryService.Reservation uncertain;
+
+		Attempt(String orderId) {
+			this.orderId = orderId;
+		}
+	}
+
+	// orderRequest carries the validated shipping / payment fields
+	public Result checkout(String userId, Order orderRequest) {
+		long start = System.nanoTime();
+		Attempt attempt = new Attempt(UUID.randomUUID().toString());
+		String outcome = "error";
+		try {
+			// The write-behind tier must have written everything the user saw before the rows are converted
+			cartService.flushForCheckout(userId);
+			try {
+				Result result = inTransaction(retry -> convert(userId, orderRequest, attempt.orderId, retry, attempt), attempt);
+				outcome = result.getOutcome().name().toLowerCase();
+				if (result.getOutcome() == Outcome.CREATED) afterCommit(userId, result.getOrder(), attempt.reservation);
+				return result;
+			} finally {
+				cartService.endCheckout(userId);
+			}
+		} finally {
+			Timer.builder("checkout.latency")
+					.description("Order creation from the cart")
+					.tag("outcome", outcome)
+					.tag("lines", sizeBucket(attempt.lines))
+					.register(meterRegistry)
+					.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	private Result convert(String userId, Order orderRequest, String orderId, boolean retry, Attempt attempt) {
+		if (retry) {
+			// The previous attempt may have committed before its commit result got lost: then its in-memory
+			// stock takes belong to that order and stay taken, otherwise they go back before trying again
+			Order committed = mongoTemplate.findById(orderId, Order.class);
+			if (committed != null) {
+				attempt.reservation = attempt.uncertain;
+				attempt.uncertain = null;
+				return new Result(Outcome.CREATED, committed, null, null);
+			}
+			if (attempt.uncertain != null) {
+				inventoryService.undo(attempt.uncertain, false);
+				attempt.uncertain = null;
+			}
+		}
+		List<Cart> cartItems = mongoTemplate.find(new Query(Criteria.where("userId").is(userId)
+				.and("checkoutId").is(null).and("deletedAt").is(null)), Cart.class);
+		attempt.lines = cartItems.size();
+		if (cartItems.isEmpty()) return new Result(Outcome.EMPTY_CART, null, null, null);
+
+		Map<String, Product> products = productCache.findAllById(cartItems.stream().map(Cart::getProductId).distinct().toList())
+				.stream().collect(Collectors.toMap(Product::getId, p -> p, (p1, p2) -> p1));
+
+		double totalAmount = 0;
+		List<Order.OrderItem> orderItems = new ArrayList<>();
+		for (Cart cartItem : cartItems) {
+			Product product = products.get(cartItem.getProductId());
+			if (product == null || product.getDeletedAt() != null) {
+				return new Result(Outcome.UNKNOWN_PRODUCT, null, cartItem.getProductId(), null);
+			}
+			totalAmount += product.getPrice() * cartItem.getQuantity();
+			orderItems.add(Order.OrderItem.builder()
+					.productId(cartItem.getProductId())
+					.quantity(cartItem.getQuantity())
+					.size(cartItem.getSize())
+					.price(product.getPrice())
+					.category(product.getCategory())
+					.build());
+		}
+
+		Order order = Order.builder()
+				.userId(userId)
+				.firstName(orderRequest.getFirstName())
+				.lastName(orderRequest.getLastName())
+				.companyName(orderRequest.getCompanyName() != null ? orderRequest.getCompanyName() : "")
+				.country(orderRequest.getCountry())
+				.street(orderRequest.getStreet())
+				.apartment(orderRequest.getApartment() != null ? orderRequest.getApartment() : "")
+				.cities(orderRequest.getCities())
+				.state(orderRequest.getState())
+				.phone(orderRequest.getPhone())
+				.zipCode(orderRequest.getZipCode())
+				.email(orderRequest.getEmail())
+				.deliveryStatus("pending")
+				.paymentMethods(orderRequest.getPaymentMethods())
+				.paymentStatus("pending")
+				.items(orderItems)
+				.totalAmount(totalAmount)
+				.build();
+		order.setId(orderId);
+		Date now = new Date();
+		order.setCreatedAt(now);
+		order.setUpdatedAt(now);
+
+		// All lines' stock or nothing; taken inside the transaction, so an abort rolls the stored takes back
+		InventoryService.Reservation reservation = new InventoryService.Reservation();
+		attempt.reservation = reservation;
+		inventoryService.reserve(orderItems, reservation);
+		if (!reservation.isComplete()) {
+			return new Result(Outcome.OUT_OF_STOCK, null, reservation.getFailedProductId(), reservation.getFailedSize());
+		}
+		if (!reservation.isEmpty()) order.setStockStatus(InventoryService.RESERVED);
+
+		mongoTemplate.insert(order);
+		mongoTemplate.updateMulti(
+				new Query(Criteria.where("_id").in(cartItems.stream().map(Cart::getId).toList())
+						.and("checkoutId").is(null).and("deletedAt").is(null)),
+				new Update().set("deletedAt", now).set("checkoutId", orderId).set("updatedAt", now),
+				Cart.class);
+		return new Result(Outcome.CREATED, order, null, null);
+	}
+
+	// work gets true on retries. Stock taken by a failed attempt is given back before retrying / failing
+	private Result inTransaction(Function<Boolean, Result> work, Attempt state) {
+		for (int attempt = 1; ; attempt++) {
+			boolean retry = attempt > 1;
+			try {
+				return transactions ? transactionTemplate.execute(status -> work.apply(retry)) : work.apply(retry);
+			} catch (RuntimeException e) {
+				boolean retrying = transactions && attempt < MAX_ATTEMPTS && isTransient(e);
+				if (state.reservation != null) {
+					if (!transactions || !hasLabel(e, MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL)) {
+						// Aborted for sure: stored takes were rolled back with it (or are restocked without transactions),
+						// the in-memory ones go back now
+						inventoryService.undo(state.reservation, !transactions);
+					} else {
+						// The commit may have gone through: the next attempt looks the order up first and settles
+						// these takes (see convert), or settleUncertain does when giving up
+						state.uncertain = state.reservation;
+					}
+					state.reservation = null;
+				}
+				if (!retrying) {
+					if (state.uncertain != null) settleUncertain(state);
+					throw e;
+				}
+				System.err.println("Checkout transaction retry " + attempt + ": " + e.getMessage());
+			}
+		}
+	}
+
+	// Giving up with a commit result still unknown: return the in-memory takes only if the order isn't there.
+	// When even that can't be checked they stay taken (a few units held back rather than sold twice)
+	private void settleUncertain(Attempt state) {
+		try {
+			if (mongoTemplate.findById(state.orderId, Order.class) == null) inventoryService.undo(state.uncertain, false);
+		} catch (RuntimeException e) {
+			System.err.println("Checkout " + state.orderId + ": could not settle in-memory stock takes: " + e.getMessage());
+		}
+		state.uncertain = null;
+	}
+
+	private static boolean isTransient(Throwable e) {
+		return hasLabel(e, MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)
+				|| hasLabel(e, MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL);
+	}
+
+	private static boolean hasLabel(Throwable e, String label) {
+		for (Throwable t = e; t != null; t = t.getCause()) {
+			if (t instanceof MongoException mongo && mongo.hasErrorLabel(label)) return true;
+		}
+		return false;
+	}
+
+	private void afterCommit(String userId, Order order, InventoryService.Reservation reservation) {
+		if (reservation != null) inventoryService.committed(reservation);
+		collectionCounters.created(collectionCounters.orderKeys(order));
+		productOrderCounts.recordOrder(order);
+		eventPublisher.publishEvent(new OrderStatusChangedEvent(order, null, null));
+		cartService.checkedOut(userId);
+	}
+
+	private static String sizeBucket(int lines) {
+		if (lines <= 1) return String.valueOf(lines);
+		if (lines <= 5) return "2-5";
+		if (lines <= 10) return "6-10";
+		if (lines <= 20) return "11-20";
+		return "21+";
+	}
+}
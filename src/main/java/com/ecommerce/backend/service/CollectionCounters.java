@@ -0,0 +1,218 @@
+package com.ecommerce.backend.service;
+
+import com.ecommerce.backend.model.Counter;
+import com.ecommerce.backend.model.Order;
+import com.ecommerce.backend.model.Product;
+import com.ecommerce.backend.model.User;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
+
+// Incrementally maintained counts for the filter shapes the listings and the dashboard use.
+// Writers call created/removed/move with the keys of the entity before and after the write ($inc, one bulk round trip);
+// a background job recomputes everything from the collections to repair drift (crashes, writes made outside the app).
+// Until this node has reconciled once, total() returns null and callers fall back to a count query.
+// Reconciliation never $sets a counter written while it ran; see reconcile().
+@Service
+public class CollectionCounters {
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	private volatile boolean ready = false;
+
+	// --- Keys ---
+
+	public static String productKey(boolean active) {
+		return "products:" + (active ? "active" : "inactive");
+	}
+
+	public static String productKey(boolean active, String category) {
+		return productKey(active) + ":category:" + category;
+	}
+
+	public static String orderKey() {
+		return "orders:active";
+	}
+
+	public static String orderKey(String deliveryStatus) {
+		return orderKey() + ":status:" + deliveryStatus;
+	}
+
+	public static String userKey(String role) {
+		return "users:role:" + role;
+	}
+
+	public static String userKey(String role, String authType, Boolean blocked) {
+		String key = userKey(role);
+		if (authType != null) key += ":authType:" + authType;
+		if (blocked != null) key += ":blocked:" + blocked;
+		return key;
+	}
+
+	public Set<String> productKeys(Product p) {
+		boolean active = p.getDeletedAt() == null;
+		return Set.of(productKey(active), productKey(active, p.getCategory()));
+	}
+
+	public Set<String> orderKeys(Order o) {
+		if (o.getDeletedAt() != null) return Set.of();
+		return Set.of(orderKey(), orderKey(o.getDeliveryStatus()));
+	}
+
+	public Set<String> userKeys(User u) {
+		return userKeys(u.getRole(), u.getAuthType(), u.isBlocked());
+	}
+
+	// Missing role/authType count as the model defaults, so keys never collapse into each other
+	private static Set<String> userKeys(String role, String authType, boolean blocked) {
+		role = role != null ? role : "user";
+		authType = authType != null ? authType : "local";
+		return Set.of(
+				userKey(role),
+				userKey(role, authType, null),
+				userKey(role, null, blocked),
+				userKey(role, authType, blocked));
+	}
+
+	// --- Writes ---
+
+	public void created(Set<String> keys) {
+		move(Set.of(), keys);
+	}
+
+	public void removed(Set<String> keys) {
+		move(keys, Set.of());
+	}
+
+	public void move(Set<String> before, Set<String> after) {
+		Map<String, Long> deltas = new HashMap<>();
+		before.forEach(k -> deltas.merge(k, -1L, Long::sum));
+		after.forEach(k -> deltas.merge(k, 1L, Long::sum));
+		deltas.values().removeIf(d -> d == 0);
+		if (deltas.isEmpty()) return;
+
+		try {
+			Date now = new Date();
+			BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Counter.class);
+			deltas.forEach((key, delta) -> ops.upsert(
+					new Query(Criteria.where("_id").is(key)),
+					new Update().inc("value", delta).set("updatedAt", now)));
+			ops.execute();
+		} catch (Exception e) {
+			// The write itself succeeded; the next reconciliation repairs the counter
+			System.err.println("Counter update failed: " + e.getMessage());
+		}
+	}
+
+	// --- Reads ---
+
+	// Sum of the given counters, or null when counters can't be trusted yet
+	public Long total(String... keys) {
+		if (!ready) return null;
+		List<Counter> counters = mongoTemplate.find(new Query(Criteria.where("_id").in(Arrays.asList(keys))), Counter.class);
+		return counters.stream().mapToLong(Counter::getValue).sum();
+	}
+
+	// --- Reconciliation ---
+
+	@Scheduled(initialDelayString = "${app.counters.reconcile-initial-delay-ms:5000}",
+			fixedDelayString = "${app.counters.reconcile-interval-ms:300000}")
+	public void reconcile() {
+		try {
+			Date startedAt = new Date();
+			Map<String, Long> values = new HashMap<>();
+			Map<String, Counter> before = counters();
+
+			for (boolean active : new boolean[]{true, false}) {
+				Criteria deleted = active ? Criteria.where("deletedAt").is(null) : Criteria.where("deletedAt").ne(null);
+				for (Document d : aggregate(Product.class, match(deleted), group("category").count().as("count"))) {
+					long count = ((Number) d.get("count")).longValue();
+					values.merge(productKey(active), count, Long::sum);
+					values.merge(productKey(active, (String) d.get("_id")), count, Long::sum);
+				}
+			}
+
+			for (Document d : aggregate(Order.class, match(Criteria.where("deletedAt").is(null)),
+					group("deliveryStatus").count().as("count"))) {
+				long count = ((Number) d.get("count")).longValue();
+				values.merge(orderKey(), count, Long::sum);
+				values.merge(orderKey((String) d.get("_id")), count, Long::sum);
+			}
+
+			for (Document d : aggregate(User.class, group("role", "authType", "isBlocked").count().as("count"))) {
+				long count = ((Number) d.get("count")).longValue();
+				Document id = (Document) d.get("_id");
+				boolean blocked = Boolean.TRUE.equals(id.get("isBlocked"));
+				for (String key : userKeys(id.getString("role"), id.getString("authType"), blocked)) {
+					values.merge(key, count, Long::sum);
+				}
+			}
+
+			Map<String, Counter> after = counters();
+			// Shapes that no longer match anything count 0
+			before.keySet().forEach(key -> values.putIfAbsent(key, 0L));
+			after.keySet().forEach(key -> values.putIfAbsent(key, 0L));
+
+			// A counter $inc'ed since the counts were taken is not $set (the counts may miss that write), on every node
+			// and every run; a missing one is inserted. A busy counter (orders:active is written during almost every
+			// run) records the drift it showed instead, and once two runs agree on its direction the smaller of the
+			// two is $inc'ed, which no concurrent $inc can be lost to
+			Date now = new Date();
+			BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Counter.class);
+			values.forEach((key, value) -> {
+				Counter current = after.get(key);
+				if (current == null || current.getUpdatedAt() == null || current.getUpdatedAt().before(startedAt)) {
+					ops.updateOne(new Query(Criteria.where("_id").is(key).and("updatedAt").lt(startedAt)),
+							new Update().set("value", value).set("updatedAt", now).unset("drift"));
+					ops.upsert(new Query(Criteria.where("_id").is(key)),
+							new Update().setOnInsert("value", value).setOnInsert("updatedAt", now));
+					return;
+				}
+				Counter earlier = before.get(key);
+				long drift = agreed(value - (earlier != null ? earlier.getValue() : 0L), value - current.getValue());
+				long fix = current.getDrift() != null ? agreed(drift, current.getDrift()) : 0;
+				if (fix != 0) {
+					ops.updateOne(new Query(Criteria.where("_id").is(key)),
+							new Update().inc("value", fix).set("updatedAt", now).unset("drift"));
+				} else {
+					ops.updateOne(new Query(Criteria.where("_id").is(key)), new Update().set("drift", drift));
+				}
+			});
+			ops.execute();
+
+			ready = true;
+		} catch (Exception e) {
+			System.err.println("Counter reconciliation failed: " + e.getMessage());
+		}
+	}
+
+	private Map<String, Counter> counters() {
+		Map<String, Counter> counters = new HashMap<>();
+		mongoTemplate.findAll(Counter.class).forEach(c -> counters.put(c.getId(), c));
+		return counters;
+	}
+
+	// The smaller of two drift estimates pointing the same way, 0 when they disagree
+	static long agreed(long a, long b) {
+		if (a == 0 || b == 0 || (a > 0) != (b > 0)) return 0;
+		return Math.abs(a) < Math.abs(b) ? a : b;
+	}
+
+	private List<Document> aggregate(Class<?> type, AggregationOperation... operations) {
+		Aggregation aggregation = newAggregation(operations);
+		return mongoTemplate.aggregate(aggregation, type, Document.class).getMappedResults();
+	}
+}
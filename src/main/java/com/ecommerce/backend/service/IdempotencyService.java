@@ -0,0 +1,279 @@
+package com.ecommerce.backend.service;
+
+import com.ecommerce.backend.model.IdempotencyRecord;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// Idempotency-Key support for mutating endpoints that clients retry on timeout. The first request with a
+// key runs and its response is kept (in memory and in idempotency_keys, removed by a TTL index); duplicates
+// arriving while it runs wait for that same response, later ones get the stored copy. A key is scoped to the
+// user and the operation, and reusing it with another request body is refused with 422.
+// Responses that ask the client to come back (5xx, 429) are not kept, so a retry runs again.
+// Across nodes the Mongo insert decides who runs; a duplicate on another node meanwhile gets 409.
+@Service
+public class IdempotencyService {
+
+	public static final String HEADER = "Idempotency-Key";
+
+	private static final int MAX_KEY_LENGTH = 255;
+
+	private static final Set<String> SERVER_ASSIGNED_FIELDS = Set.of("_id", "id", "createdAt", "updatedAt", "deletedAt");
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	@Value("${app.idempotency.ttl-hours:24}")
+	private long ttlHours;
+
+	// How long a key stays claimed by a request that never finished (crashed node)
+	@Value("${app.idempotency.pending-timeout-seconds:300}")
+	private long pendingTimeoutSeconds;
+
+	@Value("${app.idempotency.memory-max-size:100000}")
+	private long memoryMaxSize;
+
+	private Cache<String, IdempotencyRecord> completed;
+	private final Map<String, CompletableFuture<Result>> inFlight = new ConcurrentHashMap<>();
+
+	// What the first request produced, handed to the duplicates that waited on it
+	private static final class Result {
+		final String requestHash;
+		// Null when the response wasn't kept
+		final IdempotencyRecord record;
+		final ResponseEntity<?> response;
+
+		Result(String requestHash, IdempotencyRecord record, ResponseEntity<?> response) {
+			this.requestHash = requestHash;
+			this.record = record;
+			this.response = response;
+		}
+	}
+
+	@PostConstruct
+	public void init() {
+		completed = Caffeine.newBuilder()
+				.maximumSize(memoryMaxSize)
+				.expireAfterWrite(Duration.ofHours(ttlHours))
+				.build();
+	}
+
+	public ResponseEntity<?> execute(String key, String userId, String operation, Object request, Supplier<ResponseEntity<?>> work) {
+		try {
+			return executeAsync(key, userId, operation, request, () -> CompletableFuture.completedFuture(work.get())).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause) throw cause;
+			throw e;
+		}
+	}
+
+	// Without a key the work just runs
+	public CompletableFuture<ResponseEntity<?>> executeAsync(String key, String userId, String operation, Object request,
+			Supplier<CompletableFuture<ResponseEntity<?>>> work) {
+		if (key == null || key.isBlank()) return work.get();
+		if (key.length() > MAX_KEY_LENGTH) {
+			return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+					.body(Map.of("success", false, "message", HEADER + " must be at most " + MAX_KEY_LENGTH + " characters")));
+		}
+
+		String id = hash(userId + "\n" + operation + "\n" + key);
+		String requestHash = hash(canonicalJson(request));
+
+		IdempotencyRecord done = completed.getIfPresent(id);
+		if (done != null) return CompletableFuture.completedFuture(replay(done, requestHash));
+
+		CompletableFuture<Result> mine = new CompletableFuture<>();
+		CompletableFuture<Result> running = inFlight.putIfAbsent(id, mine);
+		if (running != null) {
+			return running.thenApply(result -> {
+				if (!result.requestHash.equals(requestHash)) return keyReused();
+				return result.record != null ? replay(result.record, requestHash) : result.response;
+			});
+		}
+
+		CompletableFuture<ResponseEntity<?>> response;
+		try {
+			IdempotencyRecord existing = claim(id, userId, operation, requestHash);
+			if (existing != null) {
+				// Finished earlier (possibly on another node, or before this node restarted) or running elsewhere
+				boolean finished = existing.getStatus() != null;
+				ResponseEntity<?> earlier = finished ? replay(existing, requestHash) : inProgress();
+				if (finished) completed.put(id, existing);
+				finish(id, mine, new Result(existing.getRequestHash(), finished ? existing : null, earlier));
+				return CompletableFuture.completedFuture(earlier);
+			}
+			response = work.get();
+		} catch (RuntimeException e) {
+			fail(id, mine, e);
+			throw e;
+		}
+
+		return response.handle((entity, error) -> {
+			if (error != null) {
+				fail(id, mine, error);
+				throw error instanceof CompletionException completion ? completion : new CompletionException(error);
+			}
+			finish(id, mine, new Result(requestHash, store(id, entity), entity));
+			return entity;
+		});
+	}
+
+	// Inserts the pending record that makes this request the one that runs; returns the record already there
+	// when the key was used before, null when it was claimed
+	private IdempotencyRecord claim(String id, String userId, String operation, String requestHash) {
+		for (int attempt = 0; attempt < 3; attempt++) {
+			Date now = new Date();
+			try {
+				mongoTemplate.insert(IdempotencyRecord.builder()
+						.id(id)
+						.userId(userId)
+						.operation(operation)
+						.requestHash(requestHash)
+						.createdAt(now)
+						.expiresAt(new Date(now.getTime() + pendingTimeoutSeconds * 1000))
+						.build());
+				return null;
+			} catch (DuplicateKeyException e) {
+				IdempotencyRecord existing = mongoTemplate.findById(id, IdempotencyRecord.class);
+				if (existing == null) continue;
+				if (existing.getExpiresAt() != null && existing.getExpiresAt().after(now)) return existing;
+				// Expired but not removed by the TTL monitor yet (it runs once a minute)
+				mongoTemplate.remove(new Query(Criteria.where("_id").is(id).and("expiresAt").is(existing.getExpiresAt())), IdempotencyRecord.class);
+			}
+		}
+		throw new IllegalStateException("Could not claim idempotency key " + id);
+	}
+
+	// Keeps the response for replay; returns null (and frees the key) when it isn't kept
+	private IdempotencyRecord store(String id, ResponseEntity<?> entity) {
+		int status = entity.getStatusCode().value();
+		String body = null;
+		if (status < 500 && status != 429) {
+			try {
+				body = objectMapper.writeValueAsString(entity.getBody());
+			} catch (JsonProcessingException e) {
+				System.err.println("Idempotent response not stored for " + id + ": " + e.getMessage());
+			}
+		}
+		try {
+			if (body == null) {
+				release(id);
+				return null;
+			}
+			Date expiresAt = new Date(System.currentTimeMillis() + Duration.ofHours(ttlHours).toMillis());
+			IdempotencyRecord record = mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(id)),
+					new Update().set("status", status).set("body", body).set("expiresAt", expiresAt),
+					FindAndModifyOptions.options().returnNew(true), IdempotencyRecord.class);
+			if (record != null) completed.put(id, record);
+			return record;
+		} catch (Exception e) {
+			// The request itself succeeded; a retry after this runs it again, as without a key
+			System.err.println("Idempotent response not stored for " + id + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	private void fail(String id, CompletableFuture<Result> mine, Throwable error) {
+		try {
+			release(id);
+		} catch (Exception e) {
+			System.err.println("Idempotency key not released for " + id + ": " + e.getMessage());
+		}
+		inFlight.remove(id, mine);
+		mine.completeExceptionally(error);
+	}
+
+	private void finish(String id, CompletableFuture<Result> mine, Result result) {
+		inFlight.remove(id, mine);
+		mine.complete(result);
+	}
+
+	// Removes the pending record so the next retry runs the request
+	private void release(String id) {
+		mongoTemplate.remove(new Query(Criteria.where("_id").is(id).and("status").is(null)), IdempotencyRecord.class);
+	}
+
+	private static ResponseEntity<?> replay(IdempotencyRecord record, String requestHash) {
+		if (!record.getRequestHash().equals(requestHash)) return keyReused();
+		return ResponseEntity.status(record.getStatus())
+				.contentType(MediaType.APPLICATION_JSON)
+				.header("Idempotent-Replayed", "true")
+				.body(record.getBody());
+	}
+
+	private static ResponseEntity<?> keyReused() {
+		return ResponseEntity.status(422).body(Map.of("success", false, "message", HEADER + " was already used for a different request"));
+	}
+
+	private static ResponseEntity<?> inProgress() {
+		return ResponseEntity.status(409)
+				.header("Retry-After", "1")
+				.body(Map.of("success", false, "message", "A request with this " + HEADER + " is still in progress"));
+	}
+
+	// Canonical JSON of the request: server-assigned fields left out (a deserialized BaseEntity gets a fresh
+	// random _id per request) and object keys sorted, so a retried body hashes the same
+	String canonicalJson(Object request) {
+		try {
+			return objectMapper.writeValueAsString(canonical(objectMapper.valueToTree(request)));
+		} catch (JsonProcessingException | IllegalArgumentException e) {
+			throw new IllegalArgumentException("Request body can't be hashed", e);
+		}
+	}
+
+	private JsonNode canonical(JsonNode node) {
+		if (node.isObject()) {
+			ObjectNode sorted = objectMapper.createObjectNode();
+			List<String> names = new ArrayList<>();
+			node.fieldNames().forEachRemaining(names::add);
+			Collections.sort(names);
+			for (String name : names) {
+				if (!SERVER_ASSIGNED_FIELDS.contains(name)) sorted.set(name, canonical(node.get(name)));
+			}
+			return sorted;
+		}
+		if (node.isArray()) {
+			ArrayNode items = objectMapper.createArrayNode();
+			node.forEach(item -> items.add(canonical(item)));
+			return items;
+		}
+		return node;
+	}
+
+	private static String hash(String value) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package com.ecommerce.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+// Writes a query result as NDJSON (one JSON document per line) straight from a Mongo cursor.
+// Only one cursor batch is held in memory, and the first line goes out as soon as the first batch arrives.
+@Service
+public class NdjsonStreamer {
+
+	public static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	@Value("${app.streaming.batch-size:500}")
+	private int batchSize;
+
+	public <T> ResponseEntity<StreamingResponseBody> stream(Query query, Class<T> type) {
+		query.cursorBatchSize(batchSize);
+		StreamingResponseBody body = out -> {
+			try (Stream<T> stream = mongoTemplate.stream(query, type);
+				 SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(out)) {
+				Iterator<T> it = stream.iterator();
+				long written = 0;
+				while (it.hasNext()) {
+					writer.write(it.next());
+					// Flush the first document immediately, then once per cursor batch
+					if (++written == 1 || written % batchSize == 0) writer.flush();
+				}
+				if (written > 0) out.write('\n');
+			} catch (Exception e) {
+				// Headers are already sent; the client sees a truncated stream
+				System.err.println("NDJSON stream of " + type.getSimpleName() + " aborted: " + e.getMessage());
+			}
+		};
+		return ResponseEntity.ok().contentType(NDJSON).body(body);
+	}
+}
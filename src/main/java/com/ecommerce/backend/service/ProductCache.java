@@ -0,0 +1,101 @@
+package com.ecommerce.backend.service;
+
+import com.ecommerce.backend.event.ProductChangedEvent;
+import com.ecommerce.backend.event.StockChangedEvent;
+import com.ecommerce.backend.model.Product;
+import com.ecommerce.backend.repository.ProductRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+
+// Read-through cache for product documents (Caffeine: bounded, TTL, W-TinyLFU eviction).
+// Cached instances are shared between requests - never mutate them, load from
+// ProductRepository when the entity is going to be saved.
+@Service
+public class ProductCache {
+
+	@Autowired
+	ProductRepository productRepository;
+
+	@Value("${app.product-cache.max-size:20000}")
+	private long maxSize;
+
+	@Value("${app.product-cache.ttl-seconds:600}")
+	private long ttlSeconds;
+
+	private Cache<String, Product> cache;
+
+	@PostConstruct
+	public void init() {
+		cache = Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+				.build();
+	}
+
+	public Optional<Product> findById(String productId) {
+		if (productId == null) return Optional.empty();
+		// Returning null from the loader leaves nothing cached for unknown ids
+		return Optional.ofNullable(cache.get(productId, id -> productRepository.findById(id).orElse(null)));
+	}
+
+	// Multi-get: a single findAllById round trip for whatever is not cached yet. Keeps the order of ids.
+	public List<Product> findAllById(Collection<String> productIds) {
+		if (productIds == null || productIds.isEmpty()) return new ArrayList<>();
+
+		Set<String> keys = new LinkedHashSet<>(productIds);
+		keys.remove(null);
+		Map<String, Product> found = cache.getAll(keys, missing -> {
+			Map<String, Product> loaded = new HashMap<>();
+			productRepository.findAllById(new ArrayList<String>(missing)).forEach(p -> loaded.put(p.getId(), p));
+			return loaded;
+		});
+
+		List<Product> result = new ArrayList<>(found.size());
+		for (String id : keys) {
+			Product p = found.get(id);
+			if (p != null) result.add(p);
+		}
+		return result;
+	}
+
+	public List<Product> findActiveById(Collection<String> productIds) {
+		List<Product> products = findAllById(productIds);
+		products.removeIf(p -> p.getDeletedAt() != null);
+		return products;
+	}
+
+	public void invalidate(String productId) {
+		cache.invalidate(productId);
+	}
+
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	// Runs before every other ProductChangedEvent listener so they never re-read a stale entry
+	@EventListener
+	@Order(Ordered.HIGHEST_PRECEDENCE)
+	public void onProductChanged(ProductChangedEvent event) {
+		if (event.isAll()) {
+			invalidateAll();
+		} else {
+			invalidate(event.getProductId());
+		}
+	}
+
+	@EventListener
+	@Order(Ordered.HIGHEST_PRECEDENCE)
+	public void onStockChanged(StockChangedEvent event) {
+		invalidate(event.getProductId());
+	}
+}
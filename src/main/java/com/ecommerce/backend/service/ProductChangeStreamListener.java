@@ -0,0 +1,84 @@
+package com.ecommerce.backend.service;
+
+import com.ecommerce.backend.event.ProductChangedEvent;
+import com.ecommerce.backend.event.StockChangedEvent;
+import com.ecommerce.backend.model.Product;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import jakarta.annotation.PostConstruct;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.regex.Pattern;
+
+// Turns writes made by other nodes (or directly in Atlas) into ProductChangedEvents. Updates that only $inc
+// stock or order counts (every sale) become StockChangedEvents instead, so they don't reindex the product
+@Component
+public class ProductChangeStreamListener {
+
+	// What InventoryService ($inc size.$.amount) and ProductOrderCounts ($inc / $set orderCount) write
+	private static final Pattern COUNTER_FIELDS = Pattern.compile("size\\.\\d+\\.amount|orderCount");
+
+	@Autowired
+	MessageListenerContainer messageListenerContainer;
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+
+	@Value("${app.change-streams.enabled:true}")
+	private boolean enabled;
+
+	@PostConstruct
+	public void subscribe() {
+		if (!enabled) return;
+
+		ChangeStreamRequest<Document> request = ChangeStreamRequest.<Document>builder(this::onChange)
+				.collection(mongoTemplate.getCollectionName(Product.class))
+				.build();
+		messageListenerContainer.register(request, Document.class);
+	}
+
+	void onChange(Message<ChangeStreamDocument<Document>, Document> message) {
+		ChangeStreamDocument<Document> raw = message.getRaw();
+		if (raw == null) return;
+
+		String productId = documentId(raw.getDocumentKey());
+		if (productId != null && isCountersOnly(raw)) {
+			eventPublisher.publishEvent(new StockChangedEvent(productId));
+			return;
+		}
+		// drop / rename / invalidate carry no document key: treat as a full reset
+		eventPublisher.publishEvent(new ProductChangedEvent(productId));
+	}
+
+	static boolean isCountersOnly(ChangeStreamDocument<?> raw) {
+		if (raw.getOperationType() != OperationType.UPDATE) return false;
+		UpdateDescription update = raw.getUpdateDescription();
+		if (update == null || update.getUpdatedFields() == null || update.getUpdatedFields().isEmpty()) return false;
+		if (update.getRemovedFields() != null && !update.getRemovedFields().isEmpty()) return false;
+		if (update.getTruncatedArrays() != null && !update.getTruncatedArrays().isEmpty()) return false;
+		return update.getUpdatedFields().keySet().stream().allMatch(field -> COUNTER_FIELDS.matcher(field).matches());
+	}
+
+	static String documentId(BsonDocument documentKey) {
+		if (documentKey == null) return null;
+		BsonValue id = documentKey.get("_id");
+		if (id == null) return null;
+		if (id.isString()) return id.asString().getValue();
+		if (id.isObjectId()) return id.asObjectId().getValue().toHexString();
+		return null;
+	}
+}
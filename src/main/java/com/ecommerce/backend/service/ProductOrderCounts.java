@@ -0,0 +1,134 @@
+package com.ecommerce.backend.service;
+
+import com.ecommerce.backend.model.Order;
+import com.ecommerce.backend.model.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Maintains Product.orderCount (orders containing the product, cancelled ones included - the same
+// rule the delete endpoint always used). Placing an order $inc's its products; the backfill recounts
+// from orders, on startup while documents are missing the field and nightly to repair drift.
+@Service
+public class ProductOrderCounts {
+
+	private static final int BATCH_SIZE = 1000;
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	@Autowired
+	ProductCache productCache;
+
+	private final AtomicBoolean backfilling = new AtomicBoolean(false);
+
+	public void recordOrder(Order order) {
+		if (order.getItems() == null) return;
+		Set<String> productIds = order.getItems().stream()
+				.map(Order.OrderItem::getProductId)
+				.filter(Objects::nonNull)
+				.collect(Collectors.toSet());
+		if (productIds.isEmpty()) return;
+
+		try {
+			mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(productIds)),
+					new Update().inc("orderCount", 1), Product.class);
+		} catch (Exception e) {
+			// The order is saved; the next backfill repairs the count
+			System.err.println("Order count update failed: " + e.getMessage());
+		}
+		productIds.forEach(productCache::invalidate);
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onReady() {
+		if (mongoTemplate.exists(new Query(Criteria.where("orderCount").exists(false)), Product.class)) {
+			CompletableFuture.runAsync(this::backfill);
+		}
+	}
+
+	// Returns the number of products whose count changed, or -1 when a backfill is already running
+	@Scheduled(cron = "${app.order-counts.backfill-cron:0 0 4 * * *}")
+	public long backfill() {
+		if (!backfilling.compareAndSet(false, true)) return -1;
+		try {
+			long start = System.currentTimeMillis();
+			// Products are read before the orders: an order placed after a product was read has either already
+			// $inc'ed it when its count is written (the write's condition fails and the product is skipped) or
+			// $inc's it afterwards. Reading the orders first would let such an $inc be overwritten with a count
+			// that misses the order, undercounting a product that may then be hard-deleted.
+			List<Product> observed = new ArrayList<>();
+			Query products = new Query().cursorBatchSize(BATCH_SIZE);
+			products.fields().include("orderCount");
+			try (Stream<Product> stream = mongoTemplate.stream(products, Product.class)) {
+				stream.forEach(observed::add);
+			}
+
+			Map<String, Long> counts = new HashMap<>();
+			Query orders = new Query().cursorBatchSize(BATCH_SIZE);
+			orders.fields().include("items.productId");
+			try (Stream<Order> stream = mongoTemplate.stream(orders, Order.class)) {
+				stream.forEach(o -> {
+					if (o.getItems() == null) return;
+					o.getItems().stream()
+							.map(Order.OrderItem::getProductId)
+							.filter(Objects::nonNull)
+							.distinct()
+							.forEach(id -> counts.merge(id, 1L, Long::sum));
+				});
+			}
+
+			long changed = 0;
+			List<Product> stale = new ArrayList<>();
+			for (Product p : observed) {
+				long expected = counts.getOrDefault(p.getId(), 0L);
+				if (p.getOrderCount() != null && p.getOrderCount() == expected) continue;
+				stale.add(p);
+				if (stale.size() >= BATCH_SIZE) {
+					changed += write(stale, counts);
+					stale.clear();
+				}
+			}
+			changed += write(stale, counts);
+
+			System.out.println("Order counts backfilled: " + changed + " products updated in "
+					+ (System.currentTimeMillis() - start) + " ms");
+			return changed;
+		} catch (Exception e) {
+			System.err.println("Order count backfill failed: " + e.getMessage());
+			return 0;
+		} finally {
+			backfilling.set(false);
+		}
+	}
+
+	// Conditional on the value read during the product scan: a product that received an $inc in the meantime
+	// is left alone rather than overwritten with a count that may already be outdated
+	private long write(List<Product> stale, Map<String, Long> counts) {
+		if (stale.isEmpty()) return 0;
+		BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+		for (Product p : stale) {
+			Criteria observed = p.getOrderCount() == null
+					? Criteria.where("orderCount").exists(false)
+					: Criteria.where("orderCount").is(p.getOrderCount());
+			ops.updateOne(new Query(Criteria.where("_id").is(p.getId()).andOperator(observed)),
+					new Update().set("orderCount", counts.getOrDefault(p.getId(), 0L)));
+		}
+		long modified = ops.execute().getModifiedCount();
+		stale.forEach(p -> productCache.invalidate(p.getId()));
+		return modified;
+	}
+}
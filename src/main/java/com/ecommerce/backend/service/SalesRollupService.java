@@ -0,0 +1,210 @@
+package com.ecommerce.backend.service;
+
+import com.ecommerce.backend.event.OrderStatusChangedEvent;
+import com.ecommerce.backend.model.Order;
+import com.ecommerce.backend.model.Product;
+import com.ecommerce.backend.model.SalesRollup;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
+
+// Per-product and per-category sold quantity / revenue (sales_rollups), so the homepage and dashboard
+// rankings read the top k documents of an index instead of aggregating every order.
+// Orders are added when they become sold (OrderStatusChangedEvent.isSold) and subtracted again when
+// they stop being sold; rebuild() recounts everything from orders to repair drift, like CollectionCounters.
+@Service
+public class SalesRollupService {
+
+	private static final int BATCH_SIZE = 1000;
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	@Autowired
+	ProductCache productCache;
+
+	private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+
+	// Best sellers of one type (SalesRollup.PRODUCT / CATEGORY), highest quantity first. Walks the
+	// (type, quantity) index and stops after `limit` rollups the filter accepts.
+	public List<SalesRollup> top(String type, int limit, Predicate<SalesRollup> accept) {
+		Query query = new Query(Criteria.where("type").is(type).and("quantity").gt(0))
+				.with(Sort.by(Sort.Direction.DESC, "quantity"))
+				.cursorBatchSize(limit * 2);
+		List<SalesRollup> top = new ArrayList<>(limit);
+		try (Stream<SalesRollup> stream = mongoTemplate.stream(query, SalesRollup.class)) {
+			Iterator<SalesRollup> it = stream.iterator();
+			while (it.hasNext() && top.size() < limit) {
+				SalesRollup rollup = it.next();
+				if (accept.test(rollup)) top.add(rollup);
+			}
+		}
+		return top;
+	}
+
+	@EventListener
+	public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+		Order order = event.getOrder();
+		if (order.getDeletedAt() != null || order.getItems() == null) return;
+		if (event.becameSold()) {
+			apply(order, 1);
+		} else if (event.becameUnsold()) {
+			apply(order, -1);
+		}
+	}
+
+	private void apply(Order order, int sign) {
+		Totals totals = new Totals();
+		for (Order.OrderItem item : order.getItems()) {
+			if (item.getProductId() == null) continue;
+			String category = item.getCategory() != null
+					? item.getCategory()
+					: productCache.findById(item.getProductId()).map(Product::getCategory).orElse(null);
+			totals.add(item.getProductId(), category, (long) item.getQuantity() * sign,
+					item.getPrice() * item.getQuantity() * sign);
+		}
+		if (totals.quantities.isEmpty()) return;
+
+		try {
+			Date now = new Date();
+			BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SalesRollup.class);
+			totals.quantities.forEach((key, quantity) -> ops.upsert(new Query(Criteria.where("_id").is(key)),
+					rollupUpdate(key, now).inc("quantity", quantity[0]).inc("revenue", totals.revenues.get(key)[0])));
+			ops.execute();
+		} catch (Exception e) {
+			// The order is saved; the next rebuild repairs the rollups
+			System.err.println("Sales rollup update failed: " + e.getMessage());
+		}
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onReady() {
+		if (!mongoTemplate.exists(new Query(), SalesRollup.class)) {
+			CompletableFuture.runAsync(this::rebuild);
+		}
+	}
+
+	// Returns the number of rollups written, or -1 when a rebuild is already running
+	@Scheduled(cron = "${app.sales-rollups.rebuild-cron:0 30 4 * * *}")
+	public long rebuild() {
+		if (!rebuilding.compareAndSet(false, true)) return -1;
+		try {
+			long start = System.currentTimeMillis();
+			Date startedAt = new Date(start);
+			// A repair (rollups exist) leaves the ones orders $inc'ed since the start alone: the recount may
+			// already miss those orders. The first build writes everything.
+			boolean repair = mongoTemplate.exists(new Query(), SalesRollup.class);
+
+			Aggregation aggregation = newAggregation(
+					match(new Criteria().andOperator(
+							Criteria.where("deletedAt").is(null),
+							new Criteria().orOperator(
+									Criteria.where("paymentStatus").in(OrderStatusChangedEvent.PAID_STATUSES),
+									Criteria.where("deliveryStatus").is("delivered")))),
+					unwind("items"),
+					// Per product and recorded line category, so the recount attributes sales like apply() does
+					group("items.productId", "items.category")
+							.sum("items.quantity").as("quantity")
+							.sum(ArithmeticOperators.Multiply.valueOf("items.price").multiplyBy("items.quantity")).as("revenue")
+			);
+			List<Document> byProduct = mongoTemplate.aggregate(aggregation, Order.class, Document.class).getMappedResults();
+
+			Query products = new Query().cursorBatchSize(BATCH_SIZE);
+			products.fields().include("category");
+			Map<String, String> categories = new HashMap<>();
+			try (Stream<Product> stream = mongoTemplate.stream(products, Product.class)) {
+				stream.forEach(p -> categories.put(p.getId(), p.getCategory()));
+			}
+			Totals totals = new Totals();
+			for (Document d : byProduct) {
+				Document id = (Document) d.get("_id");
+				if (!(id.get("productId") instanceof String)) continue;
+				String productId = id.getString("productId");
+				String category = id.get("category") instanceof String ? id.getString("category") : categories.get(productId);
+				totals.add(productId, category,
+						((Number) d.get("quantity")).longValue(), ((Number) d.get("revenue")).doubleValue());
+			}
+
+			Date now = new Date();
+			BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SalesRollup.class);
+			int pending = 0;
+			for (Map.Entry<String, long[]> e : totals.quantities.entrySet()) {
+				long quantity = e.getValue()[0];
+				double revenue = totals.revenues.get(e.getKey())[0];
+				if (repair) {
+					// Overwrites only a rollup untouched since the start, and creates a missing one
+					ops.updateOne(new Query(Criteria.where("_id").is(e.getKey()).and("updatedAt").lt(startedAt)),
+							rollupUpdate(e.getKey(), now).set("quantity", quantity).set("revenue", revenue));
+					int separator = e.getKey().indexOf(':');
+					ops.upsert(new Query(Criteria.where("_id").is(e.getKey())), new Update()
+							.setOnInsert("type", e.getKey().substring(0, separator))
+							.setOnInsert("refId", e.getKey().substring(separator + 1))
+							.setOnInsert("quantity", quantity).setOnInsert("revenue", revenue).setOnInsert("updatedAt", now));
+				} else {
+					ops.upsert(new Query(Criteria.where("_id").is(e.getKey())), rollupUpdate(e.getKey(), now)
+							.set("quantity", quantity).set("revenue", revenue));
+				}
+				if (++pending == BATCH_SIZE) {
+					ops.execute();
+					ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SalesRollup.class);
+					pending = 0;
+				}
+			}
+			if (pending > 0) ops.execute();
+			// Rollups nothing sold for any more; ones touched by an order since the rebuild started are kept
+			mongoTemplate.remove(new Query(Criteria.where("updatedAt").lt(startedAt)), SalesRollup.class);
+
+			System.out.println("Sales rollups rebuilt: " + totals.quantities.size() + " rollups in "
+					+ (System.currentTimeMillis() - start) + " ms");
+			return totals.quantities.size();
+		} catch (Exception e) {
+			System.err.println("Sales rollup rebuild failed: " + e.getMessage());
+			return 0;
+		} finally {
+			rebuilding.set(false);
+		}
+	}
+
+	// Sums per rollup key; a product's sales also count for its category
+	private static class Totals {
+		final Map<String, long[]> quantities = new HashMap<>();
+		final Map<String, double[]> revenues = new HashMap<>();
+
+		void add(String productId, String category, long quantity, double revenue) {
+			add(SalesRollup.key(SalesRollup.PRODUCT, productId), quantity, revenue);
+			if (category != null) add(SalesRollup.key(SalesRollup.CATEGORY, category), quantity, revenue);
+		}
+
+		private void add(String key, long quantity, double revenue) {
+			quantities.computeIfAbsent(key, k -> new long[1])[0] += quantity;
+			revenues.computeIfAbsent(key, k -> new double[1])[0] += revenue;
+		}
+	}
+
+	private static Update rollupUpdate(String key, Date now) {
+		int separator = key.indexOf(':');
+		return new Update()
+				.setOnInsert("type", key.substring(0, separator))
+				.setOnInsert("refId", key.substring(separator + 1))
+				.set("updatedAt", now);
+	}
+}
@@ -0,0 +1,275 @@
+package com.ecommerce.backend.service.admission;
+
+import com.ecommerce.backend.model.Cart;
+import com.ecommerce.backend.service.CartService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Admission control ("virtual waiting room") in front of checkout, so a flash sale can't take every Tomcat
+// thread and Mongo connection away from browsing:
+//   - checkouts are admitted by a global token bucket, plus one bucket per product tuned for the sale
+//     (app.admission.product-rates or PUT /api/admin/admission/products/{id});
+//   - a request that isn't admitted gets a numbered ticket in a signed queue token, its position and a
+//     Retry-After; tickets become eligible in arrival order at the global rate, and newcomers only go
+//     straight through while nobody is waiting;
+//   - admitted checkouts run on a bounded pool, off the request thread; a full pool answers 503.
+// The room lives on this node (tickets from before a restart are re-queued at the back).
+@Service
+public class CheckoutAdmission {
+
+	public static final String QUEUE_TOKEN_HEADER = "X-Queue-Token";
+
+	@Autowired
+	CartService cartService;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	@Value("${app.admission.enabled:true}")
+	private boolean enabled;
+
+	@Value("${app.admission.rate-per-second:50}")
+	private double ratePerSecond;
+
+	@Value("${app.admission.burst:100}")
+	private double burst;
+
+	// productId=ratePerSecond,... (burst of one second's worth)
+	@Value("${app.admission.product-rates:}")
+	private String productRates;
+
+	@Value("${app.admission.token-secret:${app.jwt.secret}}")
+	private String tokenSecret;
+
+	// How long a ticket stays valid after its expected turn
+	@Value("${app.admission.token-ttl-seconds:120}")
+	private long tokenTtlSeconds;
+
+	@Value("${app.admission.checkout-threads:16}")
+	private int checkoutThreads;
+
+	@Value("${app.admission.checkout-queue:64}")
+	private int checkoutQueue;
+
+	public enum Outcome { ADMITTED, QUEUED }
+
+	@Getter
+	@AllArgsConstructor
+	public static class Decision {
+		private final Outcome outcome;
+		// Set for QUEUED
+		private final String queueToken;
+		// Tickets ahead of this one; 0 once it is eligible and only waits for a permit
+		private final long position;
+		private final int retryAfterSeconds;
+	}
+
+	private static final Decision ADMITTED = new Decision(Outcome.ADMITTED, null, 0, 0);
+
+	private final Map<String, TokenBucket> productBuckets = new ConcurrentHashMap<>();
+	// Tokens signed by another run of the room are treated as missing
+	private final long roomId = System.currentTimeMillis();
+	private TokenBucket global;
+	private SecretKey key;
+	private ThreadPoolExecutor executor;
+	private Counter admitted;
+	private Counter queued;
+	private Counter busy;
+
+	// Last ticket handed out, and how far the room has let tickets through (guarded by this)
+	private long issued;
+	private double serving;
+	private long servingAt = System.nanoTime();
+
+	@PostConstruct
+	public void init() {
+		global = new TokenBucket(ratePerSecond, burst);
+		key = Keys.hmacShaKeyFor(sha256(tokenSecret + ":checkout-queue"));
+		for (String entry : productRates.split(",")) {
+			if (entry.isBlank()) continue;
+			String[] parts = entry.trim().split("=");
+			try {
+				double rate = Double.parseDouble(parts[1]);
+				setProductRate(parts[0], rate, rate);
+			} catch (RuntimeException e) {
+				System.err.println("Ignoring app.admission.product-rates entry '" + entry + "': " + e.getMessage());
+			}
+		}
+
+		AtomicInteger threadCount = new AtomicInteger();
+		executor = new ThreadPoolExecutor(checkoutThreads, checkoutThreads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(checkoutQueue), r -> {
+					Thread thread = new Thread(r, "checkout-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.AbortPolicy());
+
+		admitted = Counter.builder("checkout.admission").tag("outcome", "admitted").register(meterRegistry);
+		queued = Counter.builder("checkout.admission").tag("outcome", "queued").register(meterRegistry);
+		busy = Counter.builder("checkout.admission").tag("outcome", "busy").register(meterRegistry);
+		meterRegistry.gauge("checkout.admission.waiting", this, CheckoutAdmission::waiting);
+		meterRegistry.gauge("checkout.admission.executor.queued", executor, e -> e.getQueue().size());
+	}
+
+	public Decision admit(String userId, String queueToken) {
+		if (!enabled) return ADMITTED;
+		Long ticket = ticketOf(userId, queueToken);
+		List<TokenBucket> products = productBucketsFor(userId);
+
+		synchronized (this) {
+			advance();
+			if (ticket == null) {
+				if (issued <= serving && acquire(products)) {
+					admitted.increment();
+					return ADMITTED;
+				}
+				ticket = ++issued;
+			} else if (ticket <= serving && acquire(products)) {
+				admitted.increment();
+				return ADMITTED;
+			}
+		}
+
+		queued.increment();
+		long position;
+		synchronized (this) {
+			position = Math.max(0, ticket - (long) serving);
+		}
+		double wait = position > 0 ? position / global.getRatePerSecond() : 0;
+		wait = Math.max(wait, global.secondsUntilAvailable());
+		for (TokenBucket bucket : products) wait = Math.max(wait, bucket.secondsUntilAvailable());
+		int retryAfter = (int) Math.max(1, Math.min(Math.ceil(wait), Integer.MAX_VALUE));
+
+		String token = Jwts.builder()
+				.claim("uid", userId)
+				.claim("room", roomId)
+				.claim("ticket", ticket)
+				.expiration(new Date(System.currentTimeMillis() + (retryAfter + tokenTtlSeconds) * 1000))
+				.signWith(key, Jwts.SIG.HS256)
+				.compact();
+		return new Decision(Outcome.QUEUED, token, position, retryAfter);
+	}
+
+	// Runs an admitted checkout on the bounded pool; throws RejectedExecutionException when it is full
+	public <T> CompletableFuture<T> submit(Supplier<T> work) {
+		try {
+			return CompletableFuture.supplyAsync(work, executor);
+		} catch (RejectedExecutionException e) {
+			busy.increment();
+			throw e;
+		}
+	}
+
+	// A rate <= 0 removes the product's bucket
+	public void setProductRate(String productId, double ratePerSecond, double burst) {
+		if (ratePerSecond <= 0) {
+			productBuckets.remove(productId);
+			return;
+		}
+		productBuckets.compute(productId, (id, bucket) -> {
+			if (bucket == null) return new TokenBucket(ratePerSecond, burst);
+			bucket.setRate(ratePerSecond, burst);
+			return bucket;
+		});
+	}
+
+	public Map<String, Object> status() {
+		Map<String, Object> products = new TreeMap<>();
+		productBuckets.forEach((id, bucket) -> products.put(id, Map.of("ratePerSecond", bucket.getRatePerSecond(), "burst", bucket.getBurst())));
+		return Map.of(
+				"enabled", enabled,
+				"ratePerSecond", global.getRatePerSecond(),
+				"burst", global.getBurst(),
+				"waiting", waiting(),
+				"checkoutsRunning", executor.getActiveCount(),
+				"checkoutsQueued", executor.getQueue().size(),
+				"products", products);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(30, TimeUnit.SECONDS)) executor.shutdownNow();
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private synchronized double waiting() {
+		advance();
+		return issued - Math.floor(serving);
+	}
+
+	// Lets tickets through at the global rate, never past the last one issued
+	private void advance() {
+		long now = System.nanoTime();
+		serving = Math.min(issued, serving + (now - servingAt) / 1e9 * global.getRatePerSecond());
+		servingAt = now;
+	}
+
+	// Global permit plus one from each product bucket, all or nothing
+	private boolean acquire(List<TokenBucket> products) {
+		if (!global.tryAcquire()) return false;
+		for (int i = 0; i < products.size(); i++) {
+			if (!products.get(i).tryAcquire()) {
+				for (int j = 0; j < i; j++) products.get(j).refund();
+				global.refund();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Buckets of the products in the user's cart; the cart is only read while a product is tuned
+	private List<TokenBucket> productBucketsFor(String userId) {
+		if (productBuckets.isEmpty()) return List.of();
+		List<TokenBucket> buckets = new ArrayList<>();
+		cartService.findActive(userId).stream().map(Cart::getProductId).distinct().forEach(productId -> {
+			TokenBucket bucket = productBuckets.get(productId);
+			if (bucket != null) buckets.add(bucket);
+		});
+		return buckets;
+	}
+
+	// The ticket in a valid, unexpired token issued to this user by this room, null otherwise
+	private Long ticketOf(String userId, String queueToken) {
+		if (queueToken == null || queueToken.isBlank()) return null;
+		try {
+			Claims claims = Jwts.parser().verifyWith(key).build().parseSignedClaims(queueToken).getPayload();
+			if (!userId.equals(claims.get("uid", String.class))) return null;
+			if (!(claims.get("room") instanceof Number room) || room.longValue() != roomId) return null;
+			return claims.get("ticket") instanceof Number ticket ? ticket.longValue() : null;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	private static byte[] sha256(String value) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package com.ecommerce.backend.service.admission;
+
+// Classic token bucket: refills at ratePerSecond up to burst permits, refilled lazily on each call
+public class TokenBucket {
+
+	private double ratePerSecond;
+	private double burst;
+	private double permits;
+	private long refilledAt = System.nanoTime();
+
+	public TokenBucket(double ratePerSecond, double burst) {
+		this.ratePerSecond = ratePerSecond;
+		this.burst = Math.max(1, burst);
+		this.permits = this.burst;
+	}
+
+	public synchronized boolean tryAcquire() {
+		refill();
+		if (permits < 1) return false;
+		permits -= 1;
+		return true;
+	}
+
+	// Gives back a permit taken for a request that was then turned away by another bucket
+	public synchronized void refund() {
+		permits = Math.min(burst, permits + 1);
+	}
+
+	// Seconds until the next permit, 0 when one is available now
+	public synchronized double secondsUntilAvailable() {
+		refill();
+		if (permits >= 1) return 0;
+		return ratePerSecond > 0 ? (1 - permits) / ratePerSecond : Double.POSITIVE_INFINITY;
+	}
+
+	public synchronized void setRate(double ratePerSecond, double burst) {
+		refill();
+		this.ratePerSecond = ratePerSecond;
+		this.burst = Math.max(1, burst);
+		this.permits = Math.min(this.permits, this.burst);
+	}
+
+	public synchronized double getRatePerSecond() {
+		return ratePerSecond;
+	}
+
+	public synchronized double getBurst() {
+		return burst;
+	}
+
+	private void refill() {
+		long now = System.nanoTime();
+		permits = Math.min(burst, permits + (now - refilledAt) / 1e9 * ratePerSecond);
+		refilledAt = now;
+	}
+}
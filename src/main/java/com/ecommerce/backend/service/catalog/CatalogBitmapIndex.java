@@ -0,0 +1,403 @@
+package com.ecommerce.backend.service.catalog;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-memory filter index over all products: one bitmap per attribute value (status, category,
+// available size, material, price bucket) and two presorted permutations (createdAt, price; _id breaks
+// ties like the Mongo sorts). A listing is bitmap AND/OR + a walk of the permutation, no Mongo round trip.
+// Writes keep the permutations sorted by moving a single ordinal (binary search + arraycopy).
+public class CatalogBitmapIndex {
+
+	private final double[] priceBounds;
+
+	private final Map<String, Integer> ordinals = new HashMap<>();
+	private final List<String> ids = new ArrayList<>();
+	private long[] createdAt = new long[1024];
+	private double[] price = new double[1024];
+	// Attribute values per ordinal, so an update can clear the old bits
+	private final List<Attributes> attributes = new ArrayList<>();
+
+	private final BitSet live = new BitSet();
+	private final BitSet active = new BitSet();
+	private final Map<String, BitSet> categories = new HashMap<>();
+	private final Map<String, BitSet> sizes = new HashMap<>();
+	private final Map<String, BitSet> materials = new HashMap<>();
+	private final BitSet[] priceBuckets;
+
+	private final Permutation byCreated = new Permutation((a, b) -> {
+		int c = Long.compare(createdAt[a], createdAt[b]);
+		return c != 0 ? c : ids.get(a).compareTo(ids.get(b));
+	});
+	private final Permutation byPrice = new Permutation((a, b) -> {
+		int c = Double.compare(price[a], price[b]);
+		return c != 0 ? c : ids.get(a).compareTo(ids.get(b));
+	});
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private boolean sealed = false;
+
+	public CatalogBitmapIndex(double[] priceBounds) {
+		this.priceBounds = priceBounds;
+		this.priceBuckets = new BitSet[priceBounds.length];
+		for (int i = 0; i < priceBuckets.length; i++) priceBuckets[i] = new BitSet();
+	}
+
+	public static class Page {
+		public final List<String> ids;
+		public final int total;
+
+		Page(List<String> ids, int total) {
+			this.ids = ids;
+			this.total = total;
+		}
+	}
+
+	public static class ValueCount {
+		public final String value;
+		public final int count;
+
+		ValueCount(String value, int count) {
+			this.value = value;
+			this.count = count;
+		}
+	}
+
+	public static class Facets {
+		public final List<ValueCount> categories;
+		public final int[] priceBuckets;
+		public final List<ValueCount> sizes;
+		public final List<ValueCount> materials;
+
+		Facets(List<ValueCount> categories, int[] priceBuckets, List<ValueCount> sizes, List<ValueCount> materials) {
+			this.categories = categories;
+			this.priceBuckets = priceBuckets;
+			this.sizes = sizes;
+			this.materials = materials;
+		}
+	}
+
+	private static class Attributes {
+		final boolean active;
+		final String category;
+		final Collection<String> sizes;
+		final String material;
+		final int priceBucket;
+
+		Attributes(boolean active, String category, Collection<String> sizes, String material, int priceBucket) {
+			this.active = active;
+			this.category = category;
+			this.sizes = sizes;
+			this.material = material;
+			this.priceBucket = priceBucket;
+		}
+	}
+
+	// availableSizes: size names with stock; createdAt: epoch millis or null
+	public void upsert(String id, boolean isActive, String category, double productPrice, Long created,
+			Collection<String> availableSizes, String material) {
+		lock.writeLock().lock();
+		try {
+			Integer existing = ordinals.get(id);
+			if (existing != null && !sealed) throw new IllegalStateException("Duplicate id during bulk load: " + id);
+			int ordinal;
+			if (existing != null) {
+				ordinal = existing;
+				clearBits(ordinal);
+				byCreated.remove(ordinal);
+				byPrice.remove(ordinal);
+			} else {
+				ordinal = ids.size();
+				ids.add(id);
+				attributes.add(null);
+				ordinals.put(id, ordinal);
+				ensureCapacity(ordinal + 1);
+			}
+
+			createdAt[ordinal] = created != null ? created : Long.MIN_VALUE; // null sorts first, as in Mongo
+			price[ordinal] = productPrice;
+			Attributes attrs = new Attributes(isActive, category, new ArrayList<>(new LinkedHashSet<>(availableSizes)),
+					material, bucketOf(productPrice));
+			attributes.set(ordinal, attrs);
+
+			live.set(ordinal);
+			if (attrs.active) active.set(ordinal);
+			if (category != null) categories.computeIfAbsent(category, k -> new BitSet()).set(ordinal);
+			for (String size : attrs.sizes) sizes.computeIfAbsent(size, k -> new BitSet()).set(ordinal);
+			if (material != null && !material.isEmpty()) materials.computeIfAbsent(material, k -> new BitSet()).set(ordinal);
+			priceBuckets[attrs.priceBucket].set(ordinal);
+
+			if (sealed) {
+				byCreated.insert(ordinal);
+				byPrice.insert(ordinal);
+			} else {
+				byCreated.append(ordinal);
+				byPrice.append(ordinal);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// Replaces only the product's in-stock sizes; false when it isn't indexed or its sizes didn't change
+	public boolean updateSizes(String id, Collection<String> availableSizes) {
+		lock.writeLock().lock();
+		try {
+			Integer ordinal = ordinals.get(id);
+			if (ordinal == null) return false;
+			Attributes attrs = attributes.get(ordinal);
+			List<String> updated = new ArrayList<>(new LinkedHashSet<>(availableSizes));
+			if (attrs == null || new HashSet<>(attrs.sizes).equals(new HashSet<>(updated))) return false;
+			for (String size : attrs.sizes) clear(sizes, size, ordinal);
+			for (String size : updated) sizes.computeIfAbsent(size, k -> new BitSet()).set(ordinal);
+			attributes.set(ordinal, new Attributes(attrs.active, attrs.category, updated, attrs.material, attrs.priceBucket));
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// Bulk load: upserts before seal() only append; seal() sorts the permutations once
+	public void seal() {
+		lock.writeLock().lock();
+		try {
+			if (sealed) return;
+			byCreated.sort();
+			byPrice.sort();
+			sealed = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// Hard delete: the ordinal stays a tombstone until the owner rebuilds the index
+	public void remove(String id) {
+		lock.writeLock().lock();
+		try {
+			if (!sealed) throw new IllegalStateException("Not sealed");
+			Integer ordinal = ordinals.remove(id);
+			if (ordinal == null) return;
+			clearBits(ordinal);
+			byCreated.remove(ordinal);
+			byPrice.remove(ordinal);
+			attributes.set(ordinal, null);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return ordinals.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// sortType as in KeysetCursor.sortFor: 0 newest, 1 oldest, 4 price asc, 5 price desc
+	public Page query(String status, String category, Double minPrice, Double maxPrice,
+			Collection<String> sizeNames, Collection<String> materialNames, String sortType, int page, int limit) {
+		lock.readLock().lock();
+		try {
+			BitSet match = match(status, category, minPrice, maxPrice, sizeNames, materialNames);
+			int total = match.cardinality();
+			long skip = (long) (page - 1) * limit;
+			if (skip >= total) return new Page(List.of(), total);
+
+			boolean priceSort = "4".equals(sortType) || "5".equals(sortType);
+			boolean descending = "5".equals(sortType) || !("1".equals(sortType) || "4".equals(sortType));
+			Permutation permutation = priceSort ? byPrice : byCreated;
+
+			List<String> pageIds = new ArrayList<>(limit);
+			if ((long) total * 32 < permutation.size) {
+				// Selective filter: sorting the few matches beats walking the whole permutation
+				Integer[] matches = new Integer[total];
+				int n = 0;
+				for (int i = match.nextSetBit(0); i >= 0; i = match.nextSetBit(i + 1)) matches[n++] = i;
+				Comparator<Integer> order = permutation.comparator::compare;
+				Arrays.sort(matches, descending ? order.reversed() : order);
+				for (long k = skip; k < total && pageIds.size() < limit; k++) pageIds.add(ids.get(matches[(int) k]));
+			} else {
+				long seen = 0;
+				for (int k = 0; k < permutation.size && pageIds.size() < limit; k++) {
+					int ordinal = permutation.order[descending ? permutation.size - 1 - k : k];
+					if (!match.get(ordinal)) continue;
+					if (seen++ >= skip) pageIds.add(ids.get(ordinal));
+				}
+			}
+			return new Page(pageIds, total);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// Counts among the products matching the filter, most frequent first (price buckets in bound order)
+	public Facets facets(String status, String category, Double minPrice, Double maxPrice,
+			Collection<String> sizeNames, Collection<String> materialNames) {
+		lock.readLock().lock();
+		try {
+			BitSet match = match(status, category, minPrice, maxPrice, sizeNames, materialNames);
+			BitSet scratch = new BitSet(match.length());
+			int[] buckets = new int[priceBuckets.length];
+			for (int i = 0; i < buckets.length; i++) buckets[i] = intersectCount(match, priceBuckets[i], scratch);
+			return new Facets(valueCounts(match, categories, scratch), buckets,
+					valueCounts(match, sizes, scratch), valueCounts(match, materials, scratch));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private BitSet match(String status, String category, Double minPrice, Double maxPrice,
+			Collection<String> sizeNames, Collection<String> materialNames) {
+		BitSet match = (BitSet) live.clone();
+		if ("inactive".equals(status)) {
+			match.andNot(active);
+		} else if (!"all".equals(status)) {
+			match.and(active);
+		}
+		if (category != null && !category.isEmpty()) match.and(categories.getOrDefault(category, new BitSet()));
+		if (sizeNames != null && !sizeNames.isEmpty()) match.and(union(sizes, sizeNames));
+		if (materialNames != null && !materialNames.isEmpty()) match.and(union(materials, materialNames));
+		if (minPrice != null || maxPrice != null) match.and(priceRange(minPrice, maxPrice));
+		return match;
+	}
+
+	private static BitSet union(Map<String, BitSet> bitmaps, Collection<String> values) {
+		BitSet union = new BitSet();
+		for (String value : values) {
+			BitSet bits = bitmaps.get(value);
+			if (bits != null) union.or(bits);
+		}
+		return union;
+	}
+
+	// Whole buckets inside [min, max) are OR-ed; the edge buckets are checked price by price
+	private BitSet priceRange(Double minPrice, Double maxPrice) {
+		double min = minPrice != null ? minPrice : Double.NEGATIVE_INFINITY;
+		double max = maxPrice != null ? maxPrice : Double.POSITIVE_INFINITY;
+		BitSet range = new BitSet();
+		for (int b = 0; b < priceBuckets.length; b++) {
+			double lower = b == 0 ? Double.NEGATIVE_INFINITY : priceBounds[b];
+			double upper = b + 1 < priceBounds.length ? priceBounds[b + 1] : Double.POSITIVE_INFINITY;
+			if (upper <= min || lower >= max) continue;
+			if (lower >= min && upper <= max) {
+				range.or(priceBuckets[b]);
+				continue;
+			}
+			BitSet bucket = priceBuckets[b];
+			for (int i = bucket.nextSetBit(0); i >= 0; i = bucket.nextSetBit(i + 1)) {
+				if (price[i] >= min && price[i] < max) range.set(i);
+			}
+		}
+		return range;
+	}
+
+	private static List<ValueCount> valueCounts(BitSet match, Map<String, BitSet> bitmaps, BitSet scratch) {
+		List<ValueCount> counts = new ArrayList<>();
+		for (Map.Entry<String, BitSet> e : bitmaps.entrySet()) {
+			int count = intersectCount(match, e.getValue(), scratch);
+			if (count > 0) counts.add(new ValueCount(e.getKey(), count));
+		}
+		counts.sort((a, b) -> a.count != b.count ? Integer.compare(b.count, a.count) : a.value.compareTo(b.value));
+		return counts;
+	}
+
+	private static int intersectCount(BitSet a, BitSet b, BitSet scratch) {
+		scratch.clear();
+		scratch.or(a);
+		scratch.and(b);
+		return scratch.cardinality();
+	}
+
+	private void clearBits(int ordinal) {
+		Attributes attrs = attributes.get(ordinal);
+		live.clear(ordinal);
+		active.clear(ordinal);
+		if (attrs == null) return;
+		clear(categories, attrs.category, ordinal);
+		for (String size : attrs.sizes) clear(sizes, size, ordinal);
+		clear(materials, attrs.material, ordinal);
+		priceBuckets[attrs.priceBucket].clear(ordinal);
+	}
+
+	private static void clear(Map<String, BitSet> bitmaps, String value, int ordinal) {
+		if (value == null) return;
+		BitSet bits = bitmaps.get(value);
+		if (bits == null) return;
+		bits.clear(ordinal);
+		if (bits.isEmpty()) bitmaps.remove(value);
+	}
+
+	// Bucket b holds prices in [bounds[b], bounds[b + 1]); the last one is open-ended
+	private int bucketOf(double value) {
+		int b = 0;
+		while (b + 1 < priceBounds.length && value >= priceBounds[b + 1]) b++;
+		return b;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= createdAt.length) return;
+		int grown = Math.max(capacity, createdAt.length * 2);
+		createdAt = Arrays.copyOf(createdAt, grown);
+		price = Arrays.copyOf(price, grown);
+	}
+
+	// Live ordinals sorted ascending by the comparator
+	private static class Permutation {
+		final IntComparator comparator;
+		int[] order = new int[1024];
+		int size;
+
+		Permutation(IntComparator comparator) {
+			this.comparator = comparator;
+		}
+
+		void append(int ordinal) {
+			if (size == order.length) order = Arrays.copyOf(order, size * 2);
+			order[size++] = ordinal;
+		}
+
+		void sort() {
+			Integer[] boxed = new Integer[size];
+			for (int i = 0; i < size; i++) boxed[i] = order[i];
+			Arrays.sort(boxed, comparator::compare);
+			for (int i = 0; i < size; i++) order[i] = boxed[i];
+		}
+
+		void insert(int ordinal) {
+			int pos = search(ordinal);
+			if (pos >= 0) return;
+			pos = -pos - 1;
+			if (size == order.length) order = Arrays.copyOf(order, size * 2);
+			System.arraycopy(order, pos, order, pos + 1, size - pos);
+			order[pos] = ordinal;
+			size++;
+		}
+
+		// Must run before the ordinal's sort key changes
+		void remove(int ordinal) {
+			int pos = search(ordinal);
+			if (pos < 0) return;
+			System.arraycopy(order, pos + 1, order, pos, size - pos - 1);
+			size--;
+		}
+
+		private int search(int ordinal) {
+			int low = 0, high = size - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				int c = comparator.compare(order[mid], ordinal);
+				if (c < 0) low = mid + 1;
+				else if (c > 0) high = mid - 1;
+				else return mid;
+			}
+			return -(low + 1);
+		}
+	}
+
+	private interface IntComparator {
+		int compare(int a, int b);
+	}
+}
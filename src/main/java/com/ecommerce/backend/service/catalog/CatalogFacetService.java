@@ -0,0 +1,133 @@
+package com.ecommerce.backend.service.catalog;
+
+import com.ecommerce.backend.model.Product;
+import com.ecommerce.backend.service.ProductCache;
+import com.ecommerce.backend.util.KeysetCursor;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
+
+// Result page + facet counts (category, price histogram, available size names, material) for a filter.
+// Served from the in-memory CatalogIndexService when it is loaded, otherwise computed in one
+// $facet aggregation after a single indexed $match.
+@Service
+public class CatalogFacetService {
+
+	// VND bucket lower bounds; prices from the last bound up land in the open-ended bucket
+	public static final double[] PRICE_BOUNDS = {0, 100_000, 200_000, 300_000, 500_000, 1_000_000, 2_000_000};
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	@Autowired
+	CatalogIndexService catalogIndexService;
+
+	@Autowired
+	ProductCache productCache;
+
+	public Map<String, Object> browse(CatalogFilter filter, String sortType, int page, int limit) {
+		CatalogBitmapIndex.Page indexed = catalogIndexService.query(filter, sortType, page, limit);
+		CatalogBitmapIndex.Facets counts = indexed != null ? catalogIndexService.facets(filter) : null;
+		if (counts != null) {
+			Map<String, Object> facets = new LinkedHashMap<>();
+			facets.put("categories", valueCounts(counts.categories));
+			facets.put("price", priceBuckets(Arrays.stream(counts.priceBuckets).asLongStream().toArray()));
+			facets.put("sizes", valueCounts(counts.sizes));
+			facets.put("materials", valueCounts(counts.materials));
+			return response(productCache.findAllById(indexed.ids), indexed.total, page, limit, facets);
+		}
+		return browseAggregated(filter, KeysetCursor.sortFor(sortType), page, limit);
+	}
+
+	private Map<String, Object> browseAggregated(CatalogFilter filter, Sort sort, int page, int limit) {
+		Object[] boundaries = Arrays.stream(PRICE_BOUNDS).boxed().toArray();
+		Aggregation aggregation = newAggregation(
+				match(filter.toCriteria()),
+				facet(sort(sort), skip((long) (page - 1) * limit), limit(limit)).as("contents")
+						.and(count().as("total")).as("total")
+						.and(sortByCount("category")).as("categories")
+						.and(bucket("price").withBoundaries(boundaries).withDefaultBucket("more")
+								.andOutputCount().as("count")).as("price")
+						.and(unwind("size"), match(Criteria.where("size.amount").gt(0)),
+								sortByCount("size.name")).as("sizes")
+						.and(sortByCount("material")).as("materials")
+		);
+		Document result = mongoTemplate.aggregate(aggregation, Product.class, Document.class).getUniqueMappedResult();
+		if (result == null) result = new Document();
+
+		List<Product> contents = new ArrayList<>();
+		for (Document doc : result.getList("contents", Document.class, List.of())) {
+			contents.add(mongoTemplate.getConverter().read(Product.class, doc));
+		}
+		List<Document> totalRows = result.getList("total", Document.class, List.of());
+		long total = totalRows.isEmpty() ? 0 : ((Number) totalRows.get(0).get("total")).longValue();
+
+		Map<String, Object> facets = new LinkedHashMap<>();
+		facets.put("categories", documentCounts(result.getList("categories", Document.class, List.of())));
+		facets.put("price", priceBuckets(bucketCounts(result.getList("price", Document.class, List.of()))));
+		facets.put("sizes", documentCounts(result.getList("sizes", Document.class, List.of())));
+		facets.put("materials", documentCounts(result.getList("materials", Document.class, List.of())));
+		return response(contents, total, page, limit, facets);
+	}
+
+	private static Map<String, Object> response(List<Product> contents, long total, int page, int limit, Map<String, Object> facets) {
+		Map<String, Object> response = new HashMap<>();
+		response.put("contents", contents);
+		response.put("total", total);
+		response.put("page", page);
+		response.put("limit", limit);
+		response.put("facets", facets);
+		return response;
+	}
+
+	private static List<Map<String, Object>> valueCounts(List<CatalogBitmapIndex.ValueCount> counts) {
+		List<Map<String, Object>> values = new ArrayList<>();
+		for (CatalogBitmapIndex.ValueCount c : counts) {
+			if (c.value.isEmpty()) continue;
+			values.add(Map.of("value", c.value, "count", (long) c.count));
+		}
+		return values;
+	}
+
+	private static List<Map<String, Object>> documentCounts(List<Document> rows) {
+		List<Map<String, Object>> values = new ArrayList<>();
+		for (Document row : rows) {
+			Object value = row.get("_id");
+			if (value == null || "".equals(value)) continue;
+			values.add(Map.of("value", value, "count", ((Number) row.get("count")).longValue()));
+		}
+		return values;
+	}
+
+	// $bucket rows keyed by lower bound ("more" for the open-ended one) -> counts in bound order
+	private static long[] bucketCounts(List<Document> rows) {
+		long[] counts = new long[PRICE_BOUNDS.length];
+		for (Document row : rows) {
+			Object key = row.get("_id");
+			int b = key instanceof Number ? Arrays.binarySearch(PRICE_BOUNDS, ((Number) key).doubleValue()) : PRICE_BOUNDS.length - 1;
+			if (b >= 0) counts[b] = ((Number) row.get("count")).longValue();
+		}
+		return counts;
+	}
+
+	// Every bucket is returned (0 when empty) so the sidebar layout doesn't jump between filters
+	private static List<Map<String, Object>> priceBuckets(long[] counts) {
+		List<Map<String, Object>> buckets = new ArrayList<>();
+		for (int i = 0; i < PRICE_BOUNDS.length; i++) {
+			Map<String, Object> bucket = new HashMap<>();
+			bucket.put("min", PRICE_BOUNDS[i]);
+			bucket.put("max", i < PRICE_BOUNDS.length - 1 ? PRICE_BOUNDS[i + 1] : null);
+			bucket.put("count", counts[i]);
+			buckets.add(bucket);
+		}
+		return buckets;
+	}
+}
@@ -0,0 +1,49 @@
+package com.ecommerce.backend.service.catalog;
+
+import com.ecommerce.backend.model.Product;
+import lombok.Builder;
+import lombok.Getter;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Storefront listing filter: status (default active, "inactive", "all"), category,
+// price range (inclusive min, exclusive max), available size names and materials (any of).
+@Getter
+@Builder
+public class CatalogFilter {
+
+	private final String status;
+	private final String category;
+	private final Double minPrice;
+	private final Double maxPrice;
+	private final List<String> sizes;
+	private final List<String> materials;
+
+	public Criteria toCriteria() {
+		List<Criteria> parts = new ArrayList<>();
+		if ("inactive".equals(status)) {
+			parts.add(Criteria.where("deletedAt").ne(null));
+		} else if (!"all".equals(status)) {
+			parts.add(Criteria.where("deletedAt").is(null));
+		}
+		if (category != null && !category.isEmpty()) parts.add(Criteria.where("category").is(category));
+		if (minPrice != null || maxPrice != null) {
+			Criteria price = Criteria.where("price");
+			if (minPrice != null) price.gte(minPrice);
+			if (maxPrice != null) price.lt(maxPrice);
+			parts.add(price);
+		}
+		if (sizes != null && !sizes.isEmpty()) {
+			parts.add(Criteria.where("size").elemMatch(Criteria.where("name").in(sizes).and("amount").gt(0)));
+		}
+		if (materials != null && !materials.isEmpty()) parts.add(Criteria.where("material").in(materials));
+
+		return parts.isEmpty() ? new Criteria() : new Criteria().andOperator(parts);
+	}
+
+	public static boolean isAvailable(Product.Size size) {
+		return size != null && size.getName() != null && size.getAmount() != null && size.getAmount() > 0;
+	}
+}
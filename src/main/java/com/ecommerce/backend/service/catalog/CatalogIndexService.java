@@ -0,0 +1,125 @@
+package com.ecommerce.backend.service.catalog;
+
+import com.ecommerce.backend.event.ProductChangedEvent;
+import com.ecommerce.backend.event.StockChangedEvent;
+import com.ecommerce.backend.model.Product;
+import com.ecommerce.backend.service.ProductCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Owns the CatalogBitmapIndex over all products (active and deleted, for the status filter).
+// Loaded after startup, kept in sync from ProductChangedEvents (StockChangedEvents only touch the size
+// bitmaps) and rebuilt nightly to drop tombstones.
+// query()/facets() return null until the first load finished; callers fall back to Mongo.
+@Service
+public class CatalogIndexService {
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	@Autowired
+	ProductCache productCache;
+
+	private volatile CatalogBitmapIndex index;
+	private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+	private final Set<String> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+	public CatalogBitmapIndex.Page query(CatalogFilter filter, String sortType, int page, int limit) {
+		CatalogBitmapIndex current = index;
+		if (current == null) return null;
+		return current.query(filter.getStatus(), filter.getCategory(), filter.getMinPrice(), filter.getMaxPrice(),
+				filter.getSizes(), filter.getMaterials(), sortType, page, limit);
+	}
+
+	public CatalogBitmapIndex.Facets facets(CatalogFilter filter) {
+		CatalogBitmapIndex current = index;
+		if (current == null) return null;
+		return current.facets(filter.getStatus(), filter.getCategory(), filter.getMinPrice(), filter.getMaxPrice(),
+				filter.getSizes(), filter.getMaterials());
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onReady() {
+		CompletableFuture.runAsync(this::rebuild);
+	}
+
+	@Scheduled(cron = "${app.catalog.rebuild-cron:0 15 4 * * *}")
+	public void rebuild() {
+		if (!rebuilding.compareAndSet(false, true)) return;
+		try {
+			changedDuringRebuild.clear();
+			long start = System.currentTimeMillis();
+			CatalogBitmapIndex fresh = new CatalogBitmapIndex(CatalogFacetService.PRICE_BOUNDS);
+			Query query = new Query().cursorBatchSize(1000);
+			query.fields().include("category", "price", "size", "material", "createdAt", "deletedAt");
+			try (Stream<Product> stream = mongoTemplate.stream(query, Product.class)) {
+				stream.forEach(p -> put(fresh, p));
+			}
+			fresh.seal();
+			index = fresh;
+			System.out.println("Catalog index: " + fresh.size() + " products in " + (System.currentTimeMillis() - start) + " ms");
+		} catch (Exception e) {
+			System.err.println("Catalog index rebuild failed: " + e.getMessage());
+		} finally {
+			rebuilding.set(false);
+		}
+
+		List<String> replay = new ArrayList<>(changedDuringRebuild);
+		changedDuringRebuild.clear();
+		replay.forEach(this::refresh);
+	}
+
+	@EventListener
+	public void onProductChanged(ProductChangedEvent event) {
+		if (event.isAll()) {
+			CompletableFuture.runAsync(this::rebuild);
+			return;
+		}
+		if (rebuilding.get()) changedDuringRebuild.add(event.getProductId());
+		refresh(event.getProductId());
+	}
+
+	// A sale / release only moves stock: just the size bitmaps change, and only when a size sold out or came back
+	@EventListener
+	public void onStockChanged(StockChangedEvent event) {
+		if (rebuilding.get()) changedDuringRebuild.add(event.getProductId());
+		CatalogBitmapIndex current = index;
+		if (current == null) return;
+		productCache.findById(event.getProductId()).ifPresent(p -> current.updateSizes(p.getId(), availableSizes(p)));
+	}
+
+	private void refresh(String productId) {
+		CatalogBitmapIndex current = index;
+		if (current == null) return;
+		Optional<Product> product = productCache.findById(productId);
+		if (product.isPresent()) {
+			put(current, product.get());
+		} else {
+			current.remove(productId);
+		}
+	}
+
+	private static void put(CatalogBitmapIndex index, Product p) {
+		index.upsert(p.getId(), p.getDeletedAt() == null, p.getCategory(), p.getPrice(),
+				p.getCreatedAt() != null ? p.getCreatedAt().getTime() : null, availableSizes(p), p.getMaterial());
+	}
+
+	private static List<String> availableSizes(Product p) {
+		return p.getSize() == null ? List.of() : p.getSize().stream()
+				.filter(CatalogFilter::isAvailable)
+				.map(Product.Size::getName)
+				.collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,413 @@
+package com.ecommerce.backend.service.catalog;
+
+import com.ecommerce.backend.event.ProductChangedEvent;
+import com.ecommerce.backend.model.Category;
+import com.ecommerce.backend.model.Product;
+import com.ecommerce.backend.service.CategorySnapshot;
+import com.ecommerce.backend.service.CategorySnapshotService;
+import com.ecommerce.backend.service.CollectionCounters;
+import com.ecommerce.backend.util.CsvReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Bulk product import (CSV / NDJSON, stream-parsed) and CSV export (from a cursor).
+// Rows are validated in parallel per batch of 1000 and written with one unordered bulkWrite per batch.
+// Rows without _id are inserted; complete rows with _id are upserted; partial rows (e.g. _id + price)
+// update an existing product. A deletedAt column soft-deletes (or, when empty, restores) the product, so
+// an export imports back as it was. Every rejected row is reported with its row number.
+@Service
+public class ProductTransferService {
+
+	private static final int BATCH_SIZE = 1000;
+	private static final int MAX_REPORTED_ERRORS = 1000;
+
+	public static final List<String> CSV_COLUMNS = List.of(
+			"_id", "name", "price", "category", "type", "material", "sizes", "images", "description", "deletedAt");
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	@Autowired
+	CategorySnapshotService categorySnapshotService;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	CollectionCounters collectionCounters;
+
+	@Value("${app.streaming.batch-size:500}")
+	private int exportBatchSize;
+
+	private static class Row {
+		final long number;
+		final Map<String, Object> values;
+		final String parseError;
+
+		Row(long number, Map<String, Object> values, String parseError) {
+			this.number = number;
+			this.values = values;
+			this.parseError = parseError;
+		}
+	}
+
+	private static class Validated {
+		final long row;
+		final String id;
+		final Product product;
+		final Set<String> fields;
+		final String error;
+
+		Validated(long row, String id, Product product, Set<String> fields, String error) {
+			this.row = row;
+			this.id = id;
+			this.product = product;
+			this.fields = fields;
+			this.error = error;
+		}
+
+		boolean isComplete() {
+			return fields.contains("name") && fields.contains("price");
+		}
+	}
+
+	private static class Report {
+		long processed;
+		long inserted;
+		long updated;
+		long failed;
+		final List<Map<String, Object>> errors = new ArrayList<>();
+
+		void error(long row, String message) {
+			failed++;
+			if (errors.size() < MAX_REPORTED_ERRORS) errors.add(Map.of("row", row, "message", message));
+		}
+
+		Map<String, Object> toMap() {
+			Map<String, Object> map = new LinkedHashMap<>();
+			map.put("processed", processed);
+			map.put("inserted", inserted);
+			map.put("updated", updated);
+			map.put("failed", failed);
+			map.put("errors", errors);
+			map.put("errorsTruncated", failed > errors.size());
+			return map;
+		}
+	}
+
+	public Map<String, Object> importProducts(InputStream in, boolean csv) throws IOException {
+		long start = System.currentTimeMillis();
+		// One snapshot for the whole import, so every row resolves against the same categories
+		CategorySnapshot categories = categorySnapshotService.get();
+		Report report = new Report();
+		List<Row> batch = new ArrayList<>(BATCH_SIZE);
+
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			if (csv) {
+				CsvReader csvReader = new CsvReader(reader);
+				List<String> header = csvReader.next();
+				if (header == null) return report.toMap();
+				header = header.stream().map(h -> h.trim().replace("\uFEFF", "")).collect(Collectors.toList());
+				long number = csvReader.getLine();
+				List<String> record;
+				while ((record = csvReader.next()) != null) {
+					Map<String, Object> values = new HashMap<>();
+					for (int i = 0; i < header.size() && i < record.size(); i++) values.put(header.get(i), record.get(i));
+					batch.add(new Row(number, values, record.size() > header.size() ? "Too many columns" : null));
+					number = csvReader.getLine();
+					if (batch.size() >= BATCH_SIZE) flush(batch, categories, report);
+				}
+			} else {
+				String line;
+				long number = 0;
+				while ((line = reader.readLine()) != null) {
+					number++;
+					if (line.isBlank()) continue;
+					try {
+						@SuppressWarnings("unchecked")
+						Map<String, Object> values = objectMapper.readValue(line, Map.class);
+						batch.add(new Row(number, values, null));
+					} catch (IOException e) {
+						batch.add(new Row(number, Map.of(), "Invalid JSON: " + e.getOriginalMessage()));
+					}
+					if (batch.size() >= BATCH_SIZE) flush(batch, categories, report);
+				}
+			}
+			flush(batch, categories, report);
+		}
+
+		if (report.inserted + report.updated > 0) {
+			// Caches and in-memory indexes reload once; counters recount instead of per-row deltas
+			eventPublisher.publishEvent(ProductChangedEvent.all());
+			collectionCounters.reconcile();
+		}
+		System.out.println("Product import: " + report.processed + " rows in " + (System.currentTimeMillis() - start) + " ms");
+		return report.toMap();
+	}
+
+	public StreamingResponseBody exportCsv(Query query) {
+		query.cursorBatchSize(exportBatchSize);
+		return out -> {
+			Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+			writer.write(String.join(",", CSV_COLUMNS));
+			writer.write("\r\n");
+			long written = 0;
+			try (Stream<Product> stream = mongoTemplate.stream(query, Product.class)) {
+				Iterator<Product> it = stream.iterator();
+				while (it.hasNext()) {
+					writer.write(toCsv(it.next()));
+					writer.write("\r\n");
+					if (++written % exportBatchSize == 0) writer.flush();
+				}
+			} catch (Exception e) {
+				System.err.println("Product CSV export aborted: " + e.getMessage());
+			}
+			writer.flush();
+		};
+	}
+
+	private void flush(List<Row> rows, CategorySnapshot categories, Report report) {
+		if (rows.isEmpty()) return;
+		report.processed += rows.size();
+		List<Validated> validated = rows.parallelStream()
+				.map(row -> validate(row, categories))
+				.collect(Collectors.toList());
+		rows.clear();
+
+		Set<String> existing = existingIds(validated.stream()
+				.filter(v -> v.error == null && v.id != null && !v.isComplete())
+				.map(v -> v.id)
+				.collect(Collectors.toList()));
+
+		BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+		List<Long> opRows = new ArrayList<>();
+		Date now = new Date();
+		for (Validated v : validated) {
+			if (v.error != null) {
+				report.error(v.row, v.error);
+				continue;
+			}
+			if (v.id == null) {
+				v.product.setCreatedAt(now);
+				v.product.setUpdatedAt(now);
+				v.product.setOrderCount(0L);
+				ops.insert(v.product);
+			} else if (v.isComplete()) {
+				ops.upsert(new Query(Criteria.where("_id").is(v.id)), toUpdate(v, now));
+			} else if (existing.contains(v.id)) {
+				ops.updateOne(new Query(Criteria.where("_id").is(v.id)), toUpdate(v, now));
+			} else {
+				report.error(v.row, "Unknown product id (name and price are required to create it): " + v.id);
+				continue;
+			}
+			opRows.add(v.row);
+		}
+		if (opRows.isEmpty()) return;
+
+		BulkWriteResult result;
+		try {
+			result = ops.execute();
+		} catch (BulkOperationException e) {
+			// Unordered: everything except the reported operations was written
+			result = e.getResult();
+			for (BulkWriteError error : e.getErrors()) report.error(opRows.get(error.getIndex()), error.getMessage());
+		}
+		report.inserted += result.getInsertedCount() + result.getUpserts().size();
+		report.updated += result.getMatchedCount();
+	}
+
+	private Validated validate(Row row, CategorySnapshot categories) {
+		if (row.parseError != null) return new Validated(row.number, null, null, null, row.parseError);
+		Map<String, Object> values = row.values;
+		try {
+			String id = text(values, "_id", "id");
+			boolean isNew = id == null;
+			Product product = new Product();
+			Set<String> fields = new HashSet<>();
+
+			String name = text(values, "name");
+			if (name != null) {
+				product.setName(name);
+				fields.add("name");
+			} else if (isNew) {
+				return new Validated(row.number, null, null, null, "Missing name");
+			}
+
+			Object price = values.get("price");
+			if (price != null && !price.toString().isBlank()) {
+				double parsed = price instanceof Number ? ((Number) price).doubleValue() : Double.parseDouble(price.toString().trim());
+				if (parsed < 0 || Double.isNaN(parsed)) return new Validated(row.number, null, null, null, "Invalid price: " + price);
+				product.setPrice(parsed);
+				fields.add("price");
+			} else if (isNew) {
+				return new Validated(row.number, null, null, null, "Missing price");
+			}
+
+			// Category by id, or by name through "type" (same resolution as POST /api/product)
+			String categoryId = text(values, "category");
+			String categoryName = text(values, "type", "categoryName");
+			Category category = null;
+			if (categoryId != null) {
+				category = categories.findActiveById(categoryId).orElse(null);
+				if (category == null) return new Validated(row.number, null, null, null, "Unknown category id: " + categoryId);
+			} else if (categoryName != null) {
+				category = categories.findActiveByName(categoryName).orElse(null);
+				if (category == null) return new Validated(row.number, null, null, null, "Unknown category: " + categoryName);
+			}
+			if (category != null) {
+				product.setCategory(category.getId());
+				product.setType(category.getName());
+				fields.add("category");
+				fields.add("type");
+			}
+
+			if (values.containsKey("description")) {
+				product.setDescription(text(values, "description"));
+				fields.add("description");
+			}
+			if (values.containsKey("material")) {
+				product.setMaterial(text(values, "material"));
+				fields.add("material");
+			}
+			Object sizes = values.containsKey("size") ? values.get("size") : values.get("sizes");
+			if (sizes != null) {
+				product.setSize(sizes(sizes));
+				fields.add("size");
+			}
+			if (values.containsKey("images")) {
+				product.setImages(images(values.get("images")));
+				fields.add("images");
+			}
+			if (values.containsKey("deletedAt")) {
+				product.setDeletedAt(deletedAt(values.get("deletedAt")));
+				fields.add("deletedAt");
+			}
+
+			if (!isNew) product.setId(id);
+			return new Validated(row.number, id, product, fields, null);
+		} catch (IllegalArgumentException e) {
+			return new Validated(row.number, null, null, null, e.getMessage());
+		}
+	}
+
+	// Only the columns present in the row are written, so a partial feed doesn't wipe other fields
+	private static Update toUpdate(Validated v, Date now) {
+		Product p = v.product;
+		Update update = new Update().set("updatedAt", now).setOnInsert("createdAt", now).setOnInsert("orderCount", 0L);
+		if (v.fields.contains("name")) update.set("name", p.getName());
+		if (v.fields.contains("price")) update.set("price", p.getPrice());
+		if (v.fields.contains("category")) update.set("category", p.getCategory());
+		if (v.fields.contains("type")) update.set("type", p.getType());
+		if (v.fields.contains("description")) update.set("description", p.getDescription());
+		if (v.fields.contains("material")) update.set("material", p.getMaterial());
+		if (v.fields.contains("size")) update.set("size", p.getSize());
+		if (v.fields.contains("images")) update.set("images", p.getImages());
+		if (v.fields.contains("deletedAt")) update.set("deletedAt", p.getDeletedAt());
+		return update;
+	}
+
+	private Set<String> existingIds(List<String> ids) {
+		if (ids.isEmpty()) return Set.of();
+		Query query = new Query(Criteria.where("_id").in(ids));
+		query.fields().include("_id");
+		return mongoTemplate.find(query, Product.class).stream().map(Product::getId).collect(Collectors.toSet());
+	}
+
+	private static String text(Map<String, Object> values, String... keys) {
+		for (String key : keys) {
+			Object value = values.get(key);
+			if (value != null && !value.toString().isBlank()) return value.toString().trim();
+		}
+		return null;
+	}
+
+	// CSV "S:10;M:5" or NDJSON [{"name": "S", "amount": 10}, ...] ("10" accepted too)
+	private static List<Product.Size> sizes(Object value) {
+		List<Product.Size> sizes = new ArrayList<>();
+		if (value instanceof List) {
+			for (Object item : (List<?>) value) {
+				if (!(item instanceof Map)) throw new IllegalArgumentException("Invalid size: " + item);
+				Map<?, ?> size = (Map<?, ?>) item;
+				Object name = size.get("name");
+				if (name == null) throw new IllegalArgumentException("Size without name");
+				Object amount = size.get("amount");
+				String text = amount != null ? amount.toString().trim() : "0";
+				if (!text.matches("\\d+")) throw new IllegalArgumentException("Invalid size amount: " + name + ":" + amount);
+				sizes.add(new Product.Size(name.toString(), Integer.parseInt(text)));
+			}
+			return sizes;
+		}
+		for (String part : value.toString().split(";")) {
+			if (part.isBlank()) continue;
+			String[] nameAmount = part.split(":", 2);
+			String amount = nameAmount.length > 1 ? nameAmount[1].trim() : "0";
+			if (!amount.matches("\\d+")) throw new IllegalArgumentException("Invalid size amount: " + part);
+			sizes.add(new Product.Size(nameAmount[0].trim(), Integer.parseInt(amount)));
+		}
+		return sizes;
+	}
+
+	// ISO-8601 instant as exported ("2024-05-01T10:00:00Z"), or NDJSON epoch millis; empty means not deleted
+	private static Date deletedAt(Object value) {
+		if (value instanceof Number) return new Date(((Number) value).longValue());
+		if (value == null || value.toString().isBlank()) return null;
+		try {
+			return Date.from(Instant.parse(value.toString().trim()));
+		} catch (DateTimeParseException e) {
+			throw new IllegalArgumentException("Invalid deletedAt: " + value);
+		}
+	}
+
+	// CSV "url1|url2" or NDJSON ["url1", "url2"]
+	private static List<String> images(Object value) {
+		if (value == null) return new ArrayList<>();
+		if (value instanceof List) {
+			return ((List<?>) value).stream().filter(Objects::nonNull).map(Object::toString).collect(Collectors.toList());
+		}
+		return Arrays.stream(value.toString().split("\\|"))
+				.map(String::trim)
+				.filter(s -> !s.isEmpty())
+				.collect(Collectors.toList());
+	}
+
+	private static String toCsv(Product p) {
+		String sizes = p.getSize() == null ? "" : p.getSize().stream()
+				.map(s -> s.getName() + ":" + (s.getAmount() != null ? s.getAmount() : "0"))
+				.collect(Collectors.joining(";"));
+		String images = p.getImages() == null ? "" : String.join("|", p.getImages());
+		return String.join(",",
+				CsvReader.escape(p.getId()),
+				CsvReader.escape(p.getName()),
+				CsvReader.escape(String.valueOf(p.getPrice())),
+				CsvReader.escape(p.getCategory()),
+				CsvReader.escape(p.getType()),
+				CsvReader.escape(p.getMaterial()),
+				CsvReader.escape(sizes),
+				CsvReader.escape(images),
+				CsvReader.escape(p.getDescription()),
+				CsvReader.escape(p.getDeletedAt() != null ? String.valueOf(p.getDeletedAt().toInstant()) : ""));
+	}
+}
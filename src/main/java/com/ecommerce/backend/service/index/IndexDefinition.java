@@ -0,0 +1,98 @@
+package com.ecommerce.backend.service.index;
+
+import com.mongodb.client.model.IndexOptions;
+import lombok.Builder;
+import lombok.Getter;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+// One index the application relies on. Matching is done on the key pattern (in order) and
+// the options that change query semantics, so indexes created earlier under another name
+// (mongoose, Spring annotations, Atlas UI) are accepted as-is.
+@Getter
+@Builder
+public class IndexDefinition {
+
+	private final String collection;
+	private final String name;
+	private final Document keys;
+	private final boolean unique;
+	private final Document partialFilter;
+	private final Document weights;
+	private final Long expireAfterSeconds;
+
+	public boolean isText() {
+		return keys.containsValue("text");
+	}
+
+	public IndexOptions toOptions() {
+		IndexOptions options = new IndexOptions().name(name).unique(unique);
+		if (partialFilter != null) options.partialFilterExpression(partialFilter);
+		if (weights != null) options.weights(weights);
+		if (expireAfterSeconds != null) options.expireAfter(expireAfterSeconds, TimeUnit.SECONDS);
+		return options;
+	}
+
+	// Same key pattern as an entry returned by listIndexes()
+	public boolean matchesKeys(Document existing) {
+		Document existingKey = existing.get("key", Document.class);
+		if (existingKey == null) return false;
+		if (isText()) {
+			// Text indexes are reported as {_fts: "text", _ftsx: 1}; compare the weights instead
+			Document existingWeights = existing.get("weights", Document.class);
+			return existingKey.containsKey("_fts") && sameWeights(weightsOrDefault(), existingWeights);
+		}
+		return sameEntries(keys, existingKey);
+	}
+
+	public boolean matchesOptions(Document existing) {
+		return unique == existing.getBoolean("unique", false)
+				&& Objects.equals(partialFilter, existing.get("partialFilterExpression"))
+				&& sameNumber(expireAfterSeconds, existing.get("expireAfterSeconds"));
+	}
+
+	private Document weightsOrDefault() {
+		if (weights != null) return weights;
+		Document w = new Document();
+		keys.keySet().forEach(k -> w.append(k, 1));
+		return w;
+	}
+
+	// Ordered comparison (compound key order matters), numbers compared by value (1 vs 1.0)
+	private static boolean sameEntries(Document a, Document b) {
+		if (a == null || b == null || a.size() != b.size()) return false;
+		List<Map.Entry<String, Object>> left = new ArrayList<>(a.entrySet());
+		List<Map.Entry<String, Object>> right = new ArrayList<>(b.entrySet());
+		for (int i = 0; i < left.size(); i++) {
+			if (!left.get(i).getKey().equals(right.get(i).getKey())) return false;
+			Object l = left.get(i).getValue();
+			Object r = right.get(i).getValue();
+			if (l instanceof Number && r instanceof Number) {
+				if (((Number) l).doubleValue() != ((Number) r).doubleValue()) return false;
+			} else if (!Objects.equals(l, r)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Weights come back sorted by field name, so compare them as a map
+	private static boolean sameWeights(Document a, Document b) {
+		if (b == null || a.size() != b.size()) return false;
+		for (Map.Entry<String, Object> e : a.entrySet()) {
+			Object other = b.get(e.getKey());
+			if (!(other instanceof Number) || ((Number) other).doubleValue() != ((Number) e.getValue()).doubleValue()) return false;
+		}
+		return true;
+	}
+
+	private static boolean sameNumber(Long expected, Object actual) {
+		if (expected == null || actual == null) return expected == null && actual == null;
+		return actual instanceof Number && ((Number) actual).longValue() == expected;
+	}
+}
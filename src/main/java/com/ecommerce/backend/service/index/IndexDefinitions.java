@@ -0,0 +1,177 @@
+package com.ecommerce.backend.service.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+// Every index the application needs, plus the query shapes the controllers issue (for explain reports).
+// Bump VERSION and add a case to migrate() when existing data has to change before an index can be built;
+// plain additions only need a new entry in ALL.
+public final class IndexDefinitions {
+
+	public static final int VERSION = 3;
+
+	public static final List<IndexDefinition> ALL = List.of(
+			// users
+			index("users", "users_username_unique", new Document("username", 1)).unique(true).build(),
+			index("users", "users_role_created", new Document("role", 1).append("createdAt", -1)).build(),
+			index("users", "users_reset_token", new Document("resetPasswordToken", 1))
+					.partialFilter(new Document("resetPasswordToken", new Document("$type", "string"))).build(),
+
+			// categories
+			index("categories", "categories_name_unique", new Document("name", 1)).unique(true).build(),
+			index("categories", "categories_slug", new Document("slug", 1)).build(),
+
+			// products (listing sorts carry _id as keyset tiebreaker)
+			index("products", "products_text", new Document("name", "text").append("description", "text"))
+					.weights(new Document("name", 2).append("description", 1)).build(),
+			index("products", "products_active_created", new Document("deletedAt", 1).append("createdAt", -1).append("_id", -1)).build(),
+			index("products", "products_active_category_created",
+					new Document("deletedAt", 1).append("category", 1).append("createdAt", -1).append("_id", -1)).build(),
+			index("products", "products_active_price", new Document("deletedAt", 1).append("price", 1).append("_id", 1)).build(),
+			index("products", "products_active_category_price",
+					new Document("deletedAt", 1).append("category", 1).append("price", 1).append("_id", 1)).build(),
+			index("products", "products_category", new Document("category", 1)).build(),
+
+			// carts (one row per cart line; checkoutId is null for the active cart, the order id once checked out)
+			index("carts", "carts_user_product_size_checkout_unique", new Document("userId", 1).append("productId", 1)
+					.append("size", 1).append("checkoutId", 1)).unique(true).build(),
+
+			// orders (items.productId is multikey)
+			index("orders", "orders_user_created", new Document("userId", 1).append("createdAt", -1)).build(),
+			index("orders", "orders_items_product", new Document("items.productId", 1)).build(),
+			index("orders", "orders_active_created", new Document("deletedAt", 1).append("createdAt", -1)).build(),
+			index("orders", "orders_active_status_created",
+					new Document("deletedAt", 1).append("deliveryStatus", 1).append("createdAt", -1)).build(),
+			// unpaid QR reservations to expire (only orders still holding stock)
+			index("orders", "orders_reserved_payment_created",
+					new Document("paymentMethods", 1).append("paymentStatus", 1).append("createdAt", 1))
+					.partialFilter(new Document("stockStatus", "reserved")).build(),
+			// lines served from a hot-SKU lease, summed when a stale lease is reclaimed
+			index("orders", "orders_items_lease", new Document("items.leaseId", 1))
+					.partialFilter(new Document("items.leaseId", new Document("$type", "string"))).build(),
+
+			// inventory_leases (per-node heartbeat, stale-lease sweep)
+			index("inventory_leases", "inventory_leases_node", new Document("node", 1)).build(),
+			index("inventory_leases", "inventory_leases_heartbeat", new Document("heartbeatAt", 1)).build(),
+
+			// sales_rollups (top-k per type)
+			index("sales_rollups", "sales_rollups_type_quantity", new Document("type", 1).append("quantity", -1)).build(),
+
+			// idempotency_keys (TTL: removed once expiresAt has passed)
+			index("idempotency_keys", "idempotency_keys_expires", new Document("expiresAt", 1)).expireAfterSeconds(0L).build()
+	);
+
+	public static final List<QueryShape> QUERY_SHAPES = List.of(
+			shape("product.listing.newest", "products", new Document("deletedAt", null), new Document("createdAt", -1).append("_id", -1)),
+			shape("product.listing.category.price", "products",
+					new Document("deletedAt", null).append("category", "sample"), new Document("price", 1).append("_id", 1)),
+			shape("product.detail", "products", new Document("_id", "sample"), null),
+			shape("product.related", "products",
+					new Document("_id", new Document("$ne", "sample")).append("deletedAt", null).append("category", "sample"), null),
+			shape("product.search", "products",
+					new Document("$text", new Document("$search", "sample")).append("deletedAt", null), null),
+			shape("product.countByCategory", "products", new Document("category", "sample"), null),
+			shape("cart.byUser", "carts",
+					new Document("userId", "sample").append("checkoutId", null).append("deletedAt", null), null),
+			shape("order.byUser", "orders", new Document("userId", "sample"), new Document("createdAt", -1)),
+			shape("order.hasOrders", "orders", new Document("items.productId", "sample"), null),
+			shape("order.admin.listing", "orders",
+					new Document("deletedAt", null).append("deliveryStatus", "pending"), new Document("createdAt", -1)),
+			shape("user.admin.listing", "users", new Document("role", "user"), new Document("createdAt", -1)),
+			shape("user.byUsername", "users", new Document("username", "sample"), null),
+			shape("user.resetToken", "users",
+					new Document("resetPasswordToken", "sample").append("resetPasswordExpires", new Document("$gt", new Date())), null),
+			shape("category.byName", "categories", new Document("name", "sample"), null)
+	);
+
+	private IndexDefinitions() {
+	}
+
+	// Data fixes that must run before the indexes of a version can be built (fromVersion = last applied)
+	static void migrate(int fromVersion, MongoTemplate mongoTemplate) {
+		switch (fromVersion) {
+			case 0:
+				// v1: nothing to rewrite, indexes only
+			case 1:
+				// v2: unique cart line key
+				migrateCartLines(mongoTemplate);
+			case 2:
+				// v3: numeric stock
+				migrateSizeAmounts(mongoTemplate);
+			default:
+				break;
+		}
+	}
+
+	// Gives already checked-out rows their own checkoutId and merges duplicate active lines (which the old
+	// read-modify-save cart code could create) into one, so the unique cart line index can be built
+	private static void migrateCartLines(MongoTemplate mongoTemplate) {
+		MongoCollection<Document> carts = mongoTemplate.getCollection("carts");
+		Document checkedOut = new Document("deletedAt", new Document("$ne", null))
+				.append("checkoutId", new Document("$exists", false));
+		for (Document row : carts.find(checkedOut).projection(new Document("_id", 1))) {
+			Object id = row.get("_id");
+			carts.updateOne(new Document("_id", id), new Document("$set", new Document("checkoutId", "legacy:" + id)));
+		}
+
+		List<Document> pipeline = List.of(
+				new Document("$match", new Document("checkoutId", null).append("deletedAt", null)),
+				new Document("$group", new Document("_id",
+						new Document("userId", "$userId").append("productId", "$productId").append("size", "$size"))
+						.append("ids", new Document("$push", "$_id"))
+						.append("quantity", new Document("$sum", "$quantity"))),
+				new Document("$match", new Document("ids.1", new Document("$exists", true))));
+		int merged = 0;
+		for (Document group : carts.aggregate(pipeline).allowDiskUse(true)) {
+			List<?> ids = group.getList("ids", Object.class);
+			carts.updateOne(new Document("_id", ids.get(0)), new Document("$set", new Document("quantity", group.get("quantity"))));
+			carts.deleteMany(new Document("_id", new Document("$in", ids.subList(1, ids.size()))));
+			merged++;
+		}
+		if (merged > 0) System.out.println("Merged " + merged + " duplicate cart lines");
+
+		// Superseded by the unique key, which starts with userId
+		boolean legacyIndex = carts.listIndexes().into(new ArrayList<>()).stream()
+				.anyMatch(index -> "carts_user".equals(index.getString("name")));
+		if (legacyIndex) carts.dropIndex("carts_user");
+	}
+
+	// Product.Size.amount was a string ("1000", "", "0"); reservations $inc it, so store it as a number.
+	// Anything that doesn't parse counts as out of stock
+	private static void migrateSizeAmounts(MongoTemplate mongoTemplate) {
+		Document toDouble = new Document("$convert", new Document("input", "$$s.amount")
+				.append("to", "double").append("onError", 0).append("onNull", 0));
+		Document toInt = new Document("$convert", new Document("input", toDouble).append("to", "int").append("onError", 0));
+		List<Document> pipeline = List.of(new Document("$set", new Document("size", new Document("$map",
+				new Document("input", "$size").append("as", "s")
+						.append("in", new Document("$mergeObjects", List.of("$$s", new Document("amount", toInt))))))));
+		long updated = mongoTemplate.getCollection("products")
+				.updateMany(new Document("size.amount", new Document("$type", "string")), pipeline)
+				.getModifiedCount();
+		if (updated > 0) System.out.println("Converted size amounts of " + updated + " products to numbers");
+	}
+
+	private static IndexDefinition.IndexDefinitionBuilder index(String collection, String name, Document keys) {
+		return IndexDefinition.builder().collection(collection).name(name).keys(keys);
+	}
+
+	private static QueryShape shape(String name, String collection, Document filter, Document sort) {
+		return new QueryShape(name, collection, filter, sort);
+	}
+
+	@Getter
+	@AllArgsConstructor
+	public static class QueryShape {
+		private final String name;
+		private final String collection;
+		private final Document filter;
+		private final Document sort;
+	}
+}
@@ -0,0 +1,20 @@
+package com.ecommerce.backend.service.index;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+// "index" health contributor, part of the readiness group (see application.properties)
+@Component
+public class IndexHealthIndicator implements HealthIndicator {
+
+	@Autowired
+	IndexManager indexManager;
+
+	@Override
+	public Health health() {
+		Health.Builder builder = indexManager.isReady() ? Health.up() : Health.down();
+		return builder.withDetails(indexManager.status()).build();
+	}
+}
@@ -0,0 +1,216 @@
+package com.ecommerce.backend.service.index;
+
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+// Creates / migrates the indexes from IndexDefinitions at startup and keeps track of which are missing.
+// Missing indexes turn the "index" health contributor DOWN, which takes the readiness probe down with it.
+@Service
+public class IndexManager implements ApplicationRunner {
+
+	private static final String VERSION_COLLECTION = "schema_versions";
+	private static final String VERSION_ID = "indexes";
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	private volatile List<String> missing = List.of();
+	private volatile boolean verified = false;
+
+	@Override
+	public void run(ApplicationArguments args) {
+		try {
+			applyMigrations();
+		} catch (Exception e) {
+			System.err.println("Index migration failed: " + e.getMessage());
+		}
+		for (IndexDefinition definition : IndexDefinitions.ALL) {
+			try {
+				ensure(definition);
+			} catch (Exception e) {
+				// e.g. duplicates blocking a unique index: stay not-ready instead of failing startup
+				System.err.println("Could not create index " + definition.getName() + ": " + e.getMessage());
+			}
+		}
+		verify();
+	}
+
+	private void applyMigrations() {
+		Document current = mongoTemplate.getCollection(VERSION_COLLECTION).find(new Document("_id", VERSION_ID)).first();
+		int applied = current != null ? current.getInteger("version", 0) : 0;
+		if (applied >= IndexDefinitions.VERSION) return;
+
+		IndexDefinitions.migrate(applied, mongoTemplate);
+		mongoTemplate.upsert(new Query(Criteria.where("_id").is(VERSION_ID)),
+				new Update().set("version", IndexDefinitions.VERSION).set("appliedAt", new Date()),
+				VERSION_COLLECTION);
+	}
+
+	private void ensure(IndexDefinition definition) {
+		MongoCollection<Document> collection = mongoTemplate.getCollection(definition.getCollection());
+		List<Document> existing = collection.listIndexes().into(new ArrayList<>());
+
+		for (Document index : existing) {
+			if (!definition.matchesKeys(index)) continue;
+			if (definition.matchesOptions(index)) return;
+			// Same keys, different options (e.g. not unique yet): the server refuses a second one, so replace it
+			replace(collection, List.of(index), definition);
+			return;
+		}
+
+		List<Document> blocking = new ArrayList<>();
+		for (Document index : existing) {
+			boolean sameName = definition.getName().equals(index.getString("name"));
+			// Only one text index is allowed per collection
+			boolean otherText = definition.isText() && index.get("key", Document.class).containsKey("_fts");
+			if (sameName || otherText) blocking.add(index);
+		}
+		if (blocking.isEmpty()) {
+			collection.createIndex(definition.getKeys(), definition.toOptions());
+		} else {
+			replace(collection, blocking, definition);
+		}
+	}
+
+	// Drops the indexes standing in the way of the definition and builds it. A unique index is only attempted
+	// when the data has no duplicates; if the build fails anyway the old indexes are put back, so queries
+	// keep the index they had instead of falling back to collection scans.
+	private void replace(MongoCollection<Document> collection, List<Document> old, IndexDefinition definition) {
+		if (definition.isUnique()) {
+			Document duplicate = findDuplicate(collection, definition);
+			if (duplicate != null) {
+				throw new IllegalStateException("duplicate keys " + duplicate.get("_id").toJson() + ", keeping the existing index");
+			}
+		}
+
+		for (Document index : old) collection.dropIndex(index.getString("name"));
+		try {
+			collection.createIndex(definition.getKeys(), definition.toOptions());
+		} catch (RuntimeException e) {
+			for (Document index : old) restore(collection, index);
+			throw e;
+		}
+	}
+
+	// First group of documents sharing the definition's key values, null when there is none
+	private static Document findDuplicate(MongoCollection<Document> collection, IndexDefinition definition) {
+		Document groupKey = new Document();
+		definition.getKeys().keySet().forEach(field -> groupKey.append(field.replace('.', '_'), "$" + field));
+		List<Document> pipeline = new ArrayList<>();
+		if (definition.getPartialFilter() != null) pipeline.add(new Document("$match", definition.getPartialFilter()));
+		pipeline.add(new Document("$group", new Document("_id", groupKey).append("count", new Document("$sum", 1))));
+		pipeline.add(new Document("$match", new Document("count", new Document("$gt", 1))));
+		pipeline.add(new Document("$limit", 1));
+		return collection.aggregate(pipeline).allowDiskUse(true).first();
+	}
+
+	// Recreates an index from its listIndexes() entry, options included
+	private void restore(MongoCollection<Document> collection, Document index) {
+		Document spec = new Document(index);
+		spec.remove("v");
+		spec.remove("ns");
+		try {
+			mongoTemplate.getDb().runCommand(new Document("createIndexes", collection.getNamespace().getCollectionName())
+					.append("indexes", List.of(spec)));
+		} catch (Exception e) {
+			System.err.println("Could not restore index " + index.getString("name") + ": " + e.getMessage());
+		}
+	}
+
+	// listIndexes per collection; cheap enough to repeat so indexes dropped at runtime are noticed
+	@Scheduled(initialDelayString = "${app.indexes.verify-interval-ms:600000}", fixedDelayString = "${app.indexes.verify-interval-ms:600000}")
+	public void verify() {
+		try {
+			Map<String, List<Document>> byCollection = new HashMap<>();
+			List<String> notFound = new ArrayList<>();
+			for (IndexDefinition definition : IndexDefinitions.ALL) {
+				List<Document> existing = byCollection.computeIfAbsent(definition.getCollection(),
+						c -> mongoTemplate.getCollection(c).listIndexes().into(new ArrayList<>()));
+				boolean present = existing.stream().anyMatch(i -> definition.matchesKeys(i) && definition.matchesOptions(i));
+				if (!present) notFound.add(definition.getCollection() + "." + definition.getName());
+			}
+			missing = notFound;
+			verified = true;
+		} catch (Exception e) {
+			System.err.println("Index verification failed: " + e.getMessage());
+		}
+	}
+
+	public boolean isReady() {
+		return verified && missing.isEmpty();
+	}
+
+	public Map<String, Object> status() {
+		Map<String, Object> status = new LinkedHashMap<>();
+		status.put("version", IndexDefinitions.VERSION);
+		status.put("verified", verified);
+		status.put("missing", missing);
+		status.put("defined", IndexDefinitions.ALL.stream().map(d -> d.getCollection() + "." + d.getName()).toList());
+		return status;
+	}
+
+	// explain() (queryPlanner) for every known query shape plus $indexStats for every managed collection
+	public Map<String, Object> report() {
+		List<Map<String, Object>> plans = new ArrayList<>();
+		for (IndexDefinitions.QueryShape shape : IndexDefinitions.QUERY_SHAPES) {
+			Map<String, Object> entry = new LinkedHashMap<>();
+			entry.put("shape", shape.getName());
+			entry.put("collection", shape.getCollection());
+			entry.put("filter", shape.getFilter());
+			entry.put("sort", shape.getSort());
+			try {
+				Document find = new Document("find", shape.getCollection()).append("filter", shape.getFilter()).append("limit", 20);
+				if (shape.getSort() != null) find.append("sort", shape.getSort());
+				Document explain = mongoTemplate.getDb().runCommand(
+						new Document("explain", find).append("verbosity", "queryPlanner"));
+				Document winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class);
+				entry.put("stages", stages(winningPlan, new ArrayList<>()));
+				entry.put("winningPlan", winningPlan);
+			} catch (Exception e) {
+				entry.put("error", e.getMessage());
+			}
+			plans.add(entry);
+		}
+
+		Map<String, Object> indexStats = new LinkedHashMap<>();
+		IndexDefinitions.ALL.stream().map(IndexDefinition::getCollection).distinct().forEach(c -> {
+			try {
+				List<Document> stats = mongoTemplate.getCollection(c)
+						.aggregate(List.of(new Document("$indexStats", new Document())))
+						.into(new ArrayList<>());
+				indexStats.put(c, stats.stream().map(s -> Map.of(
+						"name", s.get("name"),
+						"accesses", s.get("accesses"))).toList());
+			} catch (Exception e) {
+				indexStats.put(c, Map.of("error", String.valueOf(e.getMessage())));
+			}
+		});
+
+		Map<String, Object> report = new LinkedHashMap<>(status());
+		report.put("plans", plans);
+		report.put("indexStats", indexStats);
+		return report;
+	}
+
+	// Flattened stage list of a plan, e.g. ["FETCH", "IXSCAN products_active_created"] or ["COLLSCAN"]
+	private static List<String> stages(Document plan, List<String> out) {
+		if (plan == null) return out;
+		String stage = plan.getString("stage");
+		if (stage != null) out.add(plan.containsKey("indexName") ? stage + " " + plan.getString("indexName") : stage);
+		stages(plan.get("inputStage", Document.class), out);
+		List<?> inputs = plan.get("inputStages", List.class);
+		if (inputs != null) inputs.forEach(i -> stages((Document) i, out));
+		return out;
+	}
+}
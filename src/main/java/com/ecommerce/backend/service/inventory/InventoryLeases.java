@@ -0,0 +1,136 @@
+package com.ecommerce.backend.service.inventory;
+
+import com.ecommerce.backend.event.StockChangedEvent;
+import com.ecommerce.backend.model.Order;
+import com.ecommerce.backend.model.Product;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// Durable record of the hot-SKU units this node holds in memory, one inventory_leases document per lease:
+// { node, productId, size, units, heartbeatAt, retiredAt }. units is what was moved out of the product document
+// minus what was handed back; checkout tags every order line it served from a lease with Order.OrderItem.leaseId,
+// so units minus the quantity of those lines is what the node still holds.
+// Every node heartbeats its leases and sweeps the others': a lease whose node stopped heartbeating (crash, OOM kill,
+// kill -9) is removed and its unsold units go back to the product document. The owner notices the removal on its
+// next heartbeat or lease write and drops the lease without handing anything back.
+// Lease writes use the collection directly, outside the checkout transaction, like the leases they record.
+@Service
+public class InventoryLeases {
+
+	static final String COLLECTION = "inventory_leases";
+
+	// Leases retired by this node stay until in-flight checkouts that took from them are done
+	private static final long RETIRED_GRACE_MS = 60_000;
+
+	private final String node = UUID.randomUUID().toString();
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+
+	@Value("${app.inventory.lease-stale-ms:60000}")
+	private long staleMs;
+
+	public String open(String productId, String size) {
+		String id = UUID.randomUUID().toString();
+		Date now = new Date();
+		leases().insertOne(new Document("_id", id).append("node", node).append("productId", productId).append("size", size)
+				.append("units", 0L).append("createdAt", now).append("heartbeatAt", now));
+		return id;
+	}
+
+	// false when the lease was reclaimed by a sweeper
+	public boolean leased(String leaseId, long units) {
+		return leases().updateOne(Filters.and(Filters.eq("_id", leaseId), Filters.eq("retiredAt", null)),
+				Updates.inc("units", units)).getMatchedCount() == 1;
+	}
+
+	// Called before the units go back to the product document; false when a sweeper already returned them
+	public boolean returned(String leaseId, long units) {
+		return leases().updateOne(Filters.eq("_id", leaseId), Updates.inc("units", -units)).getMatchedCount() == 1;
+	}
+
+	public void retired(String leaseId) {
+		leases().updateOne(Filters.eq("_id", leaseId), Updates.set("retiredAt", new Date()));
+	}
+
+	// Refreshes this node's leases; returns those of the given ones that no longer exist
+	public Set<String> heartbeat(Collection<String> live) {
+		Date now = new Date();
+		leases().updateMany(Filters.eq("node", node), Updates.set("heartbeatAt", now));
+		leases().deleteMany(Filters.and(Filters.eq("node", node),
+				Filters.lt("retiredAt", new Date(now.getTime() - RETIRED_GRACE_MS))));
+		if (live.isEmpty()) return Set.of();
+		Set<String> missing = new HashSet<>(live);
+		leases().find(Filters.in("_id", live)).projection(new Document("_id", 1))
+				.forEach(doc -> missing.remove(doc.getString("_id")));
+		return missing;
+	}
+
+	// Also covers this node's leases from before a restart: the node id is new on every start
+	@Scheduled(fixedDelayString = "${app.inventory.lease-sweep-ms:30000}")
+	public void sweep() {
+		try {
+			Date cutoff = new Date(System.currentTimeMillis() - staleMs);
+			List<Document> stale = leases().find(Filters.and(Filters.ne("node", node), Filters.lt("heartbeatAt", cutoff)))
+					.into(new ArrayList<>());
+			for (Document candidate : stale) {
+				// Removed first, conditionally: only one sweeper returns the units, and a node that comes back finds
+				// its lease gone instead of selling units that are back in the document
+				Document lease = leases().findOneAndDelete(Filters.and(Filters.eq("_id", candidate.getString("_id")),
+						Filters.lt("heartbeatAt", cutoff)));
+				if (lease != null) reclaim(lease);
+			}
+		} catch (Exception e) {
+			System.err.println("Inventory lease sweep failed: " + e.getMessage());
+		}
+	}
+
+	private void reclaim(Document lease) {
+		String id = lease.getString("_id");
+		String productId = lease.getString("productId");
+		String size = lease.getString("size");
+		long unsold = ((Number) lease.get("units")).longValue() - sold(id);
+		if (unsold > 0) {
+			rawProducts().updateOne(new Document("_id", productId).append("size.name", size),
+					new Document("$inc", new Document("size.$.amount", unsold)));
+			eventPublisher.publishEvent(new StockChangedEvent(productId));
+		}
+		System.out.println("Inventory: reclaimed " + Math.max(unsold, 0) + " units of " + productId + "/" + size
+				+ " from stale lease " + id + " of node " + lease.getString("node"));
+	}
+
+	// Units of the lease that went into orders (cancelled ones included: their release restocked the document)
+	private long sold(String leaseId) {
+		Document total = mongoTemplate.aggregate(newAggregation(
+				match(where("items.leaseId").is(leaseId)),
+				unwind("items"),
+				match(where("items.leaseId").is(leaseId)),
+				group().sum("items.quantity").as("quantity")), Order.class, Document.class).getUniqueMappedResult();
+		return total != null && total.get("quantity") instanceof Number n ? n.longValue() : 0;
+	}
+
+	private MongoCollection<Document> leases() {
+		return mongoTemplate.getMongoDatabaseFactory().getMongoDatabase().getCollection(COLLECTION);
+	}
+
+	private MongoCollection<Document> rawProducts() {
+		return mongoTemplate.getMongoDatabaseFactory().getMongoDatabase()
+				.getCollection(mongoTemplate.getCollectionName(Product.class));
+	}
+}
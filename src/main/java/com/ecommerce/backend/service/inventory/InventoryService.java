@@ -0,0 +1,456 @@
+package com.ecommerce.backend.service.inventory;
+
+import com.ecommerce.backend.event.OrderStatusChangedEvent;
+import com.ecommerce.backend.event.StockChangedEvent;
+import com.ecommerce.backend.model.Order;
+import com.ecommerce.backend.model.Product;
+import com.ecommerce.backend.service.CollectionCounters;
+import com.ecommerce.backend.service.ProductCache;
+import com.mongodb.client.MongoCollection;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Per-size stock (Product.Size.amount). Checkout reserves every line of the order with a conditional
+// $inc (amount >= quantity) or nothing; cancelling the order (customer, admin, or the expiry of an unpaid
+// QR order) gives the units back once, guarded by Order.stockStatus.
+// A SKU taking more than app.inventory.hot-threshold-per-second reservations turns hot: this node then
+// leases chunks of its stock into a StripedStock and serves reservations from memory, so a flash sale
+// doesn't serialise on one product document. A lease takes at most half of the stored amount, so the
+// document never reads 0 while units are left; leased units are handed back once the SKU cools down, when
+// its stored amount sells out, or when the node stops. Each lease is recorded in InventoryLeases, so the units
+// of a node that dies without handing them back are returned by the other nodes.
+@Service
+public class InventoryService {
+
+	public static final String RESERVED = "reserved";
+	public static final String RELEASED = "released";
+
+	private static final int STRIPES = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+	private static final int EXPIRY_BATCH_SIZE = 200;
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	@Autowired
+	ProductCache productCache;
+
+	@Autowired
+	CollectionCounters collectionCounters;
+
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	InventoryLeases leases;
+
+	@Value("${app.inventory.hot-threshold-per-second:20}")
+	private int hotThreshold;
+
+	@Value("${app.inventory.lease-size:50}")
+	private int leaseSize;
+
+	@Value("${app.inventory.hot-idle-ms:60000}")
+	private long hotIdleMs;
+
+	@Value("${app.inventory.qr-reservation-ttl-minutes:30}")
+	private long qrReservationTtlMinutes;
+
+	private final Map<String, Hot> hot = new ConcurrentHashMap<>();
+	private final Map<String, Demand> demand = new ConcurrentHashMap<>();
+
+	// Reservations per SKU in the current second
+	private static final class Demand {
+		volatile long second;
+		final AtomicInteger count = new AtomicInteger();
+	}
+
+	// A hot SKU's in-memory stock and the lease record behind it (opened with the first lease)
+	private static final class Hot {
+		final StripedStock stock = new StripedStock(STRIPES);
+		String leaseId;
+	}
+
+	private static final class Take {
+		final String productId;
+		final String size;
+		final int quantity;
+		// Lease of the hot SKU's StripedStock the units came from; null when taken from the product document
+		final String leaseId;
+
+		Take(String productId, String size, int quantity, String leaseId) {
+			this.productId = productId;
+			this.size = size;
+			this.quantity = quantity;
+			this.leaseId = leaseId;
+		}
+	}
+
+	// What one checkout took, so it can be undone when the order isn't written after all
+	public static class Reservation {
+		private final List<Take> takes = new ArrayList<>();
+		private final Set<String> soldOut = new HashSet<>();
+		// Products whose document stock this reservation changed (takes and leases)
+		private final Set<String> touched = new HashSet<>();
+		@Getter
+		private String failedProductId;
+		@Getter
+		private String failedSize;
+
+		public boolean isComplete() {
+			return failedProductId == null;
+		}
+
+		public boolean isEmpty() {
+			return takes.isEmpty();
+		}
+	}
+
+	// Reserves all lines whose product lists the ordered size, or none of them (see isComplete). Reserved
+	// lines are marked OrderItem.reserved; sizes a product doesn't list are not stock-tracked. The caller
+	// creates the reservation, so it can still undo what was taken when this throws halfway.
+	public void reserve(List<Order.OrderItem> items, Reservation reservation) {
+		Map<String, Integer> quantities = new LinkedHashMap<>();
+		List<Order.OrderItem> tracked = new ArrayList<>();
+		for (Order.OrderItem item : items) {
+			if (!isTracked(item)) continue;
+			tracked.add(item);
+			quantities.merge(key(item.getProductId(), item.getSize()), item.getQuantity(), Integer::sum);
+		}
+
+		for (Map.Entry<String, Integer> e : quantities.entrySet()) {
+			String[] sku = e.getKey().split("\u0000", 2);
+			int quantity = e.getValue();
+			boolean taken = takeHot(e.getKey(), sku[0], sku[1], quantity, reservation)
+					|| takeStored(sku[0], sku[1], quantity, reservation);
+			recordDemand(e.getKey());
+			if (!taken) {
+				undo(reservation, true);
+				reservation.takes.clear();
+				reservation.soldOut.clear();
+				reservation.touched.clear();
+				reservation.failedProductId = sku[0];
+				reservation.failedSize = sku[1];
+				return;
+			}
+		}
+		// Lines served from a lease name it, so a sweeper can tell the lease's sold units from the ones it held
+		Map<String, String> leaseIds = new HashMap<>();
+		for (Take take : reservation.takes) {
+			if (take.leaseId != null) leaseIds.put(key(take.productId, take.size), take.leaseId);
+		}
+		tracked.forEach(item -> {
+			item.setReserved(true);
+			item.setLeaseId(leaseIds.get(key(item.getProductId(), item.getSize())));
+		});
+	}
+
+	// Gives back what the reservation took. Inside an aborted transaction the stored takes are already
+	// rolled back, so only the in-memory ones need returning (includeStored = false).
+	public void undo(Reservation reservation, boolean includeStored) {
+		for (Take take : reservation.takes) {
+			if (take.leaseId != null) {
+				Hot h = hot.get(key(take.productId, take.size));
+				if (h != null && take.leaseId.equals(h.leaseId) && !h.stock.isClosed()) {
+					h.stock.add(take.quantity);
+				} else {
+					returnLease(take.leaseId, take.productId, take.size, take.quantity);
+				}
+			} else if (includeStored) {
+				restock(take.productId, take.size, take.quantity);
+				stockChanged(take.productId);
+			}
+		}
+	}
+
+	// After the order is committed: sizes that just sold out leave the listings' size filters. If this node
+	// still holds leased units of such a size they go back to the document, which then shows them again
+	public void committed(Reservation reservation) {
+		for (String key : reservation.soldOut) {
+			Hot h = hot.get(key);
+			if (h != null) retire(key, h);
+		}
+		reservation.touched.forEach(this::stockChanged);
+	}
+
+	// A size whose stored stock ran out (sold through another node, or edited by an admin) gets this node's
+	// leased units back, so the document shows it in stock again
+	@EventListener
+	public void onStockChanged(StockChangedEvent event) {
+		if (hot.isEmpty()) return;
+		String prefix = event.getProductId() + "\u0000";
+		hot.forEach((key, h) -> {
+			if (!key.startsWith(prefix)) return;
+			String size = key.substring(prefix.length());
+			boolean storedSoldOut = productCache.findById(event.getProductId())
+					.map(Product::getSize)
+					.map(sizes -> sizes.stream().anyMatch(s -> size.equals(s.getName()) && (s.getAmount() == null || s.getAmount() <= 0)))
+					.orElse(false);
+			if (storedSoldOut) retire(key, h);
+		});
+	}
+
+	@EventListener
+	public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+		Order order = event.getOrder();
+		if ("cancelled".equals(order.getDeliveryStatus()) && !"cancelled".equals(event.getPreviousDeliveryStatus())
+				&& RESERVED.equals(order.getStockStatus())) {
+			release(order);
+		}
+	}
+
+	// Returns the order's reserved units to stock, at most once per order
+	public void release(Order order) {
+		long flipped = mongoTemplate.updateFirst(
+				new Query(Criteria.where("_id").is(order.getId()).and("stockStatus").is(RESERVED)),
+				new Update().set("stockStatus", RELEASED), Order.class).getModifiedCount();
+		order.setStockStatus(RELEASED);
+		if (flipped == 0 || order.getItems() == null) return;
+
+		Set<String> restocked = new HashSet<>();
+		for (Order.OrderItem item : order.getItems()) {
+			if (!Boolean.TRUE.equals(item.getReserved())) continue;
+			restock(item.getProductId(), item.getSize(), item.getQuantity());
+			restocked.add(item.getProductId());
+		}
+		restocked.forEach(this::stockChanged);
+	}
+
+	// QR orders nobody paid for within the TTL are cancelled, which releases their stock
+	@Scheduled(fixedDelayString = "${app.inventory.expiry-check-ms:60000}")
+	public void expireUnpaidReservations() {
+		Date cutoff = new Date(System.currentTimeMillis() - qrReservationTtlMinutes * 60_000);
+		Query query = new Query(Criteria.where("paymentMethods").is("qr").and("paymentStatus").is("pending")
+				.and("createdAt").lt(cutoff).and("stockStatus").is(RESERVED)).limit(EXPIRY_BATCH_SIZE);
+		int expired = 0;
+		try {
+			for (Order candidate : mongoTemplate.find(query, Order.class)) {
+				// Conditional, so a payment arriving meanwhile wins
+				Order order = mongoTemplate.findAndModify(
+						new Query(Criteria.where("_id").is(candidate.getId()).and("paymentStatus").is("pending")
+								.and("stockStatus").is(RESERVED).and("deletedAt").is(null)),
+						new Update().set("deliveryStatus", "cancelled").set("paymentStatus", "cancelled").set("updatedAt", new Date()),
+						Order.class);
+				if (order == null) continue;
+				Set<String> counterKeys = collectionCounters.orderKeys(order);
+				String previousPaymentStatus = order.getPaymentStatus();
+				String previousDeliveryStatus = order.getDeliveryStatus();
+				order.setDeliveryStatus("cancelled");
+				order.setPaymentStatus("cancelled");
+				collectionCounters.move(counterKeys, collectionCounters.orderKeys(order));
+				eventPublisher.publishEvent(new OrderStatusChangedEvent(order, previousPaymentStatus, previousDeliveryStatus));
+				expired++;
+			}
+		} catch (Exception e) {
+			System.err.println("Reservation expiry failed: " + e.getMessage());
+		}
+		if (expired > 0) System.out.println("Expired " + expired + " unpaid QR reservations");
+	}
+
+	// Hot SKUs nobody reserved for a while hand their leased units back to the product document
+	@Scheduled(fixedDelayString = "${app.inventory.cool-down-interval-ms:10000}")
+	public void coolDown() {
+		long now = System.currentTimeMillis();
+		hot.forEach((key, h) -> {
+			if (now - h.stock.getLastUsed() >= hotIdleMs) retire(key, h);
+		});
+		long second = now / 1000;
+		demand.values().removeIf(d -> d.second < second - 60);
+	}
+
+	// Keeps this node's leases from being reclaimed, and drops the ones a sweeper reclaimed anyway (this node
+	// looked dead, e.g. a long pause): their units are back in the product document
+	@Scheduled(fixedDelayString = "${app.inventory.lease-heartbeat-ms:5000}")
+	public void heartbeat() {
+		try {
+			List<String> live = new ArrayList<>();
+			hot.values().forEach(h -> {
+				if (h.leaseId != null) live.add(h.leaseId);
+			});
+			Set<String> reclaimed = leases.heartbeat(live);
+			hot.forEach((key, h) -> {
+				if (h.leaseId != null && reclaimed.contains(h.leaseId)) drop(key, h);
+			});
+		} catch (Exception e) {
+			System.err.println("Inventory lease heartbeat failed: " + e.getMessage());
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		hot.forEach(this::retire);
+	}
+
+	private boolean isTracked(Order.OrderItem item) {
+		if (item.getSize() == null || item.getQuantity() <= 0) return false;
+		return productCache.findById(item.getProductId())
+				.map(Product::getSize)
+				.map(sizes -> sizes.stream().anyMatch(s -> item.getSize().equals(s.getName())))
+				.orElse(false);
+	}
+
+	private boolean takeStored(String productId, String size, int quantity, Reservation reservation) {
+		Query query = new Query(Criteria.where("_id").is(productId)
+				.and("size").elemMatch(Criteria.where("name").is(size).and("amount").gte(quantity)));
+		query.fields().include("size");
+		Product updated = mongoTemplate.findAndModify(query, new Update().inc("size.$.amount", -quantity),
+				FindAndModifyOptions.options().returnNew(true), Product.class);
+		if (updated == null) return false;
+		reservation.takes.add(new Take(productId, size, quantity, false));
+		reservation.touched.add(productId);
+		boolean soldOut = updated.getSize().stream()
+				.anyMatch(s -> size.equals(s.getName()) && s.getAmount() != null && s.getAmount() <= 0);
+		if (soldOut) reservation.soldOut.add(key(productId, size));
+		return true;
+	}
+
+	private boolean takeHot(String key, String productId, String size, int quantity, Reservation reservation) {
+		Hot h = hot.get(key);
+		if (h == null) return false;
+		StripedStock stock = h.stock;
+		for (int attempt = 0; attempt < 3; attempt++) {
+			if (stock.tryTake(quantity)) {
+				reservation.takes.add(new Take(productId, size, quantity, h.leaseId));
+				return true;
+			}
+			if (!refill(key, h, productId, size, quantity)) break;
+			// The lease wrote the document outside the transaction; caches follow once the order is committed
+			reservation.touched.add(productId);
+		}
+		// Units a failed take put back after the stock was retired would otherwise be stranded
+		if (stock.isClosed()) returnLease(h.leaseId, productId, size, stock.drain());
+		return false;
+	}
+
+	private boolean refill(String key, Hot h, String productId, String size, int quantity) {
+		StripedStock stock = h.stock;
+		synchronized (stock) {
+			if (stock.isClosed()) return false;
+			if (stock.available() >= quantity) return true;
+			if (h.leaseId == null) h.leaseId = leases.open(productId, size);
+			long leased = lease(productId, size, Math.max(quantity, leaseSize));
+			if (leased > 0 && !leases.leased(h.leaseId, leased)) {
+				// Reclaimed while this node looked dead: the units it held are back in the document already, and
+				// the ones just leased go back too
+				returnLease(null, productId, size, leased);
+				drop(key, h);
+				return false;
+			}
+			stock.add(leased);
+			return leased > 0;
+		}
+	}
+
+	private void retire(String key, Hot h) {
+		synchronized (h.stock) {
+			h.stock.close();
+		}
+		hot.remove(key, h);
+		String[] sku = key.split("\u0000", 2);
+		returnLease(h.leaseId, sku[0], sku[1], h.stock.drain());
+		if (h.leaseId == null) return;
+		try {
+			leases.retired(h.leaseId);
+		} catch (Exception e) {
+			System.err.println("Could not retire inventory lease " + h.leaseId + ": " + e.getMessage());
+		}
+	}
+
+	// Forgets a reclaimed lease without handing its units back
+	private void drop(String key, Hot h) {
+		synchronized (h.stock) {
+			h.stock.close();
+		}
+		hot.remove(key, h);
+		long units = h.stock.drain();
+		System.err.println("Inventory: lease " + h.leaseId + " of " + key.replace('\u0000', '/') + " was reclaimed, dropped "
+				+ units + " units held in memory");
+	}
+
+	private void recordDemand(String key) {
+		long second = System.currentTimeMillis() / 1000;
+		Demand d = demand.computeIfAbsent(key, k -> new Demand());
+		if (d.second != second) {
+			d.second = second;
+			d.count.set(0);
+		}
+		if (d.count.incrementAndGet() == hotThreshold && hot.putIfAbsent(key, new Hot()) == null) {
+			System.out.println("Inventory: serving hot SKU " + key.replace('\u0000', '/') + " from memory");
+		}
+	}
+
+	private void restock(String productId, String size, long quantity) {
+		mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(productId).and("size.name").is(size)),
+				new Update().inc("size.$.amount", quantity), Product.class);
+	}
+
+	// Same event the change stream raises for these writes, so the cache and the size filters follow them
+	// on this node even with change streams off
+	private void stockChanged(String productId) {
+		eventPublisher.publishEvent(new StockChangedEvent(productId));
+	}
+
+	// Leases and lease returns use the collection directly: they must not join (and be rolled back with)
+	// the checkout transaction, because the in-memory stock they feed isn't rolled back either
+	private long lease(String productId, String size, long wanted) {
+		MongoCollection<Document> products = rawProducts();
+		for (int attempt = 0; attempt < 3; attempt++) {
+			Document doc = products.find(new Document("_id", productId)).projection(new Document("size", 1)).first();
+			long available = 0;
+			if (doc != null) {
+				for (Document s : doc.getList("size", Document.class, List.of())) {
+					if (size.equals(s.getString("name")) && s.get("amount") instanceof Number n) available = n.longValue();
+				}
+			}
+			// At most half of what the document has: the rest stays sellable by other nodes and keeps the size
+			// in stock for the listings' filters; the last unit is always sold through the document
+			long take = Math.min(available / 2, wanted);
+			if (take <= 0) return 0;
+			long modified = products.updateOne(
+					new Document("_id", productId).append("size", new Document("$elemMatch",
+							new Document("name", size).append("amount", new Document("$gte", take)))),
+					new Document("$inc", new Document("size.$.amount", -take))).getModifiedCount();
+			if (modified == 1) return take;
+		}
+		return 0;
+	}
+
+	// leaseId == null for units not (or no longer) recorded in a lease
+	private void returnLease(String leaseId, String productId, String size, long units) {
+		if (units <= 0) return;
+		try {
+			// The record first: a crash in between loses the units rather than returning them twice, and a lease
+			// that is gone was reclaimed with these units in it
+			if (leaseId != null && !leases.returned(leaseId, units)) return;
+			rawProducts().updateOne(new Document("_id", productId).append("size.name", size),
+					new Document("$inc", new Document("size.$.amount", units)));
+			stockChanged(productId);
+		} catch (Exception e) {
+			System.err.println("Could not return " + units + " leased units of " + productId + "/" + size + ": " + e.getMessage());
+		}
+	}
+
+	private MongoCollection<Document> rawProducts() {
+		return mongoTemplate.getMongoDatabaseFactory().getMongoDatabase()
+				.getCollection(mongoTemplate.getCollectionName(Product.class));
+	}
+
+	private static String key(String productId, String size) {
+		return productId + "\u0000" + size;
+	}
+}
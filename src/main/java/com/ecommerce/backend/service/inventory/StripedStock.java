@@ -0,0 +1,82 @@
+package com.ecommerce.backend.service.inventory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Units of one SKU leased from the product document and handed out in memory. The count is split over
+// stripes (each on its own cache line) so concurrent checkouts of the same hot SKU mostly CAS different
+// words; a take starts at a random stripe and borrows from the others only when that one runs dry.
+// The total never goes negative: units are either taken, still in a stripe, or drained back.
+public class StripedStock {
+
+	// longs per stripe: 8 x 8 bytes keeps neighbouring stripes on different 64-byte lines
+	private static final int PAD = 8;
+
+	private final AtomicLongArray cells;
+	private final int stripes;
+	private volatile boolean closed;
+	private volatile long lastUsed = System.currentTimeMillis();
+
+	public StripedStock(int stripes) {
+		this.stripes = Math.max(1, stripes);
+		this.cells = new AtomicLongArray(this.stripes * PAD);
+	}
+
+	// Takes quantity units, all or nothing
+	public boolean tryTake(int quantity) {
+		lastUsed = System.currentTimeMillis();
+		int home = home();
+		long needed = quantity;
+		for (int i = 0; i < stripes && needed > 0; i++) {
+			int cell = ((home + i) % stripes) * PAD;
+			while (true) {
+				long available = cells.get(cell);
+				if (available <= 0) break;
+				long take = Math.min(available, needed);
+				if (cells.compareAndSet(cell, available, available - take)) {
+					needed -= take;
+					break;
+				}
+			}
+		}
+		if (needed == 0) return true;
+		// Not enough in total: give back what was collected
+		long collected = quantity - needed;
+		if (collected > 0) cells.addAndGet(home * PAD, collected);
+		return false;
+	}
+
+	public void add(long units) {
+		if (units > 0) cells.addAndGet(home() * PAD, units);
+	}
+
+	// Empties every stripe and returns the units that were left
+	public long drain() {
+		long total = 0;
+		for (int i = 0; i < stripes; i++) total += cells.getAndSet(i * PAD, 0);
+		return total;
+	}
+
+	public long available() {
+		long total = 0;
+		for (int i = 0; i < stripes; i++) total += cells.get(i * PAD);
+		return total;
+	}
+
+	// A closed stock gets no more leases; whatever is still in it is drained back by the owner
+	public void close() {
+		closed = true;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	public long getLastUsed() {
+		return lastUsed;
+	}
+
+	private int home() {
+		return ThreadLocalRandom.current().nextInt(stripes);
+	}
+}
@@ -0,0 +1,208 @@
+package com.ecommerce.backend.service.recommend;
+
+import com.ecommerce.backend.util.LongIntHashMap;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Item-to-item co-occurrence matrix over order baskets. Pairs (a < b, as int ordinals) are counted
+// in a primitive map; each product keeps its top-N neighbours by count. Counts only grow between
+// rebuilds, so add() keeps the top-N lists exact by offering the updated pairs.
+public class CoPurchaseIndex {
+
+	private static final int MAX_BASKET = 50; // bounds the O(n^2) pairs of huge orders
+	private static final int SPLIT_THRESHOLD = 2048;
+
+	private final int topN;
+	private final Map<String, Integer> ordinals = new HashMap<>();
+	private final List<String> ids = new ArrayList<>();
+	private final LongIntHashMap pairs;
+	private final Map<Integer, Neighbours> neighbours = new HashMap<>();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private CoPurchaseIndex(int topN, LongIntHashMap pairs) {
+		this.topN = topN;
+		this.pairs = pairs;
+	}
+
+	public static CoPurchaseIndex empty(int topN) {
+		return new CoPurchaseIndex(topN, new LongIntHashMap());
+	}
+
+	// Counts all baskets in parallel on the common fork/join pool
+	public static CoPurchaseIndex build(List<? extends Collection<String>> baskets, int topN) {
+		CoPurchaseIndex index = new CoPurchaseIndex(topN, new LongIntHashMap());
+		List<int[]> encoded = new ArrayList<>(baskets.size());
+		for (Collection<String> basket : baskets) {
+			int[] items = index.encode(basket);
+			if (items.length > 1) encoded.add(items);
+		}
+
+		LongIntHashMap counted = ForkJoinPool.commonPool().invoke(new PairCountTask(encoded, 0, encoded.size()));
+		index.pairs.addAll(counted);
+		index.pairs.forEach((pair, count) -> {
+			int a = (int) (pair >>> 32), b = (int) pair;
+			index.neighboursOf(a).offer(b, count);
+			index.neighboursOf(b).offer(a, count);
+		});
+		return index;
+	}
+
+	public void add(Collection<String> basket) {
+		lock.writeLock().lock();
+		try {
+			int[] items = encode(basket);
+			for (int i = 0; i < items.length; i++) {
+				for (int j = i + 1; j < items.length; j++) {
+					int count = pairs.addTo(pair(items[i], items[j]), 1);
+					neighboursOf(items[i]).offer(items[j], count);
+					neighboursOf(items[j]).offer(items[i], count);
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// Most frequently co-purchased products, best first; empty for products never bought together
+	public List<String> neighbours(String productId, int limit) {
+		lock.readLock().lock();
+		try {
+			Integer ordinal = ordinals.get(productId);
+			Neighbours n = ordinal != null ? neighbours.get(ordinal) : null;
+			if (n == null) return List.of();
+			List<String> result = new ArrayList<>(Math.min(limit, n.size));
+			for (int i = 0; i < n.size && i < limit; i++) result.add(ids.get(n.items[i]));
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public int products() {
+		lock.readLock().lock();
+		try {
+			return neighbours.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public int pairs() {
+		lock.readLock().lock();
+		try {
+			return pairs.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// Distinct, sorted ordinals of the basket (new products get the next ordinal)
+	private int[] encode(Collection<String> basket) {
+		int[] items = basket.stream()
+				.filter(Objects::nonNull)
+				.distinct()
+				.limit(MAX_BASKET)
+				.mapToInt(id -> ordinals.computeIfAbsent(id, k -> {
+					ids.add(k);
+					return ids.size() - 1;
+				}))
+				.toArray();
+		Arrays.sort(items);
+		return items;
+	}
+
+	private Neighbours neighboursOf(int ordinal) {
+		return neighbours.computeIfAbsent(ordinal, k -> new Neighbours(topN));
+	}
+
+	private static long pair(int a, int b) {
+		return ((long) a << 32) | (b & 0xFFFFFFFFL);
+	}
+
+	private static class PairCountTask extends RecursiveTask<LongIntHashMap> {
+		private final List<int[]> baskets;
+		private final int from;
+		private final int to;
+
+		PairCountTask(List<int[]> baskets, int from, int to) {
+			this.baskets = baskets;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected LongIntHashMap compute() {
+			if (to - from <= SPLIT_THRESHOLD) {
+				LongIntHashMap counts = new LongIntHashMap((to - from) * 4);
+				for (int k = from; k < to; k++) {
+					int[] items = baskets.get(k);
+					for (int i = 0; i < items.length; i++) {
+						for (int j = i + 1; j < items.length; j++) counts.addTo(pair(items[i], items[j]), 1);
+					}
+				}
+				return counts;
+			}
+			int mid = (from + to) >>> 1;
+			PairCountTask left = new PairCountTask(baskets, from, mid);
+			left.fork();
+			LongIntHashMap right = new PairCountTask(baskets, mid, to).compute();
+			LongIntHashMap merged = left.join();
+			if (merged.size() < right.size()) {
+				right.addAll(merged);
+				return right;
+			}
+			merged.addAll(right);
+			return merged;
+		}
+	}
+
+	// Fixed-size list of (item, count) kept sorted by count desc
+	private static class Neighbours {
+		final int[] items;
+		final int[] counts;
+		int size;
+
+		Neighbours(int capacity) {
+			items = new int[capacity];
+			counts = new int[capacity];
+		}
+
+		void offer(int item, int count) {
+			int pos = -1;
+			for (int i = 0; i < size; i++) {
+				if (items[i] == item) {
+					pos = i;
+					break;
+				}
+			}
+			if (pos < 0) {
+				if (size < items.length) {
+					pos = size++;
+				} else if (count > counts[size - 1]) {
+					pos = size - 1;
+				} else {
+					return;
+				}
+			}
+			items[pos] = item;
+			counts[pos] = count;
+			// Bubble up to keep the order (counts only increase)
+			while (pos > 0 && counts[pos] > counts[pos - 1]) {
+				swap(pos, pos - 1);
+				pos--;
+			}
+		}
+
+		private void swap(int i, int j) {
+			int item = items[i], count = counts[i];
+			items[i] = items[j];
+			counts[i] = counts[j];
+			items[j] = item;
+			counts[j] = count;
+		}
+	}
+}
@@ -0,0 +1,252 @@
+package com.ecommerce.backend.service.recommend;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Hierarchical navigable small world graph (Malkov & Yashunin) over SparseVectors, cosine distance.
+// Updates insert a new node and tombstone the old one; tombstones still route searches but are never
+// returned, and disappear when the owner rebuilds the index.
+public class HnswIndex {
+
+	private final int m;
+	private final int maxLinks0;
+	private final int efConstruction;
+	private final double levelFactor;
+
+	private final List<Node> nodes = new ArrayList<>();
+	private final Map<String, Integer> live = new HashMap<>();
+	private int entryPoint = -1;
+	private int maxLevel = -1;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	public HnswIndex(int m, int efConstruction) {
+		this.m = m;
+		this.maxLinks0 = m * 2;
+		this.efConstruction = efConstruction;
+		this.levelFactor = 1 / Math.log(m);
+	}
+
+	public static class Result {
+		public final String id;
+		public final float similarity;
+
+		Result(String id, float similarity) {
+			this.id = id;
+			this.similarity = similarity;
+		}
+	}
+
+	private static class Node {
+		final String id;
+		final SparseVector vector;
+		final int[][] links;
+		final int[] linkCount;
+		boolean deleted;
+
+		Node(String id, SparseVector vector, int level, int m, int maxLinks0) {
+			this.id = id;
+			this.vector = vector;
+			this.links = new int[level + 1][];
+			this.linkCount = new int[level + 1];
+			for (int l = 0; l <= level; l++) links[l] = new int[(l == 0 ? maxLinks0 : m) + 1];
+		}
+	}
+
+	// (node, distance) pair for the search heaps
+	private static class Candidate {
+		final int node;
+		final float distance;
+
+		Candidate(int node, float distance) {
+			this.node = node;
+			this.distance = distance;
+		}
+	}
+
+	public void upsert(String id, SparseVector vector) {
+		lock.writeLock().lock();
+		try {
+			removeLocked(id);
+			if (vector.isEmpty()) return;
+
+			int level = (int) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * levelFactor);
+			int node = nodes.size();
+			nodes.add(new Node(id, vector, level, m, maxLinks0));
+			live.put(id, node);
+
+			if (entryPoint < 0) {
+				entryPoint = node;
+				maxLevel = level;
+				return;
+			}
+
+			int current = entryPoint;
+			for (int l = maxLevel; l > level; l--) current = greedyClosest(vector, current, l);
+			for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+				List<Candidate> found = searchLayer(vector, current, efConstruction, l);
+				int maxLinks = l == 0 ? maxLinks0 : m;
+				for (Candidate neighbour : selectNeighbours(found, m)) {
+					link(node, neighbour.node, l, maxLinks);
+					link(neighbour.node, node, l, maxLinks);
+				}
+				current = found.get(0).node;
+			}
+			if (level > maxLevel) {
+				entryPoint = node;
+				maxLevel = level;
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(String id) {
+		lock.writeLock().lock();
+		try {
+			removeLocked(id);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return live.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// Approximate k nearest live nodes to the indexed product itself, excluding it
+	public List<Result> similar(String id, int k, int ef) {
+		lock.readLock().lock();
+		try {
+			Integer node = live.get(id);
+			if (node == null) return List.of();
+			return searchLocked(nodes.get(node).vector, k, ef, node);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private List<Result> searchLocked(SparseVector query, int k, int ef, int exclude) {
+		if (entryPoint < 0 || query.isEmpty()) return List.of();
+		int current = entryPoint;
+		for (int l = maxLevel; l > 0; l--) current = greedyClosest(query, current, l);
+
+		List<Result> results = new ArrayList<>(k);
+		for (Candidate c : searchLayer(query, current, Math.max(ef, k + 1), 0)) {
+			Node n = nodes.get(c.node);
+			if (n.deleted || c.node == exclude) continue;
+			results.add(new Result(n.id, 1f - c.distance));
+			if (results.size() >= k) break;
+		}
+		return results;
+	}
+
+	private void removeLocked(String id) {
+		Integer node = live.remove(id);
+		if (node != null) nodes.get(node).deleted = true;
+	}
+
+	private int greedyClosest(SparseVector query, int start, int level) {
+		int current = start;
+		float best = query.distance(nodes.get(current).vector);
+		boolean improved = true;
+		while (improved) {
+			improved = false;
+			Node n = nodes.get(current);
+			for (int i = 0; i < n.linkCount[level]; i++) {
+				int next = n.links[level][i];
+				float d = query.distance(nodes.get(next).vector);
+				if (d < best) {
+					best = d;
+					current = next;
+					improved = true;
+				}
+			}
+		}
+		return current;
+	}
+
+	// Best-first search of one layer; returns up to ef candidates, closest first
+	private List<Candidate> searchLayer(SparseVector query, int start, int ef, int level) {
+		BitSet visited = new BitSet(nodes.size());
+		PriorityQueue<Candidate> frontier = new PriorityQueue<>((a, b) -> Float.compare(a.distance, b.distance));
+		PriorityQueue<Candidate> best = new PriorityQueue<>((a, b) -> Float.compare(b.distance, a.distance));
+
+		Candidate first = new Candidate(start, query.distance(nodes.get(start).vector));
+		visited.set(start);
+		frontier.add(first);
+		best.add(first);
+
+		while (!frontier.isEmpty()) {
+			Candidate c = frontier.poll();
+			if (c.distance > best.peek().distance && best.size() >= ef) break;
+			Node n = nodes.get(c.node);
+			for (int i = 0; i < n.linkCount[level]; i++) {
+				int next = n.links[level][i];
+				if (visited.get(next)) continue;
+				visited.set(next);
+				float d = query.distance(nodes.get(next).vector);
+				if (best.size() < ef || d < best.peek().distance) {
+					Candidate candidate = new Candidate(next, d);
+					frontier.add(candidate);
+					best.add(candidate);
+					if (best.size() > ef) best.poll();
+				}
+			}
+		}
+
+		List<Candidate> result = new ArrayList<>(best);
+		result.sort((a, b) -> Float.compare(a.distance, b.distance));
+		return result;
+	}
+
+	// Heuristic selection: skip candidates closer to an already chosen neighbour than to the query,
+	// which keeps links spread across clusters (products of one category are very similar)
+	private List<Candidate> selectNeighbours(List<Candidate> candidates, int count) {
+		List<Candidate> selected = new ArrayList<>(count);
+		for (Candidate c : candidates) {
+			if (selected.size() >= count) break;
+			SparseVector vector = nodes.get(c.node).vector;
+			boolean diverse = true;
+			for (Candidate s : selected) {
+				if (vector.distance(nodes.get(s.node).vector) < c.distance) {
+					diverse = false;
+					break;
+				}
+			}
+			if (diverse) selected.add(c);
+		}
+		// Fill up with the closest skipped ones so sparse regions still get enough links
+		for (Candidate c : candidates) {
+			if (selected.size() >= count) break;
+			if (!selected.contains(c)) selected.add(c);
+		}
+		return selected;
+	}
+
+	private void link(int from, int to, int level, int maxLinks) {
+		Node n = nodes.get(from);
+		int[] links = n.links[level];
+		for (int i = 0; i < n.linkCount[level]; i++) {
+			if (links[i] == to) return;
+		}
+		links[n.linkCount[level]++] = to;
+		if (n.linkCount[level] <= maxLinks) return;
+
+		// Over capacity: keep the closest maxLinks
+		List<Candidate> candidates = new ArrayList<>(n.linkCount[level]);
+		for (int i = 0; i < n.linkCount[level]; i++) {
+			candidates.add(new Candidate(links[i], n.vector.distance(nodes.get(links[i]).vector)));
+		}
+		candidates.sort((a, b) -> Float.compare(a.distance, b.distance));
+		for (int i = 0; i < maxLinks; i++) links[i] = candidates.get(i).node;
+		n.linkCount[level] = maxLinks;
+	}
+}
@@ -0,0 +1,78 @@
+package com.ecommerce.backend.service.recommend;
+
+import com.ecommerce.backend.util.TextFolding;
+
+import java.util.*;
+
+// Hashed TF-IDF over folded words and character trigrams (tolerates "ao thun" vs "áo thụng"),
+// no vocabulary or external model. Document frequencies are tracked per hashed feature and
+// updated on every add, so idf follows the catalog between full rebuilds (updates count twice until then).
+public class ProductVectorizer {
+
+	private static final int DIMENSIONS = 1 << 18;
+	private static final int MAX_FEATURES = 48; // strongest features kept per product, bounds memory
+	private static final int MAX_DESCRIPTION_TOKENS = 200;
+
+	public static final double NAME_WEIGHT = 2.0;
+	public static final double TYPE_WEIGHT = 1.5;
+	public static final double MATERIAL_WEIGHT = 1.5;
+	public static final double DESCRIPTION_WEIGHT = 1.0;
+
+	private final int[] documentFrequency = new int[DIMENSIONS];
+	private int documents = 0;
+
+	// Raw weighted term frequencies of one product: feature -> weight
+	public static Map<Integer, Double> features(String name, String type, String material, String description) {
+		Map<Integer, Double> tf = new HashMap<>();
+		addField(tf, TextFolding.tokens(name), NAME_WEIGHT);
+		addField(tf, TextFolding.tokens(type), TYPE_WEIGHT);
+		addField(tf, TextFolding.tokens(material), MATERIAL_WEIGHT);
+		List<String> descriptionTokens = TextFolding.tokens(description);
+		addField(tf, descriptionTokens.subList(0, Math.min(descriptionTokens.size(), MAX_DESCRIPTION_TOKENS)), DESCRIPTION_WEIGHT);
+		return tf;
+	}
+
+	public synchronized void addDocument(Map<Integer, Double> features) {
+		documents++;
+		for (int feature : features.keySet()) documentFrequency[feature]++;
+	}
+
+	public synchronized SparseVector vectorize(Map<Integer, Double> features) {
+		List<Map.Entry<Integer, Double>> weighted = new ArrayList<>(features.size());
+		for (Map.Entry<Integer, Double> e : features.entrySet()) {
+			double idf = Math.log((documents + 1.0) / (documentFrequency[e.getKey()] + 1.0)) + 1.0;
+			weighted.add(Map.entry(e.getKey(), (1 + Math.log(e.getValue())) * idf));
+		}
+		weighted.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
+		if (weighted.size() > MAX_FEATURES) weighted = weighted.subList(0, MAX_FEATURES);
+		weighted.sort(Map.Entry.comparingByKey());
+
+		double norm = 0;
+		for (Map.Entry<Integer, Double> e : weighted) norm += e.getValue() * e.getValue();
+		norm = Math.sqrt(norm);
+
+		int[] indices = new int[weighted.size()];
+		float[] values = new float[weighted.size()];
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = weighted.get(i).getKey();
+			values[i] = (float) (weighted.get(i).getValue() / norm);
+		}
+		return new SparseVector(indices, values);
+	}
+
+	// Words count the field weight, trigrams half of it; the smallest tf (0.5) keeps 1 + log(tf) positive
+	private static void addField(Map<Integer, Double> tf, List<String> tokens, double weight) {
+		for (String token : tokens) {
+			tf.merge(hash("w:" + token), weight, Double::sum);
+			String padded = "_" + token + "_";
+			for (int i = 0; i + 3 <= padded.length(); i++) {
+				tf.merge(hash("g:" + padded.substring(i, i + 3)), weight * 0.5, Double::sum);
+			}
+		}
+	}
+
+	private static int hash(String feature) {
+		int h = feature.hashCode() * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & (DIMENSIONS - 1);
+	}
+}
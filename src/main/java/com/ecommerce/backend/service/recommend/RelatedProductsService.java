@@ -0,0 +1,106 @@
+package com.ecommerce.backend.service.recommend;
+
+import com.ecommerce.backend.event.OrderStatusChangedEvent;
+import com.ecommerce.backend.model.Order;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// "Bought together" neighbours from paid orders. The matrix is built in the background after startup
+// and nightly; orders that become paid in between are added incrementally.
+@Service
+public class RelatedProductsService {
+
+	private static final int TOP_N = 20;
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	private volatile CoPurchaseIndex index;
+	private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+	// orderId -> basket of orders paid while a rebuild was scanning
+	private final Map<String, List<String>> paidDuringRebuild = new ConcurrentHashMap<>();
+
+	// Empty when the index isn't loaded yet or the product was never bought with anything else
+	public List<String> related(String productId, int limit) {
+		CoPurchaseIndex current = index;
+		return current != null ? current.neighbours(productId, limit) : List.of();
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onReady() {
+		CompletableFuture.runAsync(this::rebuild);
+	}
+
+	@Scheduled(cron = "${app.related.rebuild-cron:0 30 3 * * *}")
+	public void rebuild() {
+		if (!rebuilding.compareAndSet(false, true)) return;
+		Set<String> scanned = new HashSet<>();
+		try {
+			paidDuringRebuild.clear();
+			Query query = new Query(Criteria.where("deletedAt").is(null)
+					.and("paymentStatus").in(OrderStatusChangedEvent.PAID_STATUSES)).cursorBatchSize(1000);
+			query.fields().include("items.productId");
+
+			List<List<String>> baskets = new ArrayList<>();
+			try (Stream<Order> stream = mongoTemplate.stream(query, Order.class)) {
+				stream.forEach(order -> {
+					if (paidDuringRebuild.containsKey(order.getId())) scanned.add(order.getId());
+					List<String> basket = basket(order);
+					if (basket.size() > 1) baskets.add(basket);
+				});
+			}
+
+			long start = System.currentTimeMillis();
+			CoPurchaseIndex fresh = CoPurchaseIndex.build(baskets, TOP_N);
+			System.out.println("Co-purchase index: " + baskets.size() + " baskets, " + fresh.pairs() + " pairs in "
+					+ (System.currentTimeMillis() - start) + " ms");
+			index = fresh;
+		} catch (Exception e) {
+			System.err.println("Co-purchase index rebuild failed: " + e.getMessage());
+		} finally {
+			rebuilding.set(false);
+		}
+
+		// Orders paid during the scan that the scan didn't see
+		CoPurchaseIndex current = index;
+		if (current == null) return;
+		new HashMap<>(paidDuringRebuild).forEach((orderId, basket) -> {
+			if (!scanned.contains(orderId)) current.add(basket);
+		});
+		paidDuringRebuild.clear();
+	}
+
+	// Cancellations/refunds of paid orders are left to the nightly rebuild
+	@EventListener
+	public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+		if (!event.becamePaid()) return;
+		List<String> basket = basket(event.getOrder());
+		if (basket.size() < 2) return;
+
+		if (rebuilding.get()) paidDuringRebuild.put(event.getOrder().getId(), basket);
+		CoPurchaseIndex current = index;
+		if (current != null) current.add(basket);
+	}
+
+	private static List<String> basket(Order order) {
+		if (order.getItems() == null) return List.of();
+		return order.getItems().stream()
+				.map(Order.OrderItem::getProductId)
+				.filter(Objects::nonNull)
+				.distinct()
+				.collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,121 @@
+package com.ecommerce.backend.service.recommend;
+
+import com.ecommerce.backend.event.ProductChangedEvent;
+import com.ecommerce.backend.model.Product;
+import com.ecommerce.backend.service.ProductCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Content-based "similar products": hashed TF-IDF vectors of name/type/material/description in an
+// HNSW graph. Built after startup and nightly (drops tombstones, resets idf); product writes
+// re-insert the product's vector.
+@Service
+public class SimilarProductsService {
+
+	private static final int M = 16;
+	private static final int EF_CONSTRUCTION = 100;
+	private static final int EF_SEARCH = 64;
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	@Autowired
+	ProductCache productCache;
+
+	private volatile State state;
+	private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+	private final Set<String> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+	private static class State {
+		final ProductVectorizer vectorizer = new ProductVectorizer();
+		final HnswIndex index = new HnswIndex(M, EF_CONSTRUCTION);
+	}
+
+	// Ids of the most similar active products, best first; empty while the index is loading
+	public List<String> similar(String productId, int limit) {
+		State current = state;
+		if (current == null) return List.of();
+		return current.index.similar(productId, limit, Math.max(EF_SEARCH, limit)).stream()
+				.map(r -> r.id)
+				.collect(Collectors.toList());
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onReady() {
+		CompletableFuture.runAsync(this::rebuild);
+	}
+
+	@Scheduled(cron = "${app.similar.rebuild-cron:0 45 4 * * *}")
+	public void rebuild() {
+		if (!rebuilding.compareAndSet(false, true)) return;
+		try {
+			changedDuringRebuild.clear();
+			long start = System.currentTimeMillis();
+			State fresh = new State();
+			// Two passes: document frequencies first, so every vector sees the final idf
+			try (Stream<Product> stream = streamActive()) {
+				stream.forEach(p -> fresh.vectorizer.addDocument(features(p)));
+			}
+			try (Stream<Product> stream = streamActive()) {
+				stream.forEach(p -> fresh.index.upsert(p.getId(), fresh.vectorizer.vectorize(features(p))));
+			}
+			state = fresh;
+			System.out.println("Similar products index: " + fresh.index.size() + " products in "
+					+ (System.currentTimeMillis() - start) + " ms");
+		} catch (Exception e) {
+			System.err.println("Similar products index rebuild failed: " + e.getMessage());
+		} finally {
+			rebuilding.set(false);
+		}
+
+		List<String> replay = new ArrayList<>(changedDuringRebuild);
+		changedDuringRebuild.clear();
+		replay.forEach(this::refresh);
+	}
+
+	@EventListener
+	public void onProductChanged(ProductChangedEvent event) {
+		if (event.isAll()) {
+			CompletableFuture.runAsync(this::rebuild);
+			return;
+		}
+		if (rebuilding.get()) changedDuringRebuild.add(event.getProductId());
+		refresh(event.getProductId());
+	}
+
+	private void refresh(String productId) {
+		State current = state;
+		if (current == null) return;
+		Optional<Product> product = productCache.findById(productId);
+		if (product.isPresent() && product.get().getDeletedAt() == null) {
+			Map<Integer, Double> features = features(product.get());
+			current.vectorizer.addDocument(features);
+			current.index.upsert(productId, current.vectorizer.vectorize(features));
+		} else {
+			current.index.remove(productId);
+		}
+	}
+
+	private Stream<Product> streamActive() {
+		Query query = new Query(Criteria.where("deletedAt").is(null)).cursorBatchSize(1000);
+		query.fields().include("name", "type", "material", "description");
+		return mongoTemplate.stream(query, Product.class);
+	}
+
+	private static Map<Integer, Double> features(Product p) {
+		return ProductVectorizer.features(p.getName(), p.getType(), p.getMaterial(), p.getDescription());
+	}
+}
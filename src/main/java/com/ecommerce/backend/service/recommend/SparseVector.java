@@ -0,0 +1,36 @@
+package com.ecommerce.backend.service.recommend;
+
+// L2-normalised sparse vector (sorted feature indices), so cosine similarity is a merge-join dot product
+public final class SparseVector {
+
+	final int[] indices;
+	final float[] values;
+
+	SparseVector(int[] indices, float[] values) {
+		this.indices = indices;
+		this.values = values;
+	}
+
+	public boolean isEmpty() {
+		return indices.length == 0;
+	}
+
+	public float dot(SparseVector other) {
+		float sum = 0;
+		int i = 0, j = 0;
+		int[] a = indices, b = other.indices;
+		// Branch-light merge: the a < b / a > b outcomes are random, so advance both cursors arithmetically
+		while (i < a.length && j < b.length) {
+			int x = a[i], y = b[j];
+			if (x == y) sum += values[i] * other.values[j];
+			i += x <= y ? 1 : 0;
+			j += x >= y ? 1 : 0;
+		}
+		return sum;
+	}
+
+	// Cosine distance in [0, 2]
+	public float distance(SparseVector other) {
+		return 1f - dot(other);
+	}
+}
@@ -0,0 +1,225 @@
+package com.ecommerce.backend.service.search;
+
+import com.ecommerce.backend.util.TextFolding;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+// On-heap inverted index over two fields (name, description) with BM25F-style ranking.
+// Terms are accent-folded; the sorted term dictionary gives prefix expansion for free and
+// a bounded edit-distance-1 scan is used when a query term matches nothing.
+public class InvertedIndex {
+
+	private static final double K1 = 1.2;
+	private static final double B = 0.75;
+	private static final double NAME_WEIGHT = 2.0; // same weight as the Mongo text index
+	private static final double DESCRIPTION_WEIGHT = 1.0;
+	private static final double PREFIX_BOOST = 0.7;
+	private static final double FUZZY_BOOST = 0.4;
+	private static final int MAX_EXPANSIONS = 64;
+
+	private static final int NAME = 0;
+	private static final int DESCRIPTION = 1;
+
+	// term -> [name postings, description postings], postings = doc ordinal -> term frequency
+	private final NavigableMap<String, Map<Integer, Integer>[]> terms = new TreeMap<>();
+	private final List<Doc> docs = new ArrayList<>();
+	private final Map<String, Integer> ordinals = new HashMap<>();
+	private final long[] totalLength = new long[2];
+	private int liveDocs = 0;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private static class Doc {
+		final String id;
+		final Map<String, Integer>[] tf;
+		final int[] length;
+
+		Doc(String id, Map<String, Integer>[] tf, int[] length) {
+			this.id = id;
+			this.tf = tf;
+			this.length = length;
+		}
+	}
+
+	public static class Hit {
+		public final String id;
+		public final double score;
+
+		Hit(String id, double score) {
+			this.id = id;
+			this.score = score;
+		}
+	}
+
+	public void upsert(String id, String name, String description) {
+		List<String> nameTokens = TextFolding.tokens(name);
+		List<String> descriptionTokens = TextFolding.tokens(description);
+		Map<String, Integer>[] tf = termFrequencies(nameTokens, descriptionTokens);
+		int[] length = {nameTokens.size(), descriptionTokens.size()};
+
+		lock.writeLock().lock();
+		try {
+			removeLocked(id);
+			int ordinal = docs.size();
+			docs.add(new Doc(id, tf, length));
+			ordinals.put(id, ordinal);
+			for (int field = 0; field < 2; field++) {
+				totalLength[field] += length[field];
+				for (Map.Entry<String, Integer> e : tf[field].entrySet()) {
+					terms.computeIfAbsent(e.getKey(), k -> newPostings())[field].put(ordinal, e.getValue());
+				}
+			}
+			liveDocs++;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(String id) {
+		lock.writeLock().lock();
+		try {
+			removeLocked(id);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return liveDocs;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// All matching docs accepted by the filter, best first. Query terms are OR-ed like Mongo $text.
+	public List<Hit> search(String query, Predicate<String> filter) {
+		List<String> queryTerms = TextFolding.tokens(query);
+		if (queryTerms.isEmpty()) return List.of();
+
+		lock.readLock().lock();
+		try {
+			if (liveDocs == 0) return List.of();
+			double[] avgLength = {
+					Math.max(1.0, (double) totalLength[NAME] / liveDocs),
+					Math.max(1.0, (double) totalLength[DESCRIPTION] / liveDocs)};
+
+			Map<Integer, Double> scores = new HashMap<>();
+			for (String queryTerm : new LinkedHashSet<>(queryTerms)) {
+				for (Map.Entry<String, Double> expansion : expand(queryTerm).entrySet()) {
+					Map<Integer, Integer>[] postings = terms.get(expansion.getKey());
+					double idf = idf(postings);
+					for (int field = 0; field < 2; field++) {
+						double weight = (field == NAME ? NAME_WEIGHT : DESCRIPTION_WEIGHT) * expansion.getValue() * idf;
+						for (Map.Entry<Integer, Integer> p : postings[field].entrySet()) {
+							int len = docs.get(p.getKey()).length[field];
+							double tf = p.getValue();
+							double norm = tf * (K1 + 1) / (tf + K1 * (1 - B + B * len / avgLength[field]));
+							scores.merge(p.getKey(), weight * norm, Double::sum);
+						}
+					}
+				}
+			}
+
+			List<Hit> hits = new ArrayList<>();
+			for (Map.Entry<Integer, Double> e : scores.entrySet()) {
+				String id = docs.get(e.getKey()).id;
+				if (filter == null || filter.test(id)) hits.add(new Hit(id, e.getValue()));
+			}
+			hits.sort((a, b) -> Double.compare(b.score, a.score));
+			return hits;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// Exact term, then prefix completions; an edit-distance-1 scan (Damerau) only when both find nothing
+	private Map<String, Double> expand(String queryTerm) {
+		Map<String, Double> expansions = new LinkedHashMap<>();
+		if (terms.containsKey(queryTerm)) expansions.put(queryTerm, 1.0);
+
+		if (queryTerm.length() >= 2) {
+			for (String term : terms.subMap(queryTerm, false, queryTerm + Character.MAX_VALUE, false).keySet()) {
+				if (expansions.size() >= MAX_EXPANSIONS) break;
+				expansions.put(term, PREFIX_BOOST * queryTerm.length() / term.length());
+			}
+		}
+
+		if (expansions.isEmpty() && queryTerm.length() >= 4) {
+			String first = queryTerm.substring(0, 1);
+			for (String term : terms.subMap(first, true, first + Character.MAX_VALUE, false).keySet()) {
+				if (Math.abs(term.length() - queryTerm.length()) <= 1 && withinOneEdit(queryTerm, term)) {
+					expansions.put(term, FUZZY_BOOST);
+					if (expansions.size() >= MAX_EXPANSIONS) break;
+				}
+			}
+		}
+		return expansions;
+	}
+
+	private double idf(Map<Integer, Integer>[] postings) {
+		int df = Math.max(postings[NAME].size(), postings[DESCRIPTION].size());
+		return Math.log(1 + (liveDocs - df + 0.5) / (df + 0.5));
+	}
+
+	private void removeLocked(String id) {
+		Integer ordinal = ordinals.remove(id);
+		if (ordinal == null) return;
+		Doc doc = docs.get(ordinal);
+		for (int field = 0; field < 2; field++) {
+			totalLength[field] -= doc.length[field];
+			for (String term : doc.tf[field].keySet()) {
+				Map<Integer, Integer>[] postings = terms.get(term);
+				if (postings == null) continue;
+				postings[field].remove(ordinal);
+				if (postings[NAME].isEmpty() && postings[DESCRIPTION].isEmpty()) terms.remove(term);
+			}
+		}
+		// Ordinal stays a tombstone until the owner rebuilds the index
+		docs.set(ordinal, new Doc(id, termFrequencies(List.of(), List.of()), new int[2]));
+		liveDocs--;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Integer>[] termFrequencies(List<String> nameTokens, List<String> descriptionTokens) {
+		Map<String, Integer>[] tf = new Map[]{new HashMap<String, Integer>(), new HashMap<String, Integer>()};
+		nameTokens.forEach(t -> tf[NAME].merge(t, 1, Integer::sum));
+		descriptionTokens.forEach(t -> tf[DESCRIPTION].merge(t, 1, Integer::sum));
+		return tf;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<Integer, Integer>[] newPostings() {
+		return new Map[]{new HashMap<Integer, Integer>(), new HashMap<Integer, Integer>()};
+	}
+
+	static boolean withinOneEdit(String a, String b) {
+		if (a.equals(b)) return true;
+		int la = a.length(), lb = b.length();
+		if (Math.abs(la - lb) > 1) return false;
+		int i = 0, j = 0, edits = 0;
+		while (i < la && j < lb) {
+			if (a.charAt(i) == b.charAt(j)) {
+				i++;
+				j++;
+				continue;
+			}
+			if (++edits > 1) return false;
+			if (la > lb) i++;
+			else if (lb > la) j++;
+			else if (i + 1 < la && a.charAt(i) == b.charAt(j + 1) && a.charAt(i + 1) == b.charAt(j)) {
+				// adjacent transposition ("jaen" / "jean") counts as one edit
+				i += 2;
+				j += 2;
+			} else {
+				i++;
+				j++;
+			}
+		}
+		return edits + (la - i) + (lb - j) <= 1;
+	}
+}
@@ -0,0 +1,130 @@
+package com.ecommerce.backend.service.search;
+
+import com.ecommerce.backend.event.ProductChangedEvent;
+import com.ecommerce.backend.model.Product;
+import com.ecommerce.backend.service.ProductCache;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Product search served from an in-process InvertedIndex over active products.
+// Loaded once after startup, kept in sync from ProductChangedEvents (local writes + change stream)
+// and rebuilt nightly to drop tombstones. search() returns null until the first load finished.
+@Service
+public class ProductSearchService {
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	@Autowired
+	ProductCache productCache;
+
+	private volatile Snapshot snapshot;
+	private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+	private final Set<String> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+	private static class Snapshot {
+		final InvertedIndex index = new InvertedIndex();
+		final Map<String, Product> products = new ConcurrentHashMap<>();
+
+		void put(Product p) {
+			index.upsert(p.getId(), p.getName(), p.getDescription());
+			products.put(p.getId(), p);
+		}
+
+		void remove(String id) {
+			index.remove(id);
+			products.remove(id);
+		}
+	}
+
+	@Getter
+	@AllArgsConstructor
+	public static class SearchResult {
+		private final List<Product> contents;
+		private final int total;
+	}
+
+	public SearchResult search(String query, String category, int page, int limit) {
+		Snapshot current = snapshot;
+		if (current == null) return null;
+
+		List<InvertedIndex.Hit> hits = current.index.search(query, id -> {
+			if (category == null) return true;
+			Product p = current.products.get(id);
+			return p != null && category.equals(p.getCategory());
+		});
+
+		List<Product> contents = hits.stream()
+				.skip((long) (page - 1) * limit)
+				.limit(limit)
+				.map(h -> current.products.get(h.id))
+				.filter(Objects::nonNull)
+				.collect(Collectors.toList());
+		return new SearchResult(contents, hits.size());
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onReady() {
+		CompletableFuture.runAsync(this::rebuild);
+	}
+
+	@Scheduled(cron = "${app.search.rebuild-cron:0 0 4 * * *}")
+	public void rebuild() {
+		if (!rebuilding.compareAndSet(false, true)) return;
+		try {
+			changedDuringRebuild.clear();
+			Snapshot fresh = new Snapshot();
+			Query query = new Query(Criteria.where("deletedAt").is(null)).cursorBatchSize(1000);
+			try (Stream<Product> stream = mongoTemplate.stream(query, Product.class)) {
+				stream.forEach(fresh::put);
+			}
+			snapshot = fresh;
+		} catch (Exception e) {
+			System.err.println("Search index rebuild failed: " + e.getMessage());
+		} finally {
+			rebuilding.set(false);
+		}
+
+		// Writes that happened while the collection was being scanned
+		List<String> replay = new ArrayList<>(changedDuringRebuild);
+		changedDuringRebuild.clear();
+		replay.forEach(this::refresh);
+	}
+
+	@EventListener
+	public void onProductChanged(ProductChangedEvent event) {
+		if (event.isAll()) {
+			CompletableFuture.runAsync(this::rebuild);
+			return;
+		}
+		if (rebuilding.get()) changedDuringRebuild.add(event.getProductId());
+		refresh(event.getProductId());
+	}
+
+	private void refresh(String productId) {
+		Snapshot current = snapshot;
+		if (current == null) return;
+		// ProductCache already dropped the stale entry (its listener runs first)
+		Optional<Product> product = productCache.findById(productId);
+		if (product.isPresent() && product.get().getDeletedAt() == null) {
+			current.put(product.get());
+		} else {
+			current.remove(productId);
+		}
+	}
+}
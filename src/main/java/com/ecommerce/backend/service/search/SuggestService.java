@@ -0,0 +1,145 @@
+package com.ecommerce.backend.service.search;
+
+import com.ecommerce.backend.event.ProductChangedEvent;
+import com.ecommerce.backend.model.Category;
+import com.ecommerce.backend.model.Order;
+import com.ecommerce.backend.model.Product;
+import com.ecommerce.backend.service.CategorySnapshotService;
+import com.ecommerce.backend.service.ProductCache;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
+
+// Search-as-you-type over active product names, category names and trending keywords
+// (names of the best sellers, like /api/category/trending). Ranked by units sold.
+// Product writes update single entries; the whole trie is rebuilt periodically to refresh sales weights.
+@Service
+public class SuggestService {
+
+	private static final int TOP_K = 10;
+	private static final int KEYWORDS = 6;
+
+	@Autowired
+	MongoTemplate mongoTemplate;
+
+	@Autowired
+	CategorySnapshotService categorySnapshotService;
+
+	@Autowired
+	ProductCache productCache;
+
+	private volatile SuggestTrie trie;
+	private volatile Map<String, Long> soldByProduct = Map.of();
+	private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+	private final Set<String> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+	public List<SuggestTrie.Entry> suggest(String prefix, int limit) {
+		SuggestTrie current = trie;
+		return current != null ? current.suggest(prefix, limit) : List.of();
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onReady() {
+		CompletableFuture.runAsync(this::rebuild);
+	}
+
+	@Scheduled(initialDelayString = "${app.suggest.rebuild-interval-ms:1800000}", fixedDelayString = "${app.suggest.rebuild-interval-ms:1800000}")
+	public void rebuild() {
+		if (!rebuilding.compareAndSet(false, true)) return;
+		try {
+			changedDuringRebuild.clear();
+			Map<String, Long> sold = salesByProduct();
+			SuggestTrie fresh = new SuggestTrie(TOP_K);
+			Map<String, Long> soldByCategory = new HashMap<>();
+			Map<String, Long> soldByName = new HashMap<>();
+
+			Query query = new Query(Criteria.where("deletedAt").is(null)).cursorBatchSize(1000);
+			query.fields().include("name", "category");
+			try (Stream<Product> stream = mongoTemplate.stream(query, Product.class)) {
+				stream.forEach(p -> {
+					long units = sold.getOrDefault(p.getId(), 0L);
+					fresh.put(productEntry(p, units));
+					if (p.getCategory() != null) soldByCategory.merge(p.getCategory(), units, Long::sum);
+					if (p.getName() != null) soldByName.merge(p.getName().toLowerCase(), units, Long::sum);
+				});
+			}
+
+			for (Category c : categorySnapshotService.get().active()) {
+				if (c.getName() == null) continue;
+				fresh.put(new SuggestTrie.Entry("category:" + c.getId(), c.getName(), "category",
+						soldByCategory.getOrDefault(c.getId(), 0L)));
+			}
+
+			// Keywords rank above the product they come from
+			soldByName.entrySet().stream()
+					.filter(e -> e.getValue() > 0)
+					.sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+					.limit(KEYWORDS)
+					.forEach(e -> fresh.put(new SuggestTrie.Entry("keyword:" + e.getKey(), e.getKey(), "keyword", e.getValue() * 2.0)));
+
+			soldByProduct = sold;
+			trie = fresh;
+		} catch (Exception e) {
+			System.err.println("Suggest index rebuild failed: " + e.getMessage());
+		} finally {
+			rebuilding.set(false);
+		}
+
+		List<String> replay = new ArrayList<>(changedDuringRebuild);
+		changedDuringRebuild.clear();
+		replay.forEach(this::refresh);
+	}
+
+	@EventListener
+	public void onProductChanged(ProductChangedEvent event) {
+		if (event.isAll()) {
+			CompletableFuture.runAsync(this::rebuild);
+			return;
+		}
+		if (rebuilding.get()) changedDuringRebuild.add(event.getProductId());
+		refresh(event.getProductId());
+	}
+
+	private void refresh(String productId) {
+		SuggestTrie current = trie;
+		if (current == null) return;
+		Optional<Product> product = productCache.findById(productId);
+		if (product.isPresent() && product.get().getDeletedAt() == null) {
+			current.put(productEntry(product.get(), soldByProduct.getOrDefault(productId, 0L)));
+		} else {
+			current.remove("product:" + productId);
+		}
+	}
+
+	private static SuggestTrie.Entry productEntry(Product p, long sold) {
+		return new SuggestTrie.Entry("product:" + p.getId(), p.getName(), "product", sold);
+	}
+
+	private Map<String, Long> salesByProduct() {
+		Map<String, Long> sold = new HashMap<>();
+		List<Document> rows = mongoTemplate.aggregate(newAggregation(
+				match(Criteria.where("deletedAt").is(null)),
+				unwind("items"),
+				group("items.productId").sum("items.quantity").as("sold")
+		), Order.class, Document.class).getMappedResults();
+		for (Document row : rows) {
+			Object id = row.get("_id");
+			if (id != null) sold.put(id.toString(), ((Number) row.get("sold")).longValue());
+		}
+		return sold;
+	}
+}
@@ -0,0 +1,225 @@
+package com.ecommerce.backend.service.search;
+
+import com.ecommerce.backend.util.TextFolding;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Compressed (radix) trie for search-as-you-type. Every node caches the top-K entries of its
+// subtree by weight, so a lookup is a walk down the prefix plus returning that array.
+// Entries are reachable from every word of their text ("thun" finds "Áo thun trắng").
+// Insert/remove only touch the nodes on the affected paths.
+public class SuggestTrie {
+
+	private static final int MAX_WORD_STARTS = 8;
+
+	private final int topK;
+	private final Node root = new Node("");
+	private final Map<String, Indexed> entries = new HashMap<>();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	public SuggestTrie(int topK) {
+		this.topK = topK;
+	}
+
+	public static class Entry {
+		public final String key;
+		public final String text;
+		public final String type;
+		public final double weight;
+
+		public Entry(String key, String text, String type, double weight) {
+			this.key = key;
+			this.text = text;
+			this.type = type;
+			this.weight = weight;
+		}
+	}
+
+	private static class Indexed {
+		final Entry entry;
+		final List<String> paths;
+
+		Indexed(Entry entry, List<String> paths) {
+			this.entry = entry;
+			this.paths = paths;
+		}
+	}
+
+	private static class Node {
+		String label;
+		final Map<Character, Node> children = new HashMap<>();
+		final List<Entry> terminals = new ArrayList<>(1);
+		Entry[] top = new Entry[0];
+
+		Node(String label) {
+			this.label = label;
+		}
+	}
+
+	public void put(Entry entry) {
+		List<String> paths = paths(entry.text);
+		lock.writeLock().lock();
+		try {
+			removeLocked(entry.key);
+			if (paths.isEmpty()) return;
+			entries.put(entry.key, new Indexed(entry, paths));
+			for (String path : paths) insert(path, entry);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(String key) {
+		lock.writeLock().lock();
+		try {
+			removeLocked(key);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return entries.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public List<Entry> suggest(String prefix, int limit) {
+		String key = TextFolding.fold(prefix);
+		if (key.isEmpty()) return List.of();
+
+		lock.readLock().lock();
+		try {
+			Node node = root;
+			int i = 0;
+			while (i < key.length()) {
+				Node child = node.children.get(key.charAt(i));
+				if (child == null) return List.of();
+				String rest = key.substring(i);
+				if (rest.length() <= child.label.length()) {
+					// Prefix ends inside (or at the end of) this edge
+					if (!child.label.startsWith(rest)) return List.of();
+					node = child;
+					break;
+				}
+				if (!rest.startsWith(child.label)) return List.of();
+				node = child;
+				i += child.label.length();
+			}
+			Entry[] top = node.top;
+			return Arrays.asList(Arrays.copyOf(top, Math.min(limit, top.length)));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// Folded text from every word start: "ao thun trang", "thun trang", "trang"
+	private static List<String> paths(String text) {
+		List<String> words = TextFolding.tokens(text);
+		List<String> paths = new ArrayList<>();
+		for (int i = 0; i < words.size() && i < MAX_WORD_STARTS; i++) {
+			String path = String.join(" ", words.subList(i, words.size()));
+			if (!paths.contains(path)) paths.add(path);
+		}
+		return paths;
+	}
+
+	private void insert(String key, Entry entry) {
+		List<Node> path = new ArrayList<>();
+		path.add(root);
+		Node node = root;
+		int i = 0;
+		while (i < key.length()) {
+			char c = key.charAt(i);
+			Node child = node.children.get(c);
+			if (child == null) {
+				child = new Node(key.substring(i));
+				node.children.put(c, child);
+				node = child;
+				path.add(node);
+				break;
+			}
+			int common = commonPrefix(child.label, key, i);
+			if (common < child.label.length()) {
+				// Split the edge: node -> mid(common part) -> child(remaining label)
+				Node mid = new Node(child.label.substring(0, common));
+				child.label = child.label.substring(common);
+				mid.children.put(child.label.charAt(0), child);
+				mid.top = child.top;
+				node.children.put(c, mid);
+				child = mid;
+			}
+			node = child;
+			path.add(node);
+			i += common;
+		}
+		node.terminals.add(entry);
+		for (Node n : path) n.top = offer(n.top, entry);
+	}
+
+	private void removeLocked(String key) {
+		Indexed indexed = entries.remove(key);
+		if (indexed == null) return;
+
+		for (String path : indexed.paths) {
+			List<Node> nodes = new ArrayList<>();
+			nodes.add(root);
+			Node node = root;
+			int i = 0;
+			while (i < path.length() && node != null) {
+				node = node.children.get(path.charAt(i));
+				if (node != null) {
+					nodes.add(node);
+					i += node.label.length();
+				}
+			}
+			if (node == null) continue;
+			node.terminals.removeIf(e -> e.key.equals(key));
+
+			// Recompute top-K bottom-up along the path, pruning leaves that became empty
+			for (int n = nodes.size() - 1; n >= 0; n--) {
+				Node current = nodes.get(n);
+				if (n > 0 && current.terminals.isEmpty() && current.children.isEmpty()) {
+					nodes.get(n - 1).children.remove(current.label.charAt(0));
+					continue;
+				}
+				current.top = recompute(current);
+			}
+		}
+	}
+
+	private Entry[] offer(Entry[] top, Entry entry) {
+		List<Entry> merged = new ArrayList<>(top.length + 1);
+		for (Entry e : top) {
+			if (!e.key.equals(entry.key)) merged.add(e);
+		}
+		merged.add(entry);
+		return best(merged);
+	}
+
+	private Entry[] recompute(Node node) {
+		List<Entry> candidates = new ArrayList<>(node.terminals);
+		for (Node child : node.children.values()) candidates.addAll(Arrays.asList(child.top));
+		return best(candidates);
+	}
+
+	private Entry[] best(List<Entry> candidates) {
+		Map<String, Entry> unique = new HashMap<>();
+		for (Entry e : candidates) unique.putIfAbsent(e.key, e);
+		return unique.values().stream()
+				.sorted(Comparator.comparingDouble((Entry e) -> -e.weight).thenComparing(e -> e.text))
+				.limit(topK)
+				.toArray(Entry[]::new);
+	}
+
+	private static int commonPrefix(String label, String key, int offset) {
+		int n = 0;
+		while (n < label.length() && offset + n < key.length() && label.charAt(n) == key.charAt(offset + n)) n++;
+		return n;
+	}
+}
@@ -0,0 +1,77 @@
+package com.ecommerce.backend.service.trend;
+
+import java.util.Arrays;
+
+// Count-Min sketch (Cormode & Muthukrishnan) with conservative update: estimates never undercount and
+// overcount by at most ~e/width of the total with probability 1 - e^-depth. Fixed size, mergeable by
+// adding tables, which is how the sliding windows are assembled from per-minute sketches.
+public final class CountMinSketch {
+
+	private final int depth;
+	private final int mask;
+	private final int[] table;
+	private long total;
+
+	public CountMinSketch(int depth, int width) {
+		if (Integer.bitCount(width) != 1) throw new IllegalArgumentException("width must be a power of two");
+		this.depth = depth;
+		this.mask = width - 1;
+		this.table = new int[depth * width];
+	}
+
+	// 64-bit FNV-1a over the chars, finished with a murmur3 mix so both halves are usable
+	public static long hash(String key) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			h ^= key.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		return h ^ (h >>> 33);
+	}
+
+	// Adds count and returns the new estimate; only the rows at the current minimum are raised
+	public int add(long hash, int count) {
+		int estimate = estimate(hash) + count;
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32) | 1;
+		int width = mask + 1;
+		for (int row = 0; row < depth; row++) {
+			int cell = row * width + ((h1 + row * h2) & mask);
+			if (table[cell] < estimate) table[cell] = estimate;
+		}
+		total += count;
+		return estimate;
+	}
+
+	public int estimate(long hash) {
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32) | 1;
+		int width = mask + 1;
+		int min = Integer.MAX_VALUE;
+		for (int row = 0; row < depth; row++) {
+			min = Math.min(min, table[row * width + ((h1 + row * h2) & mask)]);
+		}
+		return min;
+	}
+
+	public void addAll(CountMinSketch other) {
+		if (other.table.length != table.length || other.depth != depth) throw new IllegalArgumentException("Sketch shapes differ");
+		if (other.total == 0) return;
+		for (int i = 0; i < table.length; i++) table[i] += other.table[i];
+		total += other.total;
+	}
+
+	public long total() {
+		return total;
+	}
+
+	public void clear() {
+		if (total == 0) return;
+		Arrays.fill(table, 0);
+		total = 0;
+	}
+}
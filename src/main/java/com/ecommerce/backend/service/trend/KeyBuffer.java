@@ -0,0 +1,48 @@
+package com.ecommerce.backend.service.trend;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+// Bounded lock-free multi-producer / single-consumer ring of keys. Request threads offer() with one CAS
+// and a volatile store; the scheduled drainer consumes. When the drainer falls a full ring behind,
+// new keys are dropped (trends are approximate anyway) instead of growing memory.
+final class KeyBuffer {
+
+	private final AtomicReferenceArray<String> slots;
+	private final int mask;
+	private final AtomicLong tail = new AtomicLong();
+	private volatile long head;
+
+	KeyBuffer(int capacity) {
+		if (Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("capacity must be a power of two");
+		this.slots = new AtomicReferenceArray<>(capacity);
+		this.mask = capacity - 1;
+	}
+
+	boolean offer(String key) {
+		long t;
+		do {
+			t = tail.get();
+			if (t - head > mask) return false;
+		} while (!tail.compareAndSet(t, t + 1));
+		slots.set((int) (t & mask), key);
+		return true;
+	}
+
+	// Single consumer only. Stops at a claimed slot whose key isn't published yet; the next drain picks it up.
+	int drain(Consumer<String> sink) {
+		int drained = 0;
+		long h = head;
+		while (true) {
+			int slot = (int) (h & mask);
+			String key = slots.get(slot);
+			if (key == null) break;
+			slots.set(slot, null);
+			head = ++h;
+			sink.accept(key);
+			drained++;
+		}
+		return drained;
+	}
+}
@@ -0,0 +1,59 @@
+package com.ecommerce.backend.service.trend;
+
+import java.util.*;
+
+// Space-Saving top-k summary (Metwally et al.): at most `capacity` monitored keys; an unmonitored key
+// replaces the current minimum and inherits its count. Any key with true frequency above total/capacity
+// is guaranteed to be monitored, so the union of a window's summaries holds its heavy hitters.
+public final class SpaceSaving {
+
+	private final int capacity;
+	private final Map<String, long[]> counts;
+
+	public SpaceSaving(int capacity) {
+		this.capacity = capacity;
+		this.counts = new HashMap<>(capacity * 2);
+	}
+
+	public void add(String key, long count) {
+		long[] current = counts.get(key);
+		if (current != null) {
+			current[0] += count;
+			return;
+		}
+		if (counts.size() < capacity) {
+			counts.put(key, new long[]{count});
+			return;
+		}
+		// Full: evict the minimum. A linear scan is fine at these capacities and only runs for new keys.
+		String minKey = null;
+		long min = Long.MAX_VALUE;
+		for (Map.Entry<String, long[]> e : counts.entrySet()) {
+			if (e.getValue()[0] < min) {
+				min = e.getValue()[0];
+				minKey = e.getKey();
+			}
+		}
+		counts.remove(minKey);
+		counts.put(key, new long[]{min + count});
+	}
+
+	// Merge for folding minutes into hours; keeps the summary bounded by re-adding in descending order
+	public void addAll(SpaceSaving other) {
+		List<Map.Entry<String, long[]>> entries = new ArrayList<>(other.counts.entrySet());
+		entries.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+		for (Map.Entry<String, long[]> e : entries) add(e.getKey(), e.getValue()[0]);
+	}
+
+	public Set<String> keys() {
+		return counts.keySet();
+	}
+
+	public boolean isEmpty() {
+		return counts.isEmpty();
+	}
+
+	public void clear() {
+		counts.clear();
+	}
+}
@@ -0,0 +1,91 @@
+package com.ecommerce.backend.service.trend;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+// What is trending right now: product searches and product views over the last hour / day.
+// Request threads only offer the key to a lock-free ring; a scheduled drainer feeds the per-minute
+// sketches. Rankings are cached until the next drain changes something. Counts are per node and
+// in memory only - after a restart the windows fill up again.
+@Service
+public class TrendTracker {
+
+	public enum Window {
+		HOUR, DAY;
+
+		// Unknown values fall back to the day window
+		public static Window parse(String value) {
+			return "hour".equalsIgnoreCase(value) ? HOUR : DAY;
+		}
+	}
+
+	private static final int BUFFER_CAPACITY = 1 << 14;
+	private static final int MAX_QUERY_LENGTH = 64;
+	private static final int MAX_LIMIT = 50;
+
+	private final Feed searches = new Feed();
+	private final Feed views = new Feed();
+
+	private static final class Feed {
+		final KeyBuffer buffer = new KeyBuffer(BUFFER_CAPACITY);
+		final TrendWindow window = new TrendWindow(epochMinute());
+		final Map<Window, List<TrendWindow.Entry>> cached = new ConcurrentHashMap<>();
+
+		synchronized void drain(long minute) {
+			boolean rotated = window.advanceTo(minute);
+			if (buffer.drain(window::add) > 0 || rotated) cached.clear();
+		}
+
+		List<TrendWindow.Entry> top(Window w) {
+			List<TrendWindow.Entry> top = cached.get(w);
+			if (top != null) return top;
+			synchronized (this) {
+				return cached.computeIfAbsent(w, key -> window.top(key == Window.DAY, MAX_LIMIT));
+			}
+		}
+	}
+
+	public void recordSearch(String query) {
+		String key = normalizeQuery(query);
+		if (!key.isEmpty()) searches.buffer.offer(key);
+	}
+
+	public void recordView(String productId) {
+		if (productId != null) views.buffer.offer(productId);
+	}
+
+	// Most searched queries (normalized: lower case, single spaces), most frequent first
+	public List<String> topSearches(Window window, int limit) {
+		return keys(searches.top(window), limit);
+	}
+
+	// Most viewed product ids, most frequent first
+	public List<String> topProducts(Window window, int limit) {
+		return keys(views.top(window), limit);
+	}
+
+	@Scheduled(fixedDelayString = "${app.trending.drain-interval-ms:1000}")
+	public void drain() {
+		long minute = epochMinute();
+		searches.drain(minute);
+		views.drain(minute);
+	}
+
+	static String normalizeQuery(String query) {
+		if (query == null) return "";
+		String key = query.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+		return key.length() > MAX_QUERY_LENGTH ? key.substring(0, MAX_QUERY_LENGTH) : key;
+	}
+
+	private static List<String> keys(List<TrendWindow.Entry> entries, int limit) {
+		return entries.stream().limit(limit).map(e -> e.key).collect(Collectors.toList());
+	}
+
+	private static long epochMinute() {
+		return System.currentTimeMillis() / 60_000;
+	}
+}
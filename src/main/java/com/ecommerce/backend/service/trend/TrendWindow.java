@@ -0,0 +1,105 @@
+package com.ecommerce.backend.service.trend;
+
+import java.util.*;
+
+// Sliding windows of key counts: a ring of 60 per-minute slots (last hour) and 24 per-hour slots
+// (last day), each a Count-Min sketch plus a Space-Saving summary. Finished minutes are folded into
+// their hour. Memory is fixed by the sketch shape, whatever the number of distinct keys.
+// Not thread-safe; TrendTracker serialises access.
+final class TrendWindow {
+
+	static final int MINUTES = 60;
+	static final int HOURS = 24;
+
+	private static final int DEPTH = 4;
+	private static final int WIDTH = 2048;
+	private static final int TOP_CAPACITY = 64;
+
+	private static final class Slot {
+		final CountMinSketch sketch = new CountMinSketch(DEPTH, WIDTH);
+		final SpaceSaving top = new SpaceSaving(TOP_CAPACITY);
+
+		void add(String key, long hash) {
+			sketch.add(hash, 1);
+			top.add(key, 1);
+		}
+
+		void addAll(Slot other) {
+			sketch.addAll(other.sketch);
+			top.addAll(other.top);
+		}
+
+		void clear() {
+			sketch.clear();
+			top.clear();
+		}
+	}
+
+	static final class Entry {
+		final String key;
+		final long count;
+
+		Entry(String key, long count) {
+			this.key = key;
+			this.count = count;
+		}
+	}
+
+	private final Slot[] minutes = new Slot[MINUTES];
+	private final Slot[] hours = new Slot[HOURS];
+	private long currentMinute;
+
+	TrendWindow(long epochMinute) {
+		for (int i = 0; i < MINUTES; i++) minutes[i] = new Slot();
+		for (int i = 0; i < HOURS; i++) hours[i] = new Slot();
+		currentMinute = epochMinute;
+	}
+
+	void add(String key) {
+		minutes[(int) (currentMinute % MINUTES)].add(key, CountMinSketch.hash(key));
+	}
+
+	// Moves the current minute forward, folding each finished minute into its hour; false if already there
+	boolean advanceTo(long epochMinute) {
+		if (epochMinute <= currentMinute) return false;
+		if (epochMinute - currentMinute > (long) HOURS * MINUTES) {
+			// Idle for more than a day: nothing left in any window
+			for (Slot s : minutes) s.clear();
+			for (Slot s : hours) s.clear();
+			currentMinute = epochMinute;
+			return true;
+		}
+		while (currentMinute < epochMinute) {
+			Slot finished = minutes[(int) (currentMinute % MINUTES)];
+			hours[(int) ((currentMinute / MINUTES) % HOURS)].addAll(finished);
+			currentMinute++;
+			if (currentMinute % MINUTES == 0) hours[(int) ((currentMinute / MINUTES) % HOURS)].clear();
+			minutes[(int) (currentMinute % MINUTES)].clear();
+		}
+		return true;
+	}
+
+	// Top keys over the last hour (60 minute slots) or day (24 hour slots + the unfolded current minute)
+	List<Entry> top(boolean day, int limit) {
+		List<Slot> slots = new ArrayList<>();
+		if (day) {
+			slots.addAll(Arrays.asList(hours));
+			slots.add(minutes[(int) (currentMinute % MINUTES)]);
+		} else {
+			slots.addAll(Arrays.asList(minutes));
+		}
+
+		CountMinSketch merged = new CountMinSketch(DEPTH, WIDTH);
+		Set<String> candidates = new HashSet<>();
+		for (Slot s : slots) {
+			if (s.sketch.total() == 0) continue;
+			merged.addAll(s.sketch);
+			candidates.addAll(s.top.keys());
+		}
+
+		List<Entry> entries = new ArrayList<>(candidates.size());
+		for (String key : candidates) entries.add(new Entry(key, merged.estimate(CountMinSketch.hash(key))));
+		entries.sort((a, b) -> Long.compare(b.count, a.count));
+		return entries.size() > limit ? new ArrayList<>(entries.subList(0, limit)) : entries;
+	}
+}
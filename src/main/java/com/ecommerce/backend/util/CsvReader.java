@@ -0,0 +1,88 @@
+package com.ecommerce.backend.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Streaming RFC 4180 reader: quoted fields, "" escapes, separators and line breaks inside quotes.
+// Reads one record at a time, so memory does not depend on the file size.
+public class CsvReader {
+
+	private final Reader reader;
+	private int peeked = -2;
+	private long line = 1;
+
+	public CsvReader(Reader reader) {
+		this.reader = reader;
+	}
+
+	// Line number where the next record starts (1-based)
+	public long getLine() {
+		return line;
+	}
+
+	// Next record, or null at end of input; blank lines are skipped
+	public List<String> next() throws IOException {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		boolean any = false;
+		int c;
+		while ((c = read()) != -1) {
+			any = true;
+			if (quoted) {
+				if (c == '"') {
+					if (peek() == '"') {
+						read();
+						field.append('"');
+					} else {
+						quoted = false;
+					}
+				} else {
+					if (c == '\n') line++;
+					field.append((char) c);
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else if (c == '\r' || c == '\n') {
+				if (c == '\r' && peek() == '\n') read();
+				line++;
+				if (fields.isEmpty() && field.length() == 0) {
+					any = false;
+					continue;
+				}
+				fields.add(field.toString());
+				return fields;
+			} else {
+				field.append((char) c);
+			}
+		}
+		if (!any && fields.isEmpty() && field.length() == 0) return null;
+		fields.add(field.toString());
+		return fields;
+	}
+
+	public static String escape(String value) {
+		if (value == null) return "";
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) return value;
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+
+	private int read() throws IOException {
+		if (peeked != -2) {
+			int c = peeked;
+			peeked = -2;
+			return c;
+		}
+		return reader.read();
+	}
+
+	private int peek() throws IOException {
+		if (peeked == -2) peeked = reader.read();
+		return peeked;
+	}
+}
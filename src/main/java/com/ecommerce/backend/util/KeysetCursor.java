@@ -0,0 +1,111 @@
+package com.ecommerce.backend.util;
+
+import com.ecommerce.backend.model.Product;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+// Opaque "after" token for keyset pagination of product listings.
+// Encodes the sort it was issued for plus the sort value and _id of the last row returned,
+// so the next page is a range scan on (field, _id) instead of skip/limit.
+public class KeysetCursor {
+
+	private final String field;
+	private final Sort.Direction direction;
+	private final Object value;
+	private final String id;
+
+	private KeysetCursor(String field, Sort.Direction direction, Object value, String id) {
+		this.field = field;
+		this.direction = direction;
+		this.value = value;
+		this.id = id;
+	}
+
+	// sortType as used by the storefront: 0 newest, 1 oldest, 4 price asc, 5 price desc
+	public static Sort sortFor(String sortType) {
+		Sort.Order order;
+		switch (sortType == null ? "0" : sortType) {
+			case "1": order = Sort.Order.asc("createdAt"); break;
+			case "4": order = Sort.Order.asc("price"); break;
+			case "5": order = Sort.Order.desc("price"); break;
+			default: order = Sort.Order.desc("createdAt"); break;
+		}
+		// _id as tiebreaker keeps the order total, which the cursor relies on
+		return Sort.by(order, new Sort.Order(order.getDirection(), "_id"));
+	}
+
+	// sortFor maps anything else to newest; cursor endpoints that take a client sortType reject it instead
+	public static boolean supports(String sortType) {
+		return sortType == null || List.of("0", "1", "4", "5").contains(sortType);
+	}
+
+	public static String encode(Sort sort, Product last) {
+		Sort.Order order = sort.iterator().next();
+		String field = order.getProperty();
+		String value;
+		if ("price".equals(field)) {
+			value = "d" + last.getPrice();
+		} else {
+			value = last.getCreatedAt() != null ? "t" + last.getCreatedAt().getTime() : "n";
+		}
+		String raw = field + "|" + order.getDirection() + "|" + value + "|" + last.getId();
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	// Throws IllegalArgumentException for tampered tokens or tokens issued for another sort
+	public static KeysetCursor decode(String token, Sort sort) {
+		String raw;
+		try {
+			raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid cursor");
+		}
+
+		String[] parts = raw.split("\\|", 4);
+		Sort.Order order = sort.iterator().next();
+		if (parts.length != 4 || !parts[0].equals(order.getProperty()) || !parts[1].equals(order.getDirection().name())) {
+			throw new IllegalArgumentException("Invalid cursor");
+		}
+
+		Object value;
+		try {
+			switch (parts[2].isEmpty() ? ' ' : parts[2].charAt(0)) {
+				case 'd': value = Double.parseDouble(parts[2].substring(1)); break;
+				case 't': value = new Date(Long.parseLong(parts[2].substring(1))); break;
+				case 'n': value = null; break;
+				default: throw new IllegalArgumentException("Invalid cursor");
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid cursor");
+		}
+		return new KeysetCursor(parts[0], order.getDirection(), value, parts[3]);
+	}
+
+	// Rows strictly after the cursor position. Mongo sorts null before any value,
+	// so missing sort values come last in DESC order and first in ASC order.
+	public Criteria toCriteria() {
+		if (direction.isDescending()) {
+			if (value == null) {
+				return new Criteria().andOperator(Criteria.where(field).is(null), Criteria.where("_id").lt(id));
+			}
+			return new Criteria().orOperator(
+					Criteria.where(field).lt(value),
+					Criteria.where(field).is(null),
+					new Criteria().andOperator(Criteria.where(field).is(value), Criteria.where("_id").lt(id)));
+		}
+
+		if (value == null) {
+			return new Criteria().orOperator(
+					Criteria.where(field).ne(null),
+					new Criteria().andOperator(Criteria.where(field).is(null), Criteria.where("_id").gt(id)));
+		}
+		return new Criteria().orOperator(
+				Criteria.where(field).gt(value),
+				new Criteria().andOperator(Criteria.where(field).is(value), Criteria.where("_id").gt(id)));
+	}
+}
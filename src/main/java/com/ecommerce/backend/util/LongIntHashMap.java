@@ -0,0 +1,91 @@
+package com.ecommerce.backend.util;
+
+import java.util.Arrays;
+
+// Open-addressing long -> int map (linear probing, no boxing). Used for sparse counting
+// where a HashMap<Long, Integer> would cost ~60 bytes per entry.
+public final class LongIntHashMap {
+
+	private static final long EMPTY = Long.MIN_VALUE;
+	private static final double LOAD_FACTOR = 0.6;
+
+	private long[] keys;
+	private int[] values;
+	private int size;
+	private int resizeAt;
+
+	public interface EntryConsumer {
+		void accept(long key, int value);
+	}
+
+	public LongIntHashMap() {
+		this(16);
+	}
+
+	public LongIntHashMap(int expected) {
+		allocate(Integer.highestOneBit(Math.max(16, (int) (expected / LOAD_FACTOR)) - 1) << 1);
+	}
+
+	public int get(long key) {
+		int slot = find(key);
+		return keys[slot] == key ? values[slot] : 0;
+	}
+
+	// Adds delta to the value of key (missing keys count as 0) and returns the new value
+	public int addTo(long key, int delta) {
+		if (key == EMPTY) throw new IllegalArgumentException("Reserved key");
+		int slot = find(key);
+		if (keys[slot] == key) {
+			return values[slot] += delta;
+		}
+		keys[slot] = key;
+		values[slot] = delta;
+		if (++size >= resizeAt) grow();
+		return delta;
+	}
+
+	public void addAll(LongIntHashMap other) {
+		other.forEach(this::addTo);
+	}
+
+	public void forEach(EntryConsumer consumer) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != EMPTY) consumer.accept(keys[i], values[i]);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private int find(long key) {
+		int mask = keys.length - 1;
+		int slot = mix(key) & mask;
+		while (keys[slot] != EMPTY && keys[slot] != key) slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(oldKeys.length << 1);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] == EMPTY) continue;
+			int slot = find(oldKeys[i]);
+			keys[slot] = oldKeys[i];
+			values[slot] = oldValues[i];
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(keys, EMPTY);
+		resizeAt = (int) (capacity * LOAD_FACTOR);
+	}
+
+	private static int mix(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
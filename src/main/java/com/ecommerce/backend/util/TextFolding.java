@@ -0,0 +1,31 @@
+package com.ecommerce.backend.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+// Accent folding for Vietnamese text: "Áo thun ĐEN" -> "ao thun den"
+public final class TextFolding {
+
+	private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+	private static final Pattern NON_ALNUM = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+	private TextFolding() {
+	}
+
+	public static String fold(String text) {
+		if (text == null || text.isEmpty()) return "";
+		String lower = text.toLowerCase().replace('đ', 'd');
+		String stripped = MARKS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("");
+		return NON_ALNUM.matcher(stripped).replaceAll(" ").trim();
+	}
+
+	public static List<String> tokens(String text) {
+		List<String> tokens = new ArrayList<>();
+		for (String t : fold(text).split(" ")) {
+			if (!t.isEmpty()) tokens.add(t);
+		}
+		return tokens;
+	}
+}
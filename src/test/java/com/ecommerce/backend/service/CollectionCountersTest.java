@@ -0,0 +1,16 @@
+package com.ecommerce.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CollectionCountersTest {
+
+	@Test
+	void driftIsFixedOnlyWhereBothEstimatesAgree() {
+		assertEquals(3, CollectionCounters.agreed(3, 5));
+		assertEquals(-2, CollectionCounters.agreed(-4, -2));
+		assertEquals(0, CollectionCounters.agreed(3, -1));
+		assertEquals(0, CollectionCounters.agreed(0, 7));
+	}
+}
@@ -0,0 +1,60 @@
+package com.ecommerce.backend.service;
+
+import com.ecommerce.backend.model.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyServiceTest {
+
+	private final IdempotencyService service = new IdempotencyService();
+
+	IdempotencyServiceTest() {
+		service.objectMapper = new ObjectMapper();
+	}
+
+	@Test
+	void serverAssignedIdsDoNotChangeTheHash() {
+		// Each deserialized request body gets its own random _id
+		Product first = Product.builder().name("Shirt").price(10).build();
+		Product retry = Product.builder().name("Shirt").price(10).build();
+		assertNotEquals(first.getId(), retry.getId());
+
+		assertEquals(service.canonicalJson(first), service.canonicalJson(retry));
+		assertFalse(service.canonicalJson(first).contains(first.getId()));
+	}
+
+	@Test
+	void keyOrderDoesNotMatterButValuesAndArrayOrderDo() {
+		Map<String, Object> a = new LinkedHashMap<>();
+		a.put("productId", "p-1");
+		a.put("quantity", 2);
+		a.put("sizes", List.of("M", "L"));
+		Map<String, Object> b = new LinkedHashMap<>();
+		b.put("sizes", List.of("M", "L"));
+		b.put("quantity", 2);
+		b.put("productId", "p-1");
+
+		assertEquals(service.canonicalJson(a), service.canonicalJson(b));
+
+		b.put("quantity", 3);
+		assertNotEquals(service.canonicalJson(a), service.canonicalJson(b));
+		b.put("quantity", 2);
+		b.put("sizes", List.of("L", "M"));
+		assertNotEquals(service.canonicalJson(a), service.canonicalJson(b));
+	}
+
+	@Test
+	void nestedServerAssignedFieldsAreDroppedToo() {
+		Map<String, Object> a = Map.of("items", List.of(Map.of("id", "x", "productId", "p-1")), "createdAt", 1);
+		Map<String, Object> b = Map.of("items", List.of(Map.of("id", "y", "productId", "p-1")), "createdAt", 2);
+
+		assertEquals(service.canonicalJson(a), service.canonicalJson(b));
+		assertEquals("{\"items\":[{\"productId\":\"p-1\"}]}", service.canonicalJson(a));
+	}
+}
@@ -0,0 +1,60 @@
+package com.ecommerce.backend.service.admission;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+	@Test
+	void startsFullAndStopsAtBurst() {
+		TokenBucket bucket = new TokenBucket(0.001, 3);
+
+		assertTrue(bucket.tryAcquire());
+		assertTrue(bucket.tryAcquire());
+		assertTrue(bucket.tryAcquire());
+		assertFalse(bucket.tryAcquire());
+		assertTrue(bucket.secondsUntilAvailable() > 0);
+	}
+
+	@Test
+	void refundGivesBackOnePermitUpToBurst() {
+		TokenBucket bucket = new TokenBucket(0.001, 1);
+
+		assertTrue(bucket.tryAcquire());
+		assertFalse(bucket.tryAcquire());
+		bucket.refund();
+		bucket.refund();
+		assertTrue(bucket.tryAcquire());
+		assertFalse(bucket.tryAcquire());
+	}
+
+	@Test
+	void refillsOverTime() throws InterruptedException {
+		TokenBucket bucket = new TokenBucket(100, 1);
+
+		assertTrue(bucket.tryAcquire());
+		Thread.sleep(50);
+		assertTrue(bucket.tryAcquire());
+		assertEquals(0, bucket.secondsUntilAvailable(), 0.011);
+	}
+
+	@Test
+	void zeroRateNeverRefills() {
+		TokenBucket bucket = new TokenBucket(0, 1);
+
+		assertTrue(bucket.tryAcquire());
+		assertEquals(Double.POSITIVE_INFINITY, bucket.secondsUntilAvailable());
+	}
+
+	@Test
+	void lowerBurstCapsPermits() {
+		TokenBucket bucket = new TokenBucket(0.001, 10);
+
+		bucket.setRate(0.001, 2);
+		assertEquals(2, bucket.getBurst());
+		assertTrue(bucket.tryAcquire());
+		assertTrue(bucket.tryAcquire());
+		assertFalse(bucket.tryAcquire());
+	}
+}
@@ -0,0 +1,76 @@
+package com.ecommerce.backend.service.inventory;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
+
+// Concurrency benchmark for the hot-SKU counter: N threads sell one SKU down to zero through
+//   - a lock (what serialising on one document amounts to),
+//   - a single CAS counter,
+//   - StripedStock,
+// and the run fails if any variant sells more or fewer units than it had.
+// Run (after mvn test-compile): java -cp target/classes:target/test-classes com.ecommerce.backend.service.inventory.StockBenchmark [threads] [units]
+public class StockBenchmark {
+
+	public static void main(String[] args) throws InterruptedException {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 2;
+		long units = args.length > 1 ? Long.parseLong(args[1]) : 5_000_000;
+		System.out.println("threads=" + threads + " units=" + units);
+
+		for (int round = 0; round < 3; round++) {
+			boolean warmup = round == 0;
+
+			Object lock = new Object();
+			long[] locked = {units};
+			run("lock", threads, units, warmup, quantity -> {
+				synchronized (lock) {
+					if (locked[0] < quantity) return false;
+					locked[0] -= quantity;
+					return true;
+				}
+			});
+
+			AtomicLong single = new AtomicLong(units);
+			run("single CAS", threads, units, warmup, quantity -> {
+				while (true) {
+					long available = single.get();
+					if (available < quantity) return false;
+					if (single.compareAndSet(available, available - quantity)) return true;
+				}
+			});
+
+			StripedStock striped = new StripedStock(Math.max(4, threads));
+			striped.add(units);
+			run("striped", threads, units, warmup, striped::tryTake);
+			if (striped.available() != 0) throw new IllegalStateException("striped: " + striped.available() + " units left over");
+		}
+	}
+
+	private static void run(String name, int threads, long units, boolean warmup, IntPredicate take) throws InterruptedException {
+		LongAdder sold = new LongAdder();
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			new Thread(() -> {
+				try {
+					start.await();
+					while (take.test(1)) sold.increment();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					done.countDown();
+				}
+			}).start();
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		done.await();
+		long nanos = System.nanoTime() - begin;
+
+		if (sold.sum() != units) throw new IllegalStateException(name + ": sold " + sold.sum() + " of " + units);
+		if (!warmup) {
+			System.out.printf("%-10s %8.1f ms  %6.1f M takes/s%n", name, nanos / 1e6, units * 1e3 / nanos);
+		}
+	}
+}
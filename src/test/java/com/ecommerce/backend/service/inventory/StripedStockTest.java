@@ -0,0 +1,76 @@
+package com.ecommerce.backend.service.inventory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedStockTest {
+
+	@Test
+	void takesAreAllOrNothing() {
+		StripedStock stock = new StripedStock(4);
+		stock.add(5);
+
+		assertTrue(stock.tryTake(3));
+		assertFalse(stock.tryTake(3));
+		assertEquals(2, stock.available());
+		assertTrue(stock.tryTake(2));
+		assertEquals(0, stock.available());
+	}
+
+	@Test
+	void takeBorrowsFromOtherStripes() {
+		StripedStock stock = new StripedStock(8);
+		for (int i = 0; i < 8; i++) stock.add(1);
+
+		assertTrue(stock.tryTake(8));
+		assertEquals(0, stock.available());
+	}
+
+	@Test
+	void drainEmptiesEveryStripe() {
+		StripedStock stock = new StripedStock(4);
+		stock.add(7);
+		stock.add(3);
+		stock.add(-5);
+
+		assertEquals(10, stock.drain());
+		assertEquals(0, stock.available());
+		assertFalse(stock.tryTake(1));
+	}
+
+	@Test
+	void concurrentTakesNeverOversell() throws InterruptedException {
+		int threads = 8;
+		long units = 100_000;
+		StripedStock stock = new StripedStock(threads);
+		stock.add(units);
+
+		AtomicLong sold = new AtomicLong();
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> workers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			int quantity = 1 + t % 3;
+			Thread worker = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				while (stock.tryTake(quantity)) sold.addAndGet(quantity);
+			});
+			workers.add(worker);
+			worker.start();
+		}
+		start.countDown();
+		for (Thread worker : workers) worker.join();
+
+		// Every unit is either sold or still in stock: none sold twice, none lost
+		assertEquals(units, sold.get() + stock.available());
+	}
+}
@@ -0,0 +1,108 @@
+package com.ecommerce.backend.service.recommend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HnswIndexTest {
+
+	private static final int DIMENSIONS = 64;
+
+	@Test
+	void findsMostOfTheExactNearestNeighbours() {
+		Random random = new Random(11);
+		Map<String, SparseVector> vectors = new LinkedHashMap<>();
+		HnswIndex index = new HnswIndex(8, 64);
+		for (int i = 0; i < 500; i++) {
+			SparseVector vector = randomVector(random);
+			vectors.put("p" + i, vector);
+			index.upsert("p" + i, vector);
+		}
+		assertEquals(500, index.size());
+
+		int k = 10;
+		int hits = 0;
+		int queries = 0;
+		for (String id : vectors.keySet()) {
+			if (queries++ == 50) break;
+			Set<String> exact = exactNearest(vectors, id, k);
+			List<HnswIndex.Result> found = index.similar(id, k, 64);
+			assertEquals(k, found.size());
+			for (HnswIndex.Result result : found) {
+				assertNotEquals(id, result.id);
+				if (exact.contains(result.id)) hits++;
+			}
+		}
+		double recall = hits / (double) (50 * k);
+		assertTrue(recall >= 0.9, "recall=" + recall);
+	}
+
+	@Test
+	void removedAndReplacedNodesAreNotReturned() {
+		HnswIndex index = new HnswIndex(4, 16);
+		index.upsert("a", vector(1, 0, 0));
+		index.upsert("b", vector(1, 0.1f, 0));
+		index.upsert("c", vector(0, 1, 0));
+		index.upsert("d", vector(0, 0, 1));
+
+		assertEquals("b", index.similar("a", 1, 16).get(0).id);
+
+		index.remove("b");
+		assertEquals(3, index.size());
+		assertTrue(index.similar("b", 3, 16).isEmpty());
+		assertTrue(index.similar("a", 3, 16).stream().noneMatch(r -> r.id.equals("b")));
+
+		// An update moves "d" next to "a"; the old node stays as a tombstone only
+		index.upsert("d", vector(1, 0, 0.05f));
+		assertEquals(3, index.size());
+		assertEquals("d", index.similar("a", 1, 16).get(0).id);
+		assertEquals(2, index.similar("a", 5, 16).size());
+	}
+
+	@Test
+	void emptyVectorsAreNotIndexed() {
+		HnswIndex index = new HnswIndex(4, 16);
+		index.upsert("a", new SparseVector(new int[0], new float[0]));
+
+		assertEquals(0, index.size());
+		assertTrue(index.similar("a", 5, 16).isEmpty());
+	}
+
+	private static Set<String> exactNearest(Map<String, SparseVector> vectors, String id, int k) {
+		SparseVector query = vectors.get(id);
+		return vectors.entrySet().stream()
+				.filter(e -> !e.getKey().equals(id))
+				.sorted(Comparator.comparingDouble(e -> query.distance(e.getValue())))
+				.limit(k)
+				.map(Map.Entry::getKey)
+				.collect(Collectors.toSet());
+	}
+
+	// A handful of non-zero features, like a product's category / material / name tokens
+	private static SparseVector randomVector(Random random) {
+		float[] dense = new float[DIMENSIONS];
+		for (int i = 0; i < 16; i++) dense[random.nextInt(DIMENSIONS)] += random.nextFloat() + 0.1f;
+		return vector(dense);
+	}
+
+	private static SparseVector vector(float... dense) {
+		double norm = 0;
+		int nonZero = 0;
+		for (float v : dense) {
+			norm += v * v;
+			if (v != 0) nonZero++;
+		}
+		int[] indices = new int[nonZero];
+		float[] values = new float[nonZero];
+		int j = 0;
+		for (int i = 0; i < dense.length; i++) {
+			if (dense[i] == 0) continue;
+			indices[j] = i;
+			values[j++] = (float) (dense[i] / Math.sqrt(norm));
+		}
+		return new SparseVector(indices, values);
+	}
+}
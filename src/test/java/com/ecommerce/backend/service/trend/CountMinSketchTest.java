@@ -0,0 +1,57 @@
+package com.ecommerce.backend.service.trend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountMinSketchTest {
+
+	@Test
+	void widthMustBeAPowerOfTwo() {
+		assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(4, 1000));
+	}
+
+	@Test
+	void neverUndercountsAndStaysWithinTheErrorBound() {
+		CountMinSketch sketch = new CountMinSketch(4, 1024);
+		Map<String, Integer> truth = new HashMap<>();
+		Random random = new Random(42);
+		for (int i = 0; i < 20_000; i++) {
+			// Skewed keys: a few heavy hitters and a long tail
+			String key = "p" + (random.nextInt(10) < 3 ? random.nextInt(5) : random.nextInt(2000));
+			sketch.add(CountMinSketch.hash(key), 1);
+			truth.merge(key, 1, Integer::sum);
+		}
+
+		assertEquals(20_000, sketch.total());
+		int overBound = 0;
+		for (Map.Entry<String, Integer> e : truth.entrySet()) {
+			int estimate = sketch.estimate(CountMinSketch.hash(e.getKey()));
+			assertTrue(estimate >= e.getValue(), e.getKey());
+			if (estimate - e.getValue() > Math.E / 1024 * sketch.total()) overBound++;
+		}
+		assertTrue(overBound <= truth.size() / 50, "overBound=" + overBound);
+	}
+
+	@Test
+	void mergeAddsCountsAndClearResets() {
+		CountMinSketch a = new CountMinSketch(4, 256);
+		CountMinSketch b = new CountMinSketch(4, 256);
+		long hash = CountMinSketch.hash("shirt");
+		a.add(hash, 3);
+		b.add(hash, 4);
+
+		a.addAll(b);
+		assertEquals(7, a.estimate(hash));
+		assertEquals(7, a.total());
+		assertThrows(IllegalArgumentException.class, () -> a.addAll(new CountMinSketch(4, 512)));
+
+		a.clear();
+		assertEquals(0, a.estimate(hash));
+		assertEquals(0, a.total());
+	}
+}
@@ -0,0 +1,60 @@
+package com.ecommerce.backend.service.trend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyBufferTest {
+
+	@Test
+	void capacityMustBeAPowerOfTwo() {
+		assertThrows(IllegalArgumentException.class, () -> new KeyBuffer(100));
+	}
+
+	@Test
+	void drainsInOrderAndDropsWhenFull() {
+		KeyBuffer buffer = new KeyBuffer(4);
+		for (int i = 0; i < 4; i++) assertTrue(buffer.offer("k" + i));
+		assertFalse(buffer.offer("dropped"));
+
+		List<String> drained = new ArrayList<>();
+		assertEquals(4, buffer.drain(drained::add));
+		assertEquals(List.of("k0", "k1", "k2", "k3"), drained);
+
+		assertTrue(buffer.offer("k4"));
+		assertEquals(1, buffer.drain(key -> {}));
+		assertEquals(0, buffer.drain(key -> {}));
+	}
+
+	@Test
+	void concurrentProducersLoseNothingThatWasAccepted() throws InterruptedException {
+		KeyBuffer buffer = new KeyBuffer(1024);
+		int producers = 4;
+		int perProducer = 20_000;
+		AtomicInteger accepted = new AtomicInteger();
+		CountDownLatch done = new CountDownLatch(producers);
+		for (int p = 0; p < producers; p++) {
+			int producer = p;
+			new Thread(() -> {
+				for (int i = 0; i < perProducer; i++) {
+					if (buffer.offer(producer + ":" + i)) accepted.incrementAndGet();
+				}
+				done.countDown();
+			}).start();
+		}
+
+		// Single consumer, as in TrendTracker
+		Set<String> seen = new HashSet<>();
+		while (done.getCount() > 0) buffer.drain(seen::add);
+		buffer.drain(seen::add);
+
+		assertEquals(accepted.get(), seen.size());
+	}
+}
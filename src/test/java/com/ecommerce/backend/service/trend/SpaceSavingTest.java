@@ -0,0 +1,50 @@
+package com.ecommerce.backend.service.trend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpaceSavingTest {
+
+	@Test
+	void staysBoundedAndKeepsHeavyHitters() {
+		SpaceSaving top = new SpaceSaving(16);
+		Random random = new Random(7);
+		for (int i = 0; i < 10_000; i++) {
+			// "hot" is 20% of the stream, far above total / capacity
+			top.add(random.nextInt(5) == 0 ? "hot" : "k" + random.nextInt(5000), 1);
+		}
+
+		assertEquals(16, top.keys().size());
+		assertTrue(top.keys().contains("hot"));
+	}
+
+	@Test
+	void newKeyReplacesTheMinimum() {
+		SpaceSaving top = new SpaceSaving(2);
+		top.add("a", 5);
+		top.add("b", 1);
+		top.add("c", 1);
+
+		assertEquals(Set.of("a", "c"), top.keys());
+	}
+
+	@Test
+	void mergeKeepsTheLargestCounts() {
+		SpaceSaving hour = new SpaceSaving(2);
+		SpaceSaving minute = new SpaceSaving(3);
+		minute.add("x", 10);
+		minute.add("y", 1);
+		minute.add("z", 8);
+
+		hour.addAll(minute);
+		assertTrue(hour.keys().contains("x"));
+		assertEquals(2, hour.keys().size());
+
+		hour.clear();
+		assertTrue(hour.isEmpty());
+	}
+}
@@ -0,0 +1,53 @@
+package com.ecommerce.backend.service.trend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrendWindowTest {
+
+	private static final long START = 1_000_000;
+
+	@Test
+	void ranksKeysOfTheLastHour() {
+		TrendWindow window = new TrendWindow(START);
+		for (int i = 0; i < 5; i++) window.add("a");
+		window.advanceTo(START + 1);
+		for (int i = 0; i < 3; i++) window.add("b");
+		window.add("a");
+
+		List<TrendWindow.Entry> top = window.top(false, 10);
+		assertEquals("a", top.get(0).key);
+		assertEquals(6, top.get(0).count);
+		assertEquals("b", top.get(1).key);
+		assertEquals(3, top.get(1).count);
+		assertEquals(1, window.top(false, 1).size());
+	}
+
+	@Test
+	void minutesOlderThanAnHourLeaveTheHourButStayInTheDay() {
+		TrendWindow window = new TrendWindow(START);
+		window.add("old");
+		window.advanceTo(START + TrendWindow.MINUTES + 1);
+		window.add("new");
+
+		List<TrendWindow.Entry> hour = window.top(false, 10);
+		assertEquals(1, hour.size());
+		assertEquals("new", hour.get(0).key);
+
+		List<TrendWindow.Entry> day = window.top(true, 10);
+		assertEquals(2, day.size());
+	}
+
+	@Test
+	void idleForMoreThanADayClearsEverything() {
+		TrendWindow window = new TrendWindow(START);
+		window.add("a");
+
+		assertTrue(window.advanceTo(START + (long) TrendWindow.HOURS * TrendWindow.MINUTES + 1));
+		assertTrue(window.top(true, 10).isEmpty());
+		assertFalse(window.advanceTo(START));
+	}
+}
@@ -0,0 +1,55 @@
+package com.ecommerce.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvReaderTest {
+
+	@Test
+	void readsQuotedFieldsEscapesAndLineBreaks() throws IOException {
+		CsvReader reader = new CsvReader(new StringReader(
+				"name,description,price\r\n" +
+				"\"Shirt, blue\",\"Says \"\"hi\"\"\",10\n" +
+				"Dress,\"two\nlines\",20"));
+
+		assertEquals(List.of("name", "description", "price"), reader.next());
+		assertEquals(2, reader.getLine());
+		assertEquals(List.of("Shirt, blue", "Says \"hi\"", "10"), reader.next());
+		assertEquals(List.of("Dress", "two\nlines", "20"), reader.next());
+		assertEquals(4, reader.getLine());
+		assertNull(reader.next());
+	}
+
+	@Test
+	void skipsBlankLinesAndKeepsEmptyFields() throws IOException {
+		CsvReader reader = new CsvReader(new StringReader("\n\na,,\n\n\"\",b\n"));
+
+		assertEquals(List.of("a", "", ""), reader.next());
+		assertEquals(List.of("", "b"), reader.next());
+		assertNull(reader.next());
+	}
+
+	@Test
+	void emptyInputHasNoRecords() throws IOException {
+		assertNull(new CsvReader(new StringReader("")).next());
+	}
+
+	@Test
+	void escapeRoundTrips() throws IOException {
+		String[] values = {"plain", "with,comma", "with \"quote\"", "multi\nline", ""};
+		StringBuilder line = new StringBuilder();
+		for (String value : values) {
+			if (line.length() > 0) line.append(',');
+			line.append(CsvReader.escape(value));
+		}
+
+		assertEquals("plain", CsvReader.escape("plain"));
+		assertEquals("", CsvReader.escape(null));
+		assertEquals(List.of(values), new CsvReader(new StringReader(line + "\n")).next());
+	}
+}
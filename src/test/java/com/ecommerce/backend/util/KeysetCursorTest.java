@@ -0,0 +1,70 @@
+package com.ecommerce.backend.util;
+
+import com.ecommerce.backend.model.Product;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeysetCursorTest {
+
+	@Test
+	void sortAlwaysEndsWithTheIdTiebreaker() {
+		Sort sort = KeysetCursor.sortFor("5");
+
+		List<Sort.Order> orders = sort.toList();
+		assertEquals(Sort.Order.desc("price"), orders.get(0));
+		assertEquals(Sort.Order.desc("_id"), orders.get(1));
+		assertEquals(Sort.Order.desc("createdAt"), KeysetCursor.sortFor(null).toList().get(0));
+	}
+
+	@Test
+	void priceCursorContinuesAfterTheLastRow() {
+		Sort sort = KeysetCursor.sortFor("4");
+		Product last = Product.builder().price(19.5).build();
+		last.setId("p-1");
+
+		Document criteria = KeysetCursor.decode(KeysetCursor.encode(sort, last), sort).toCriteria().getCriteriaObject();
+		List<?> or = (List<?>) criteria.get("$or");
+		assertEquals(new Document("price", new Document("$gt", 19.5)), or.get(0));
+		assertTrue(or.get(1).toString().contains("p-1"));
+	}
+
+	@Test
+	void dateCursorKeepsTheTimestamp() {
+		Sort sort = KeysetCursor.sortFor("0");
+		Product last = new Product();
+		last.setId("p-2");
+		last.setCreatedAt(new Date(1_700_000_000_000L));
+
+		Document criteria = KeysetCursor.decode(KeysetCursor.encode(sort, last), sort).toCriteria().getCriteriaObject();
+		List<?> or = (List<?>) criteria.get("$or");
+		assertEquals(new Document("createdAt", new Document("$lt", new Date(1_700_000_000_000L))), or.get(0));
+	}
+
+	@Test
+	void onlyTheStorefrontSortTypesAreSupported() {
+		assertTrue(KeysetCursor.supports("4"));
+		assertTrue(KeysetCursor.supports(null));
+		assertFalse(KeysetCursor.supports("2"));
+		assertFalse(KeysetCursor.supports("name"));
+	}
+
+	@Test
+	void rejectsTamperedCursorsAndCursorsOfAnotherSort() {
+		Sort newest = KeysetCursor.sortFor("0");
+		Product last = new Product();
+		last.setId("p-3");
+		String token = KeysetCursor.encode(newest, last);
+
+		assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(token, KeysetCursor.sortFor("4")));
+		assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode("%%%", newest));
+		String forged = Base64.getUrlEncoder().withoutPadding().encodeToString("createdAt|DESC|tnope|p-3".getBytes());
+		assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(forged, newest));
+	}
+}